@@ -5,6 +5,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -20,6 +21,7 @@ import de.gurkenlabs.litiengine.environment.tilemap.IMap;
 import de.gurkenlabs.litiengine.graphics.Camera;
 import de.gurkenlabs.litiengine.graphics.DebugRenderer;
 import de.gurkenlabs.litiengine.graphics.ICamera;
+import de.gurkenlabs.litiengine.graphics.ImageCache;
 import de.gurkenlabs.litiengine.graphics.IRenderEngine;
 import de.gurkenlabs.litiengine.graphics.RenderEngine;
 import de.gurkenlabs.litiengine.graphics.Spritesheet;
@@ -151,6 +153,11 @@ public final class Game {
     }
 
     final GameLoop updateLoop = new GameLoop(getConfiguration().client().getUpdaterate());
+    if (getConfiguration().client().isFixedTimestep()) {
+      updateLoop.setSchedulingMode(GameLoop.SchedulingMode.FIXED_TIMESTEP);
+    }
+
+    updateLoop.setMetrics(getMetrics());
     updateLoop.setUncaughtExceptionHandler(new DefaultUncaughtExceptionHandler());
     gameLoop = updateLoop;
     getLoop().attach(getPhysicsEngine());
@@ -242,6 +249,10 @@ public final class Game {
     }
 
     log.log(Level.INFO, "{0} sprites loaded to memory", new Object[] { spriteload });
+
+    // decode the persisted images in the background so that the first
+    // environment doesn't have to wait for them
+    CompletableFuture.allOf(ImageCache.MAPS.loadAllAsync(), ImageCache.SPRITES.loadAllAsync(), ImageCache.IMAGES.loadAllAsync()).thenRun(() -> log.log(Level.INFO, "cached images loaded to memory"));
   }
 
   public static void loadEnvironment(final IEnvironment env) {
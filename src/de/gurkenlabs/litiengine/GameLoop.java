@@ -3,18 +3,81 @@ package de.gurkenlabs.litiengine;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class GameLoop extends Thread implements IGameLoop, AutoCloseable {
+  /**
+   * Defines how the loop waits for the next tick.
+   */
+  public enum SchedulingMode {
+    /**
+     * Sleeps for the remaining milliseconds of the tick after each update. The
+     * achieved update rate can drift below the configured rate.
+     */
+    SLEEP,
+
+    /**
+     * Schedules every tick at a fixed point in time based on
+     * {@link System#nanoTime()}. Ticks that are late are caught up immediately,
+     * up to the maximum number of catch-up ticks, so the number of ticks stays
+     * in sync with the elapsed time. The delta time of every tick is the
+     * length of a tick.
+     */
+    FIXED_TIMESTEP
+  }
+
+  /**
+   * The source of time of the {@link SchedulingMode#FIXED_TIMESTEP} mode.
+   */
+  interface Clock {
+    long nanoTime();
+
+    /**
+     * Waits until the specified point in time.
+     *
+     * @param deadline
+     *          the point in time in nanoseconds
+     * @return false if the thread was interrupted while waiting
+     */
+    boolean waitUntil(long deadline);
+  }
+
+  public static final int DEFAULT_MAX_CATCH_UP_TICKS = 5;
+
   private static final Logger log = Logger.getLogger(GameLoop.class.getName());
-  private static int executionIndex = -1;
 
-  private final List<TimedAction> actions;
+  /** Waits longer than this are slept, shorter ones are parked. */
+  private static final long SLEEP_THRESHOLD = TimeUnit.MILLISECONDS.toNanos(2);
+
+  /** Waits shorter than this are spun to hit the tick precisely. */
+  private static final long SPIN_THRESHOLD = TimeUnit.MICROSECONDS.toNanos(100);
+
+  /** The number of updatables below which a parallel update isn't split. */
+  private static final int PARALLEL_UPDATE_THRESHOLD = 4;
+
+  private static final String[] PHASE_PROFILE_NAMES;
+
+  static {
+    final UpdatePhase[] updatePhases = UpdatePhase.values();
+    PHASE_PROFILE_NAMES = new String[updatePhases.length];
+    for (int i = 0; i < updatePhases.length; i++) {
+      PHASE_PROFILE_NAMES[i] = GameMetrics.PROFILE_PHASE + updatePhases[i].name();
+    }
+  }
+
+  private final TimedActionQueue actions;
+  private Clock clock;
   private final int updateRate;
   private final List<Consumer<Integer>> upsTrackedConsumer;
-  private final List<IUpdateable> updatables;
+  private final UpdateRegistry updatables;
+  private final AtomicLong updatablesVersion;
   private final GameTime gameTime;
 
   private long deltaTime;
@@ -22,18 +85,37 @@ public class GameLoop extends Thread implements IGameLoop, AutoCloseable {
 
   private long lastUpsTime;
 
+  private int maxCatchUpTicks;
+  private volatile GameMetrics metrics;
+  private volatile boolean phasedUpdates;
+
+  /** The updatables grouped by their phase. */
+  private Phase[] phases;
+
+  /** The version of the updatables from which the phases were grouped. */
+  private long phasesVersion;
+
+  private volatile ForkJoinPool updatePool;
+  private SchedulingMode schedulingMode;
+  private long skippedTicks;
+  private long tickLateness;
+
   private float timeScale;
   private long totalTicks;
 
   private int updateCount;
 
   public GameLoop(final int updateRate) {
-    this.updatables = new CopyOnWriteArrayList<>();
+    this.updatables = new UpdateRegistry();
+    this.updatablesVersion = new AtomicLong();
     this.upsTrackedConsumer = new CopyOnWriteArrayList<>();
-    this.actions = new CopyOnWriteArrayList<>();
+    this.actions = new TimedActionQueue();
     this.updateRate = updateRate;
     this.gameTime = new GameTime(this);
     this.setTimeScale(1.0F);
+    this.schedulingMode = SchedulingMode.SLEEP;
+    this.maxCatchUpTicks = DEFAULT_MAX_CATCH_UP_TICKS;
+    this.clock = new SystemClock();
   }
 
   @Override
@@ -42,17 +124,22 @@ public class GameLoop extends Thread implements IGameLoop, AutoCloseable {
       return;
     }
 
-    if (this.updatables.contains(updatable)) {
+    if (!this.updatables.attach(updatable)) {
       log.log(Level.FINE, "Updatable {0} already registered for update!", new Object[] { updatable });
       return;
     }
 
-    this.updatables.add(updatable);
+    this.updatablesVersion.incrementAndGet();
+  }
+
+  @Override
+  public boolean cancel(final int index) {
+    return this.actions.cancel(index);
   }
 
   @Override
   public void close() {
-    this.gameIsRunning = false;
+    this.terminate();
   }
 
   @Override
@@ -67,17 +154,15 @@ public class GameLoop extends Thread implements IGameLoop, AutoCloseable {
 
   @Override
   public void detach(final IUpdateable updatable) {
-    this.updatables.remove(updatable);
+    if (this.updatables.detach(updatable)) {
+      this.updatablesVersion.incrementAndGet();
+    }
   }
 
   @Override
   public int execute(final int delay, final Consumer<Integer> action) {
     final long d = this.convertToTicks(delay);
-
-    TimedAction a = new TimedAction(this.getTicks() + d, action);
-    this.actions.add(a);
-
-    return a.getIndex();
+    return this.actions.schedule(this.getTicks() + d, action);
   }
 
   @Override
@@ -90,6 +175,39 @@ public class GameLoop extends Thread implements IGameLoop, AutoCloseable {
     return this.convertToMs(this.totalTicks - ticks);
   }
 
+  public int getMaxCatchUpTicks() {
+    return this.maxCatchUpTicks;
+  }
+
+  public GameMetrics getMetrics() {
+    return this.metrics;
+  }
+
+  public SchedulingMode getSchedulingMode() {
+    return this.schedulingMode;
+  }
+
+  /**
+   * Gets the number of ticks that were dropped because the loop fell behind
+   * by more than the maximum number of catch-up ticks. Only the
+   * {@link SchedulingMode#FIXED_TIMESTEP} mode drops ticks.
+   *
+   * @return the number of skipped ticks
+   */
+  public long getSkippedTicks() {
+    return this.skippedTicks;
+  }
+
+  /**
+   * Gets how late the last tick started compared to its scheduled time. Only
+   * the {@link SchedulingMode#FIXED_TIMESTEP} mode schedules ticks.
+   *
+   * @return the lateness of the last tick in nanoseconds
+   */
+  public long getTickLateness() {
+    return this.tickLateness;
+  }
+
   @Override
   public long getTicks() {
     return this.totalTicks;
@@ -110,6 +228,10 @@ public class GameLoop extends Thread implements IGameLoop, AutoCloseable {
     return this.updateRate;
   }
 
+  public boolean isPhasedUpdates() {
+    return this.phasedUpdates;
+  }
+
   @Override
   public void onUpsTracked(final Consumer<Integer> upsConsumer) {
     if (!this.upsTrackedConsumer.contains(upsConsumer)) {
@@ -124,27 +246,17 @@ public class GameLoop extends Thread implements IGameLoop, AutoCloseable {
    */
   @Override
   public void run() {
+    if (this.getSchedulingMode() == SchedulingMode.FIXED_TIMESTEP) {
+      this.runFixedTimestep();
+      return;
+    }
+
     while (this.gameIsRunning) {
       final float scale = this.getTimeScale() > 0 ? this.getTimeScale() : 1;
       final long tickWait = (long) (1.0 / (this.getUpdateRate() * scale) * 1000);
       final long updateStart = System.nanoTime();
 
-      if (this.getTimeScale() > 0) {
-        ++this.totalTicks;
-        this.updatables.forEach(updatable -> {
-          try {
-            if (updatable != null) {
-              updatable.update(this);
-            }
-          } catch (final Exception e) {
-            log.log(Level.SEVERE, e.getMessage(), e);
-          }
-        });
-
-        this.executeTimedActions();
-      }
-
-      ++this.updateCount;
+      this.tick();
 
       final long currentMillis = System.currentTimeMillis();
       this.trackUpdateRate(currentMillis);
@@ -162,35 +274,238 @@ public class GameLoop extends Thread implements IGameLoop, AutoCloseable {
     }
   }
 
+  /**
+   * Sets the clock of the {@link SchedulingMode#FIXED_TIMESTEP} mode. The
+   * clock must be set before the loop is started.
+   *
+   * @param clock
+   *          the clock
+   */
+  void setClock(final Clock clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Sets the maximum number of ticks that are executed back to back to catch
+   * up with the schedule. If the loop falls further behind, the remaining ticks
+   * are skipped.
+   *
+   * @param maxCatchUpTicks
+   *          the maximum number of catch-up ticks
+   */
+  public void setMaxCatchUpTicks(final int maxCatchUpTicks) {
+    this.maxCatchUpTicks = Math.max(0, maxCatchUpTicks);
+  }
+
+  /**
+   * Sets the metrics in which the durations of the ticks, the update phases and
+   * the updatables are recorded while the metrics are profiling.
+   *
+   * @param metrics
+   *          the metrics or null to not profile this loop
+   * @see GameMetrics#setProfiling(boolean)
+   */
+  public void setMetrics(final GameMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Enables or disables phased updates. With phased updates, the updatables
+   * are updated phase by phase in the order of {@link UpdatePhase}, where
+   * updatables that don't implement {@link IPhasedUpdateable} belong to
+   * {@link UpdatePhase#DEFAULT}. Within a phase, the updatables that are not
+   * parallel safe are updated one after another in the order in which they
+   * were attached. Afterwards, the parallel safe ones are updated concurrently
+   * on a fork join pool. A phase ends when all of its updatables are updated.
+   * <p>
+   * The updatables are grouped by their phase and parallel safety on the first
+   * phased tick after any updatable has been attached or detached. Both are
+   * queried from all attached updatables at that point, so a changed phase
+   * only takes effect with the next change of the attached updatables.
+   * </p>
+   *
+   * @param phasedUpdates
+   *          true to enable phased updates
+   */
+  public synchronized void setPhasedUpdates(final boolean phasedUpdates) {
+    // the pool is published before the flag so that the loop never sees
+    // phased updates enabled without a pool
+    if (phasedUpdates && this.updatePool == null) {
+      this.updatePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    this.phasedUpdates = phasedUpdates;
+  }
+
+  /**
+   * Sets the scheduling mode of this loop. The mode must be set before the
+   * loop is started.
+   *
+   * @param schedulingMode
+   *          the scheduling mode
+   */
+  public void setSchedulingMode(final SchedulingMode schedulingMode) {
+    this.schedulingMode = schedulingMode;
+  }
+
   @Override
   public void setTimeScale(final float timeScale) {
     this.timeScale = timeScale;
   }
 
   @Override
-  public void terminate() {
+  public synchronized void terminate() {
     this.gameIsRunning = false;
+    if (this.updatePool != null) {
+      this.updatePool.shutdown();
+    }
   }
 
   @Override
   public void updateExecutionTime(int index, long ticks) {
-    for (TimedAction action : this.actions) {
-      if (action.getIndex() == index) {
-        action.setExecutionTicks(ticks);
+    this.actions.reschedule(index, ticks);
+  }
+
+  /**
+   * Executes all timed actions that are due.
+   *
+   * @param sampledMetrics
+   *          the metrics in which the duration is recorded or null if the tick
+   *          is not sampled
+   */
+  private void executeTimedActions(final GameMetrics sampledMetrics) {
+    final long start = sampledMetrics != null ? System.nanoTime() : 0;
+    this.actions.executeDue(this.totalTicks);
+    if (sampledMetrics != null) {
+      sampledMetrics.record(GameMetrics.PROFILE_TIMED_ACTIONS, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Runs the loop with ticks that are scheduled at fixed points in time. The
+   * clock waits for the time until the next tick.
+   */
+  private void runFixedTimestep() {
+    long nextTick = this.clock.nanoTime();
+    while (this.gameIsRunning) {
+      final float scale = this.getTimeScale() > 0 ? this.getTimeScale() : 1;
+      final long tickLength = (long) (TimeUnit.SECONDS.toNanos(1) / (this.getUpdateRate() * scale));
+
+      this.tickLateness = Math.max(0, this.clock.nanoTime() - nextTick);
+
+      // every tick advances the game by the same time, including the ticks
+      // that are caught up, so the simulation doesn't depend on the wall clock
+      this.deltaTime = Math.round(tickLength / (double) TimeUnit.MILLISECONDS.toNanos(1));
+
+      this.tick();
+      this.trackUpdateRate(System.currentTimeMillis());
+
+      nextTick += tickLength;
+      final long behind = this.clock.nanoTime() - nextTick;
+      if (behind > this.getMaxCatchUpTicks() * tickLength) {
+        // drop the ticks that can't be caught up instead of running them all
+        final long dropped = behind / tickLength - this.getMaxCatchUpTicks();
+        this.skippedTicks += dropped;
+        nextTick += dropped * tickLength;
+      }
+
+      if (!this.clock.waitUntil(nextTick)) {
+        this.interrupt();
+        break;
       }
     }
   }
 
-  private void executeTimedActions() {
-    final List<TimedAction> executed = new ArrayList<>();
-    for (final TimedAction action : this.actions) {
-      if (action.getExecutionTick() <= this.totalTicks) {
-        action.getAction().accept(action.getIndex());
-        executed.add(action);
+  private void tick() {
+    if (this.getTimeScale() > 0) {
+      ++this.totalTicks;
+      // the metrics are read once so that a concurrent call of setMetrics
+      // can't change them during the tick
+      final GameMetrics currentMetrics = this.metrics;
+      final GameMetrics sampledMetrics = currentMetrics != null && currentMetrics.sampleTick(this.totalTicks) ? currentMetrics : null;
+      final long start = sampledMetrics != null ? System.nanoTime() : 0;
+      final ForkJoinPool pool = this.isPhasedUpdates() ? this.updatePool : null;
+      if (pool != null && !pool.isShutdown()) {
+        this.updatePhases(pool, sampledMetrics);
+      } else {
+        this.updatables.forEach(updatable -> this.update(updatable, sampledMetrics));
+      }
+
+      this.executeTimedActions(sampledMetrics);
+      if (sampledMetrics != null) {
+        sampledMetrics.record(GameMetrics.PROFILE_TICK, System.nanoTime() - start);
       }
     }
 
-    this.actions.removeAll(executed);
+    ++this.updateCount;
+  }
+
+  private void update(final IUpdateable updatable, final GameMetrics sampledMetrics) {
+    if (updatable == null) {
+      return;
+    }
+
+    final long start = sampledMetrics != null ? System.nanoTime() : 0;
+    try {
+      updatable.update(this);
+    } catch (final Exception e) {
+      log.log(Level.SEVERE, e.getMessage(), e);
+    }
+
+    if (sampledMetrics != null) {
+      sampledMetrics.recordUpdate(updatable, System.nanoTime() - start);
+    }
+  }
+
+  private void updatePhases(final ForkJoinPool pool, final GameMetrics sampledMetrics) {
+    Phase[] currentPhases = this.phases;
+    final long version = this.updatablesVersion.get();
+    if (currentPhases == null || this.phasesVersion != version) {
+      currentPhases = new Phase[UpdatePhase.values().length];
+      final List<List<IUpdateable>> sequential = new ArrayList<>();
+      final List<List<IUpdateable>> parallel = new ArrayList<>();
+      for (int i = 0; i < currentPhases.length; i++) {
+        sequential.add(new ArrayList<>());
+        parallel.add(new ArrayList<>());
+      }
+
+      this.updatables.forEach(updatable -> {
+        UpdatePhase phase = UpdatePhase.DEFAULT;
+        boolean parallelSafe = false;
+        if (updatable instanceof IPhasedUpdateable) {
+          phase = ((IPhasedUpdateable) updatable).getUpdatePhase();
+          parallelSafe = ((IPhasedUpdateable) updatable).isParallelUpdateSafe();
+        }
+
+        (parallelSafe ? parallel : sequential).get(phase.ordinal()).add(updatable);
+      });
+
+      for (int i = 0; i < currentPhases.length; i++) {
+        currentPhases[i] = new Phase(sequential.get(i).toArray(new IUpdateable[0]), parallel.get(i).toArray(new IUpdateable[0]));
+      }
+
+      this.phases = currentPhases;
+      this.phasesVersion = version;
+    }
+
+    for (int i = 0; i < currentPhases.length; i++) {
+      final Phase phase = currentPhases[i];
+      final long start = sampledMetrics != null ? System.nanoTime() : 0;
+      for (final IUpdateable updatable : phase.sequential) {
+        this.update(updatable, sampledMetrics);
+      }
+
+      if (phase.parallel.length == 1) {
+        this.update(phase.parallel[0], sampledMetrics);
+      } else if (phase.parallel.length > 1) {
+        // invoke returns when all updatables of the phase are updated
+        pool.invoke(new UpdateTask(phase.parallel, 0, phase.parallel.length, sampledMetrics));
+      }
+
+      if (sampledMetrics != null) {
+        sampledMetrics.record(PHASE_PROFILE_NAMES[i], System.nanoTime() - start);
+      }
+    }
   }
 
   private void trackUpdateRate(long currentMillis) {
@@ -201,31 +516,80 @@ public class GameLoop extends Thread implements IGameLoop, AutoCloseable {
     }
   }
 
-  private class TimedAction {
-    private final Consumer<Integer> action;
-    private long execution;
-    private final int index;
+  private static final class Phase {
+    private final IUpdateable[] parallel;
+    private final IUpdateable[] sequential;
 
-    private TimedAction(final long execution, final Consumer<Integer> action) {
-      this.execution = execution;
-      this.action = action;
-      this.index = ++executionIndex;
+    private Phase(final IUpdateable[] sequential, final IUpdateable[] parallel) {
+      this.sequential = sequential;
+      this.parallel = parallel;
     }
+  }
 
-    public Consumer<Integer> getAction() {
-      return this.action;
+  /**
+   * A clock based on {@link System#nanoTime()}. The time until a deadline is
+   * slept, parked or spun depending on how long it is.
+   */
+  private static final class SystemClock implements Clock {
+    @Override
+    public long nanoTime() {
+      return System.nanoTime();
     }
 
-    public long getExecutionTick() {
-      return this.execution;
+    @Override
+    public boolean waitUntil(final long deadline) {
+      long remaining = deadline - System.nanoTime();
+      while (remaining > 0) {
+        if (remaining > SLEEP_THRESHOLD) {
+          try {
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(remaining - SLEEP_THRESHOLD) + 1);
+          } catch (final InterruptedException e) {
+            return false;
+          }
+        } else if (remaining > SPIN_THRESHOLD) {
+          LockSupport.parkNanos(remaining - SPIN_THRESHOLD);
+        } else {
+          Thread.yield();
+        }
+
+        if (Thread.interrupted()) {
+          return false;
+        }
+
+        remaining = deadline - System.nanoTime();
+      }
+
+      return true;
     }
+  }
+
+  private class UpdateTask extends RecursiveAction {
+    private static final long serialVersionUID = 7181562637400582545L;
 
-    public void setExecutionTicks(long ticks) {
-      this.execution = ticks;
+    private final int end;
+    private final transient GameMetrics sampledMetrics;
+    private final int start;
+    private final transient IUpdateable[] updatables;
+
+    private UpdateTask(final IUpdateable[] updatables, final int start, final int end, final GameMetrics sampledMetrics) {
+      this.updatables = updatables;
+      this.start = start;
+      this.end = end;
+      this.sampledMetrics = sampledMetrics;
     }
 
-    public int getIndex() {
-      return index;
+    @Override
+    protected void compute() {
+      if (this.end - this.start <= PARALLEL_UPDATE_THRESHOLD) {
+        for (int i = this.start; i < this.end; i++) {
+          update(this.updatables[i], this.sampledMetrics);
+        }
+
+        return;
+      }
+
+      final int middle = (this.start + this.end) >>> 1;
+      invokeAll(new UpdateTask(this.updatables, this.start, middle, this.sampledMetrics), new UpdateTask(this.updatables, middle, this.end, this.sampledMetrics));
     }
   }
 }
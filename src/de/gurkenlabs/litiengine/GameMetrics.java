@@ -3,18 +3,61 @@ package de.gurkenlabs.litiengine;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import de.gurkenlabs.litiengine.graphics.IRenderable;
 
 /**
  * The Class GameMetrics.
+ * <p>
+ * Besides the aggregated rates, the metrics can profile the game loop and the
+ * render loop. While profiling is enabled, every n-th tick and frame is
+ * sampled and the durations of all updatables, update phases, renderables and
+ * render stages of the environment are recorded in {@link TimingHistogram}s.
+ * Ticks and frames that are not sampled only pay for a single check. Recording
+ * a duration costs in the order of 100 ns, which is noticeable for very cheap
+ * updatables, so the sample rate should be raised when many of them are
+ * profiled.
+ * </p>
  */
 public class GameMetrics implements IUpdateable, IRenderable {
+  public static final int DEFAULT_PROFILING_SAMPLE_RATE = 16;
+
+  public static final String PROFILE_FRAME = "frame";
+  public static final String PROFILE_PHASE = "phase/";
+  public static final String PROFILE_RENDER = "render/";
+  public static final String PROFILE_RENDER_AMBIENT_LIGHT = "environment/ambient light";
+  public static final String PROFILE_RENDER_ENTITIES = "environment/entities";
+  public static final String PROFILE_RENDER_MAP = "environment/map";
+  public static final String PROFILE_RENDER_OVERLAY = "environment/overlay";
+  public static final String PROFILE_RENDER_SHADOWS = "environment/shadows";
+  public static final String PROFILE_TICK = "tick";
+  public static final String PROFILE_TIMED_ACTIONS = "timed actions";
+  public static final String PROFILE_UPDATE = "update/";
+
+  private static final Logger log = Logger.getLogger(GameMetrics.class.getName());
   private static final int OFFSET_X = 5;
   private static final int OFFSET_Y = 12;
+
+  /** The profile names of the classes, so they are only concatenated once. */
+  private static final ClassValue<String> RENDER_PROFILE_NAMES = createProfileNames(PROFILE_RENDER);
+  private static final ClassValue<String> UPDATE_PROFILE_NAMES = createProfileNames(PROFILE_UPDATE);
   private final List<Long> bytesReceived;
 
   private final List<Long> bytesSent;
@@ -28,6 +71,11 @@ public class GameMetrics implements IUpdateable, IRenderable {
   /** The frames per second. */
   private long framesPerSecond;
 
+  /** Indicates whether the current frame of the render loop is sampled. */
+  private volatile boolean frameSampled;
+
+  private final Map<String, TimingHistogram> histograms;
+
   private long lastNetworkTickTime;
 
   private int packagesReceived;
@@ -37,6 +85,12 @@ public class GameMetrics implements IUpdateable, IRenderable {
   /** The ping. */
   private long ping;
 
+  private volatile boolean profilePerInstance;
+
+  private volatile boolean profiling;
+
+  private volatile int profilingSampleRate;
+
   private long updatesPerSecond;
 
   private final List<Long> ups;
@@ -52,6 +106,35 @@ public class GameMetrics implements IUpdateable, IRenderable {
     this.ups = new CopyOnWriteArrayList<>();
     this.bytesSent = new CopyOnWriteArrayList<>();
     this.bytesReceived = new CopyOnWriteArrayList<>();
+    this.histograms = new ConcurrentHashMap<>();
+    this.profilingSampleRate = DEFAULT_PROFILING_SAMPLE_RATE;
+  }
+
+  /**
+   * Writes the statistics of all recorded histograms to the specified file,
+   * ordered by the total time that was recorded. The durations are written in
+   * microseconds.
+   *
+   * @param file
+   *          the file
+   */
+  public void dumpProfile(final File file) {
+    final List<TimingHistogram> sorted = new ArrayList<>(this.getHistograms());
+    sorted.sort(Comparator.comparingLong(TimingHistogram::getTotal).reversed());
+
+    final File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+
+    try (final PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+      writer.println("name;samples;total;mean;p50;p90;p99;max");
+      for (final TimingHistogram histogram : sorted) {
+        writer.println(String.format(Locale.ROOT, "%s;%d;%.1f;%.1f;%.1f;%.1f;%.1f;%.1f", histogram.getName(), histogram.getCount(), toMicros(histogram.getTotal()), histogram.getMean() / 1000.0, toMicros(histogram.getPercentile(50)), toMicros(histogram.getPercentile(90)), toMicros(histogram.getPercentile(99)), toMicros(histogram.getMax())));
+      }
+    } catch (final IOException e) {
+      log.log(Level.SEVERE, e.getMessage(), e);
+    }
   }
 
   /**
@@ -94,6 +177,23 @@ public class GameMetrics implements IUpdateable, IRenderable {
     return this.framesPerSecond;
   }
 
+  /**
+   * Gets the histogram with the specified name.
+   *
+   * @param name
+   *          the name of the histogram, e.g. {@link #PROFILE_TICK} or
+   *          {@link #PROFILE_UPDATE} followed by the class name of an
+   *          updatable
+   * @return the histogram or null if nothing was recorded under the name
+   */
+  public TimingHistogram getHistogram(final String name) {
+    return this.histograms.get(name);
+  }
+
+  public Collection<TimingHistogram> getHistograms() {
+    return Collections.unmodifiableCollection(this.histograms.values());
+  }
+
   public int getPackagesReceived() {
     return this.packagesReceived;
   }
@@ -111,6 +211,10 @@ public class GameMetrics implements IUpdateable, IRenderable {
     return this.ping;
   }
 
+  public int getProfilingSampleRate() {
+    return this.profilingSampleRate;
+  }
+
   public long getUpdatesPerSecond() {
     return this.updatesPerSecond;
   }
@@ -124,6 +228,31 @@ public class GameMetrics implements IUpdateable, IRenderable {
     return this.upStreamInBytes;
   }
 
+  /**
+   * Indicates whether the current frame of the render loop is sampled. Code
+   * that is rendered within the frame can use this to decide whether to record
+   * its durations.
+   *
+   * @return true, if the current frame is sampled
+   */
+  public boolean isFrameSampled() {
+    return this.frameSampled;
+  }
+
+  /**
+   * Indicates whether updatables and renderables are profiled per instance
+   * instead of per class.
+   *
+   * @return true, if they are profiled per instance
+   */
+  public boolean isProfilePerInstance() {
+    return this.profilePerInstance;
+  }
+
+  public boolean isProfiling() {
+    return this.profiling;
+  }
+
   public void packageReceived(final long size) {
     this.bytesReceived.add(size);
   }
@@ -132,10 +261,35 @@ public class GameMetrics implements IUpdateable, IRenderable {
     this.bytesSent.add(size);
   }
 
+  /**
+   * Records the specified duration in the histogram with the specified name.
+   * Nothing is recorded if profiling is disabled.
+   *
+   * @param name
+   *          the name of the histogram
+   * @param nanos
+   *          the duration in nanoseconds
+   */
+  public void record(final String name, final long nanos) {
+    if (!this.isProfiling()) {
+      return;
+    }
+
+    this.histograms.computeIfAbsent(name, TimingHistogram::new).record(nanos);
+  }
+
   public void recordNetworkTraffic() {
     Game.getLoop().attach(this);
   }
 
+  public void recordRender(final IRenderable renderable, final long nanos) {
+    this.record(this.getProfileName(RENDER_PROFILE_NAMES, renderable), nanos);
+  }
+
+  public void recordUpdate(final IUpdateable updatable, final long nanos) {
+    this.record(this.getProfileName(UPDATE_PROFILE_NAMES, updatable), nanos);
+  }
+
   @Override
   public void render(final Graphics2D g) {
 
@@ -171,6 +325,37 @@ public class GameMetrics implements IUpdateable, IRenderable {
     g.drawString(upsString, OFFSET_X, currentOffsetY);
   }
 
+  /**
+   * Removes all recorded histograms.
+   */
+  public void resetProfiling() {
+    this.histograms.clear();
+  }
+
+  /**
+   * Determines whether the specified frame of the render loop is sampled and
+   * remembers the result for {@link #isFrameSampled()}.
+   *
+   * @param frame
+   *          the number of the frame
+   * @return true, if the frame is sampled
+   */
+  public boolean sampleFrame(final long frame) {
+    this.frameSampled = this.sampleTick(frame);
+    return this.frameSampled;
+  }
+
+  /**
+   * Determines whether the specified tick of the game loop is sampled.
+   *
+   * @param tick
+   *          the tick
+   * @return true, if profiling is enabled and the tick is sampled
+   */
+  public boolean sampleTick(final long tick) {
+    return this.profiling && tick % this.profilingSampleRate == 0;
+  }
+
   /**
    * Sets the frames per second.
    *
@@ -192,6 +377,43 @@ public class GameMetrics implements IUpdateable, IRenderable {
     this.ping = ping;
   }
 
+  /**
+   * Sets whether updatables and renderables are profiled per instance instead
+   * of per class. Every profiled instance gets its own histogram, so this
+   * should only be enabled while looking for a specific instance.
+   *
+   * @param profilePerInstance
+   *          true to profile per instance
+   */
+  public void setProfilePerInstance(final boolean profilePerInstance) {
+    this.profilePerInstance = profilePerInstance;
+  }
+
+  /**
+   * Enables or disables profiling. The histograms that were recorded so far
+   * are kept until {@link #resetProfiling()} is called.
+   *
+   * @param profiling
+   *          true to enable profiling
+   */
+  public void setProfiling(final boolean profiling) {
+    this.profiling = profiling;
+    if (!profiling) {
+      this.frameSampled = false;
+    }
+  }
+
+  /**
+   * Sets how many ticks and frames pass between two sampled ones. A rate of 1
+   * samples every tick and frame.
+   *
+   * @param profilingSampleRate
+   *          the sample rate
+   */
+  public void setProfilingSampleRate(final int profilingSampleRate) {
+    this.profilingSampleRate = Math.max(1, profilingSampleRate);
+  }
+
   public void setUpdatesPerSecond(final long updatesPerSecond) {
     this.updatesPerSecond = updatesPerSecond;
     this.ups.add(this.updatesPerSecond);
@@ -217,4 +439,22 @@ public class GameMetrics implements IUpdateable, IRenderable {
       this.bytesReceived.clear();
     }
   }
+
+  private static double toMicros(final long nanos) {
+    return nanos / 1000.0;
+  }
+
+  private static ClassValue<String> createProfileNames(final String prefix) {
+    return new ClassValue<String>() {
+      @Override
+      protected String computeValue(final Class<?> type) {
+        return prefix + type.getName();
+      }
+    };
+  }
+
+  private String getProfileName(final ClassValue<String> profileNames, final Object profiled) {
+    final String name = profileNames.get(profiled.getClass());
+    return this.isProfilePerInstance() ? name + "@" + Integer.toHexString(System.identityHashCode(profiled)) : name;
+  }
 }
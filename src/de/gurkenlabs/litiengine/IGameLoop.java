@@ -14,6 +14,16 @@ public interface IGameLoop extends ILaunchable {
    */
   public void attach(final IUpdateable updatable);
 
+  /**
+   * Cancels the timed action with the specified index.
+   *
+   * @param index
+   *          the index of the action that was returned by
+   *          {@link #execute(int, Consumer)}
+   * @return true, if the action was scheduled and not yet executed
+   */
+  public boolean cancel(int index);
+
   public long convertToMs(final long ticks);
 
   public long convertToTicks(final int ms);
@@ -0,0 +1,27 @@
+package de.gurkenlabs.litiengine;
+
+/**
+ * An updatable that declares the phase of a tick in which it is updated and
+ * whether it can be updated in parallel with other updatables of the same
+ * phase. This is only considered by game loops with phased updates.
+ *
+ * @see GameLoop#setPhasedUpdates(boolean)
+ */
+public interface IPhasedUpdateable extends IUpdateable {
+
+  /**
+   * Gets the phase in which this instance is updated.
+   *
+   * @return the update phase
+   */
+  public UpdatePhase getUpdatePhase();
+
+  /**
+   * Determines whether this instance can be updated concurrently with other
+   * updatables of the same phase. This requires that the update only modifies
+   * the state of this instance or state that is safe for concurrent access.
+   *
+   * @return true, if this instance can be updated in parallel
+   */
+  public boolean isParallelUpdateSafe();
+}
@@ -16,6 +16,7 @@ public class RenderLoop extends Thread {
   private final IRenderComponent component;
   /** The game is running. */
   private boolean gameIsRunning = true;
+  private long frames;
   private final List<IRenderable> renderables;
 
   private int maxFps;
@@ -41,9 +42,19 @@ public class RenderLoop extends Thread {
       final long fpsWait = (long) (1.0 / this.maxFps * 1000);
       final long renderStart = System.nanoTime();
       try {
+        final GameMetrics metrics = Game.getMetrics();
+        final boolean sampled = metrics.sampleFrame(++this.frames);
         Game.getCamera().updateFocus();
         for (final IRenderable render : this.renderables) {
+          final long start = sampled ? System.nanoTime() : 0;
           this.component.render(render);
+          if (sampled) {
+            metrics.recordRender(render, System.nanoTime() - start);
+          }
+        }
+
+        if (sampled) {
+          metrics.record(GameMetrics.PROFILE_FRAME, System.nanoTime() - renderStart);
         }
 
         final long renderTime = (System.nanoTime() - renderStart) / 1000000;
@@ -0,0 +1,263 @@
+package de.gurkenlabs.litiengine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The actions that are scheduled on a game loop, ordered by the tick on which
+ * they are executed.
+ * <p>
+ * The actions are kept in a binary min-heap and indexed by their index in an
+ * open addressing hash table, so scheduling, rescheduling and canceling an
+ * action is O(log n) and a tick only touches the actions that are due. Neither
+ * of them boxes the index of an action. Actions with the same execution tick
+ * are executed in the order in which they were scheduled.
+ * </p>
+ */
+final class TimedActionQueue {
+  private static final int INITIAL_CAPACITY = 16;
+  private static final AtomicInteger executionIndex = new AtomicInteger(-1);
+
+  /**
+   * The actions by their index, with linear probing. The table is at most half
+   * full, so a lookup usually only checks one or two slots.
+   */
+  private TimedAction[] actions;
+  private TimedAction[] heap;
+  private int size;
+
+  TimedActionQueue() {
+    this.actions = new TimedAction[INITIAL_CAPACITY * 2];
+    this.heap = new TimedAction[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Removes the action with the specified index.
+   *
+   * @param index
+   *          the index of the action
+   * @return true, if the action was scheduled
+   */
+  synchronized boolean cancel(final int index) {
+    final TimedAction action = this.removeAction(index);
+    if (action == null) {
+      return false;
+    }
+
+    this.removeAt(action.heapIndex);
+    return true;
+  }
+
+  /**
+   * Executes all actions that are due on the specified tick. Actions that are
+   * scheduled while the due actions are executed are not executed before the
+   * next call.
+   *
+   * @param ticks
+   *          the current tick
+   */
+  void executeDue(final long ticks) {
+    final int lastIndex = executionIndex.get();
+    while (true) {
+      final TimedAction action;
+      synchronized (this) {
+        if (this.size == 0 || this.heap[0].executionTick > ticks || this.heap[0].index > lastIndex) {
+          return;
+        }
+
+        action = this.heap[0];
+        this.removeAction(action.index);
+        this.removeAt(0);
+      }
+
+      // the action is executed outside of the lock so it can schedule actions
+      action.action.accept(action.boxedIndex);
+    }
+  }
+
+  /**
+   * Schedules the specified action.
+   *
+   * @param executionTick
+   *          the tick on which the action is executed
+   * @param action
+   *          the action
+   * @return the index of the action
+   */
+  synchronized int schedule(final long executionTick, final Consumer<Integer> action) {
+    final TimedAction timedAction = new TimedAction(executionIndex.incrementAndGet(), executionTick, action);
+    if ((this.size + 1) * 2 > this.actions.length) {
+      final TimedAction[] previous = this.actions;
+      this.actions = new TimedAction[previous.length * 2];
+      for (final TimedAction scheduled : previous) {
+        if (scheduled != null) {
+          insert(this.actions, scheduled);
+        }
+      }
+    }
+
+    insert(this.actions, timedAction);
+    if (this.size == this.heap.length) {
+      this.heap = Arrays.copyOf(this.heap, this.size * 2);
+    }
+
+    timedAction.heapIndex = this.size;
+    this.heap[this.size++] = timedAction;
+    this.siftUp(timedAction.heapIndex);
+    return timedAction.index;
+  }
+
+  synchronized int size() {
+    return this.size;
+  }
+
+  /**
+   * Changes the tick on which the action with the specified index is executed.
+   *
+   * @param index
+   *          the index of the action
+   * @param executionTick
+   *          the new execution tick
+   */
+  synchronized void reschedule(final int index, final long executionTick) {
+    final TimedAction action = this.getAction(index);
+    if (action == null) {
+      return;
+    }
+
+    action.executionTick = executionTick;
+    this.siftDown(this.siftUp(action.heapIndex));
+  }
+
+  private static int getSlot(final int index, final int length) {
+    // the index is spread because consecutive indices would form long clusters
+    final int hash = index * 0x9E3779B9;
+    return (hash ^ hash >>> 16) & length - 1;
+  }
+
+  private static void insert(final TimedAction[] table, final TimedAction action) {
+    int slot = getSlot(action.index, table.length);
+    while (table[slot] != null) {
+      slot = slot + 1 & table.length - 1;
+    }
+
+    table[slot] = action;
+  }
+
+  private static boolean isBefore(final TimedAction action, final TimedAction other) {
+    return action.executionTick < other.executionTick || action.executionTick == other.executionTick && action.index < other.index;
+  }
+
+  private TimedAction getAction(final int index) {
+    final int mask = this.actions.length - 1;
+    for (int slot = getSlot(index, this.actions.length); this.actions[slot] != null; slot = slot + 1 & mask) {
+      if (this.actions[slot].index == index) {
+        return this.actions[slot];
+      }
+    }
+
+    return null;
+  }
+
+  private void move(final TimedAction action, final int heapIndex) {
+    this.heap[heapIndex] = action;
+    action.heapIndex = heapIndex;
+  }
+
+  private TimedAction removeAction(final int index) {
+    final int mask = this.actions.length - 1;
+    int gap = getSlot(index, this.actions.length);
+    while (this.actions[gap] != null && this.actions[gap].index != index) {
+      gap = gap + 1 & mask;
+    }
+
+    final TimedAction removed = this.actions[gap];
+    if (removed == null) {
+      return null;
+    }
+
+    // move the following actions of the cluster into the gap if their own slot
+    // is not between the gap and their current slot, so no lookup stops early
+    this.actions[gap] = null;
+    for (int slot = gap + 1 & mask; this.actions[slot] != null; slot = slot + 1 & mask) {
+      final int home = getSlot(this.actions[slot].index, this.actions.length);
+      if ((slot - home & mask) >= (slot - gap & mask)) {
+        this.actions[gap] = this.actions[slot];
+        this.actions[slot] = null;
+        gap = slot;
+      }
+    }
+
+    return removed;
+  }
+
+  private void removeAt(final int heapIndex) {
+    final TimedAction last = this.heap[--this.size];
+    this.heap[this.size] = null;
+    if (heapIndex == this.size) {
+      return;
+    }
+
+    this.move(last, heapIndex);
+    this.siftDown(this.siftUp(heapIndex));
+  }
+
+  private void siftDown(final int heapIndex) {
+    final TimedAction action = this.heap[heapIndex];
+    int current = heapIndex;
+    while (true) {
+      int child = current * 2 + 1;
+      if (child >= this.size) {
+        break;
+      }
+
+      if (child + 1 < this.size && isBefore(this.heap[child + 1], this.heap[child])) {
+        child++;
+      }
+
+      if (!isBefore(this.heap[child], action)) {
+        break;
+      }
+
+      this.move(this.heap[child], current);
+      current = child;
+    }
+
+    this.move(action, current);
+  }
+
+  private int siftUp(final int heapIndex) {
+    final TimedAction action = this.heap[heapIndex];
+    int current = heapIndex;
+    while (current > 0) {
+      final int parent = (current - 1) / 2;
+      if (!isBefore(action, this.heap[parent])) {
+        break;
+      }
+
+      this.move(this.heap[parent], current);
+      current = parent;
+    }
+
+    this.move(action, current);
+    return current;
+  }
+
+  private static final class TimedAction {
+    private final Consumer<Integer> action;
+
+    /** The index that is passed to the action, boxed once when scheduled. */
+    private final Integer boxedIndex;
+    private long executionTick;
+    private int heapIndex;
+    private final int index;
+
+    private TimedAction(final int index, final long executionTick, final Consumer<Integer> action) {
+      this.index = index;
+      this.boxedIndex = index;
+      this.executionTick = executionTick;
+      this.action = action;
+    }
+  }
+}
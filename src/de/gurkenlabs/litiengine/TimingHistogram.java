@@ -0,0 +1,148 @@
+package de.gurkenlabs.litiengine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds with a fixed relative precision.
+ * <p>
+ * Values are counted in buckets whose width grows with the magnitude of the
+ * values, similar to an HDR histogram: values below 64 ns are counted exactly
+ * and every larger value falls into one of 32 buckets per power of two, so
+ * percentiles are accurate to about 3% over the whole range of a long. Values
+ * can be recorded concurrently without locking.
+ * </p>
+ */
+public class TimingHistogram {
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+  private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT + SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray counts;
+  private final AtomicLong count;
+  private final AtomicLong max;
+  private final String name;
+  private final AtomicLong total;
+
+  public TimingHistogram(final String name) {
+    this.name = name;
+    this.counts = new AtomicLongArray(BUCKET_COUNT);
+    this.count = new AtomicLong();
+    this.max = new AtomicLong();
+    this.total = new AtomicLong();
+  }
+
+  public long getCount() {
+    return this.count.get();
+  }
+
+  /**
+   * Gets the largest recorded value.
+   *
+   * @return the largest value in nanoseconds
+   */
+  public long getMax() {
+    return this.max.get();
+  }
+
+  /**
+   * Gets the mean of all recorded values.
+   *
+   * @return the mean in nanoseconds or 0 if no value was recorded
+   */
+  public double getMean() {
+    final long recorded = this.getCount();
+    return recorded == 0 ? 0 : this.getTotal() / (double) recorded;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Gets the value below which the specified percentage of all recorded values
+   * lie.
+   *
+   * @param percentile
+   *          the percentile between 0 and 100
+   * @return the highest value that is equivalent to the percentile in
+   *         nanoseconds or 0 if no value was recorded
+   */
+  public long getPercentile(final double percentile) {
+    final long recorded = this.getCount();
+    if (recorded == 0) {
+      return 0;
+    }
+
+    final double clamped = Math.min(100, Math.max(0, percentile));
+    final long target = Math.max(1, (long) Math.ceil(clamped / 100.0 * recorded));
+    long cumulated = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      cumulated += this.counts.get(i);
+      if (cumulated >= target) {
+        return Math.min(highestEquivalentValue(i), this.getMax());
+      }
+    }
+
+    return this.getMax();
+  }
+
+  /**
+   * Gets the sum of all recorded values.
+   *
+   * @return the sum in nanoseconds
+   */
+  public long getTotal() {
+    return this.total.get();
+  }
+
+  /**
+   * Records the specified duration. Negative durations are recorded as 0.
+   *
+   * @param nanos
+   *          the duration in nanoseconds
+   */
+  public void record(final long nanos) {
+    final long value = Math.max(0, nanos);
+    this.counts.incrementAndGet(bucketIndex(value));
+    this.count.incrementAndGet();
+    this.total.addAndGet(value);
+    this.max.accumulateAndGet(value, Math::max);
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      this.counts.set(i, 0);
+    }
+
+    this.count.set(0);
+    this.max.set(0);
+    this.total.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return this.getName() + " (" + this.getCount() + " samples)";
+  }
+
+  static int bucketIndex(final long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+
+    // the shift keeps the highest SUB_BUCKET_BITS bits of the value
+    final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+    return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+  }
+
+  static long highestEquivalentValue(final int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+
+    final int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+    final long subBucket = index - (long) shift * SUB_BUCKET_HALF_COUNT;
+    return (subBucket << shift) + (1L << shift) - 1;
+  }
+}
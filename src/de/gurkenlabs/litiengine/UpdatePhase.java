@@ -0,0 +1,23 @@
+package de.gurkenlabs.litiengine;
+
+/**
+ * The phases of a tick in which the game loop updates its updatables if phased
+ * updates are enabled. The phases are executed in the order in which they are
+ * declared and every phase is completed before the next one starts.
+ *
+ * @see GameLoop#setPhasedUpdates(boolean)
+ */
+public enum UpdatePhase {
+  INPUT,
+
+  AI,
+
+  PHYSICS,
+
+  /** The phase of all updatables that don't declare a phase. */
+  DEFAULT,
+
+  EFFECTS,
+
+  AUDIO
+}
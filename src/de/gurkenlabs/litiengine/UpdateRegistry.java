@@ -0,0 +1,130 @@
+package de.gurkenlabs.litiengine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The updatables that are attached to a game loop.
+ * <p>
+ * The updatables are stored in an array of slots together with a map from each
+ * updatable to its slot, so attaching and detaching an updatable is O(1).
+ * Detached updatables leave an empty slot that is reused after the slots are
+ * compacted, which only happens at the start of an iteration so the slots
+ * don't move while the updatables are updated.
+ * </p>
+ */
+final class UpdateRegistry {
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** The minimum number of empty slots before the slots are compacted. */
+  private static final int MIN_COMPACTION_SLOTS = 16;
+
+  private final Map<IUpdateable, Integer> slots;
+  private int count;
+  private int emptySlots;
+  private IUpdateable[] entries;
+
+  UpdateRegistry() {
+    this.slots = new HashMap<>();
+    this.entries = new IUpdateable[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Adds the specified updatable to the end of the slots.
+   *
+   * @param updatable
+   *          the updatable
+   * @return false if the updatable was already attached
+   */
+  synchronized boolean attach(final IUpdateable updatable) {
+    if (this.slots.containsKey(updatable)) {
+      return false;
+    }
+
+    if (this.count == this.entries.length) {
+      this.entries = Arrays.copyOf(this.entries, this.count * 2);
+    }
+
+    this.entries[this.count] = updatable;
+    this.slots.put(updatable, this.count++);
+    return true;
+  }
+
+  synchronized boolean contains(final IUpdateable updatable) {
+    return this.slots.containsKey(updatable);
+  }
+
+  /**
+   * Removes the specified updatable by clearing its slot.
+   *
+   * @param updatable
+   *          the updatable
+   * @return true, if the updatable was attached
+   */
+  synchronized boolean detach(final IUpdateable updatable) {
+    final Integer slot = this.slots.remove(updatable);
+    if (slot == null) {
+      return false;
+    }
+
+    this.entries[slot] = null;
+    this.emptySlots++;
+    return true;
+  }
+
+  /**
+   * Performs the specified action for all attached updatables in the order in
+   * which they were attached. Updatables that are attached during the
+   * iteration are not included, updatables that are detached during the
+   * iteration are skipped if they were not reached yet.
+   *
+   * @param action
+   *          the action
+   */
+  void forEach(final Consumer<IUpdateable> action) {
+    final IUpdateable[] snapshot;
+    final int snapshotCount;
+    synchronized (this) {
+      if (this.emptySlots >= MIN_COMPACTION_SLOTS && this.emptySlots * 2 >= this.count) {
+        this.compact();
+      }
+
+      snapshot = this.entries;
+      snapshotCount = this.count;
+    }
+
+    for (int i = 0; i < snapshotCount; i++) {
+      final IUpdateable updatable = snapshot[i];
+      if (updatable != null) {
+        action.accept(updatable);
+      }
+    }
+  }
+
+  synchronized int size() {
+    return this.slots.size();
+  }
+
+  /**
+   * Moves all updatables to the front of the slots while keeping their order.
+   * The compacted slots are written to a new array because a previous
+   * iteration might still read the current one.
+   */
+  private void compact() {
+    final IUpdateable[] compacted = new IUpdateable[Math.max(INITIAL_CAPACITY, this.entries.length)];
+    int slot = 0;
+    for (int i = 0; i < this.count; i++) {
+      final IUpdateable updatable = this.entries[i];
+      if (updatable != null) {
+        compacted[slot] = updatable;
+        this.slots.put(updatable, slot++);
+      }
+    }
+
+    this.entries = compacted;
+    this.count = slot;
+    this.emptySlots = 0;
+  }
+}
@@ -13,6 +13,8 @@ public class ClientConfiguration extends ConfigurationGroup {
 
   private String country;
 
+  private boolean fixedTimestep;
+
   private String language;
 
   private Locale locale;
@@ -33,6 +35,7 @@ public class ClientConfiguration extends ConfigurationGroup {
     this.setUpdaterate(60);
     this.setMaxFps(60);
     this.setShowGameMetrics(false);
+    this.setFixedTimestep(false);
     this.setLanguage("en");
     this.setCountry("US");
   }
@@ -71,11 +74,26 @@ public class ClientConfiguration extends ConfigurationGroup {
     return this.updaterate;
   }
 
+  /**
+   * Indicates whether the game loop schedules its ticks with a fixed timestep
+   * instead of sleeping between them.
+   *
+   * @return true, if the game loop uses a fixed timestep
+   * @see de.gurkenlabs.litiengine.GameLoop.SchedulingMode#FIXED_TIMESTEP
+   */
+  public boolean isFixedTimestep() {
+    return this.fixedTimestep;
+  }
+
   public void setCountry(final String country) {
     this.country = country;
     this.locale = null;
   }
 
+  public void setFixedTimestep(final boolean fixedTimestep) {
+    this.fixedTimestep = fixedTimestep;
+  }
+
   public void setLanguage(final String language) {
     this.language = language;
     this.locale = null;
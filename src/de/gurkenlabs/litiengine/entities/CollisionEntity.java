@@ -2,6 +2,9 @@ package de.gurkenlabs.litiengine.entities;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import de.gurkenlabs.core.Align;
 import de.gurkenlabs.core.Valign;
@@ -51,6 +54,8 @@ public abstract class CollisionEntity extends Entity implements ICollisionEntity
 
   private Rectangle2D collisionBox;
 
+  private final List<Consumer<ICollisionEntity>> collisionBoxChangedConsumer = new CopyOnWriteArrayList<>();
+
   private float collisionBoxHeight;
 
   private float collisionBoxWidth;
@@ -65,7 +70,7 @@ public abstract class CollisionEntity extends Entity implements ICollisionEntity
     this.collision = info.collision();
     this.setCollisionBoxValign(info.valign());
     this.setCollisionBoxAlign(info.align());
-    this.collisionBox = this.getCollisionBox(this.getLocation());
+    this.updateCollisionBox();
   }
 
   @Override
@@ -135,6 +140,13 @@ public abstract class CollisionEntity extends Entity implements ICollisionEntity
    * @param collision
    *          the new collision
    */
+  @Override
+  public void onCollisionBoxChanged(final Consumer<ICollisionEntity> consumer) {
+    if (!this.collisionBoxChangedConsumer.contains(consumer)) {
+      this.collisionBoxChangedConsumer.add(consumer);
+    }
+  }
+
   @Override
   public void setCollision(final boolean collision) {
     this.collision = collision;
@@ -142,47 +154,54 @@ public abstract class CollisionEntity extends Entity implements ICollisionEntity
 
   public void setCollisionBoxAlign(final Align align) {
     this.align = align;
-    this.collisionBox = this.getCollisionBox(this.getLocation());
+    this.updateCollisionBox();
   }
 
   @Override
   public void setCollisionBoxHeight(final float collisionBoxHeight) {
     this.collisionBoxHeight = collisionBoxHeight;
-    this.collisionBox = this.getCollisionBox(this.getLocation());
+    this.updateCollisionBox();
   }
 
   public void setCollisionBoxValign(final Valign valign) {
     this.valign = valign;
-    this.collisionBox = this.getCollisionBox(this.getLocation());
+    this.updateCollisionBox();
   }
 
   @Override
   public void setCollisionBoxWidth(final float collisionBoxWidth) {
     this.collisionBoxWidth = collisionBoxWidth;
-    this.collisionBox = this.getCollisionBox(this.getLocation());
+    this.updateCollisionBox();
   }
 
   @Override
   public void setLocation(final Point2D location) {
     super.setLocation(location);
-    this.collisionBox = this.getCollisionBox(this.getLocation());
+    this.updateCollisionBox();
   }
 
   @Override
   public void setSize(final float width, final float height) {
     super.setSize(width, height);
-    this.collisionBox = this.getCollisionBox(this.getLocation());
+    this.updateCollisionBox();
   }
 
   @Override
   public void setHeight(final float height) {
     super.setHeight(height);
-    this.collisionBox = this.getCollisionBox(this.getLocation());
+    this.updateCollisionBox();
   }
 
   @Override
   public void setWidth(final float width) {
     super.setWidth(width);
+    this.updateCollisionBox();
+  }
+
+  private void updateCollisionBox() {
     this.collisionBox = this.getCollisionBox(this.getLocation());
+    for (final Consumer<ICollisionEntity> consumer : this.collisionBoxChangedConsumer) {
+      consumer.accept(this);
+    }
   }
 }
@@ -1,14 +1,19 @@
 package de.gurkenlabs.litiengine.entities;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.Area;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 import de.gurkenlabs.litiengine.Game;
 import de.gurkenlabs.litiengine.environment.IEnvironment;
@@ -16,6 +21,18 @@ import de.gurkenlabs.litiengine.graphics.IVision;
 
 /**
  * The Class LitiVision.
+ * <p>
+ * The vision is tracked on a grid with the resolution of the map's tiles. Each
+ * cell counts the friendly entities that see it, and these counts are only
+ * updated for entities that moved to another cell. The fog of war is a mask
+ * image with one pixel per cell that is scaled to the size of the map when it
+ * is rendered.
+ * </p>
+ * <p>
+ * Entities move during the ticks of the game loop, so the grid is updated
+ * lazily by the first query or rendering of each tick. Without a running game
+ * loop, it's updated on every query.
+ * </p>
  */
 public class CombatEntityVision implements IVision {
 
@@ -27,10 +44,34 @@ public class CombatEntityVision implements IVision {
 
   private final IEnvironment environment;
 
-  private Shape fogOfWar;
+  /** The cells that are currently revealed by each friendly entity. */
+  private final Map<ICombatEntity, VisionStamp> stamps;
+
+  private int cellHeight;
+
+  private int cellWidth;
+
+  private int columns;
+
+  private BufferedImage fogOfWar;
 
   private Shape renderVisionShape;
 
+  private int rows;
+
+  /** The vision radius with which the current stamps were applied. */
+  private int stampRadius;
+
+  private long updateCount;
+
+  /** The tick of the game loop in which the grid was last updated. */
+  private long updatedTick = -1;
+
+  /** The number of friendly entities that see each cell. */
+  private int[] visibility;
+
+  private volatile ICombatEntity[] visibleEntities = new ICombatEntity[0];
+
   /** The vision diameter. */
   private int visionDiameter;
 
@@ -48,6 +89,7 @@ public class CombatEntityVision implements IVision {
     this.combatEntity = combatEntity;
     this.visionRadius = this.combatEntity.getAttributes().getVision().getCurrentValue();
     this.visionDiameter = this.combatEntity.getAttributes().getVision().getCurrentValue() * 2;
+    this.stamps = new IdentityHashMap<>();
   }
 
   /*
@@ -67,13 +109,14 @@ public class CombatEntityVision implements IVision {
    */
   @Override
   public boolean contains(final Point2D point) {
-    for (final ICombatEntity entity : this.environment.getCombatEntities()) {
-      if (entity.isFriendly(this.combatEntity) && this.getMapVisionCircle(entity).contains(point)) {
-        return true;
-      }
+    this.updateIfOutdated();
+    if (point.getX() < 0 || point.getY() < 0) {
+      return false;
     }
 
-    return false;
+    final int column = (int) (point.getX() / this.cellWidth);
+    final int row = (int) (point.getY() / this.cellHeight);
+    return column < this.columns && row < this.rows && this.visibility[row * this.columns + column] > 0;
   }
 
   /*
@@ -83,8 +126,15 @@ public class CombatEntityVision implements IVision {
    */
   @Override
   public Shape getRenderVisionShape() {
+    this.updateIfOutdated();
+
     if (this.renderVisionShape == null) {
-      this.updateVisionShape();
+      final Path2D renderPath = new Path2D.Float();
+      for (final ICombatEntity entity : this.visibleEntities) {
+        renderPath.append(this.getRenderVisionArc(entity), false);
+      }
+
+      this.renderVisionShape = renderPath;
     }
 
     return this.renderVisionShape;
@@ -97,9 +147,16 @@ public class CombatEntityVision implements IVision {
    */
   @Override
   public boolean intersects(final Rectangle2D shape) {
-    for (final ICombatEntity entity : this.environment.getCombatEntities()) {
-      if (entity.isFriendly(this.combatEntity) && this.getMapVisionCircle(entity).intersects(shape)) {
-        return true;
+    this.updateIfOutdated();
+    final int minColumn = Math.max(0, (int) Math.floor(shape.getMinX() / this.cellWidth));
+    final int minRow = Math.max(0, (int) Math.floor(shape.getMinY() / this.cellHeight));
+    final int maxColumn = Math.min(this.columns - 1, (int) Math.floor(shape.getMaxX() / this.cellWidth));
+    final int maxRow = Math.min(this.rows - 1, (int) Math.floor(shape.getMaxY() / this.cellHeight));
+    for (int row = minRow; row <= maxRow; row++) {
+      for (int column = minColumn; column <= maxColumn; column++) {
+        if (this.visibility[row * this.columns + column] > 0) {
+          return true;
+        }
       }
     }
 
@@ -112,9 +169,7 @@ public class CombatEntityVision implements IVision {
    */
   @Override
   public void renderFogOfWar(final Graphics2D g) {
-    if (this.fogOfWar == null) {
-      return;
-    }
+    this.updateIfOutdated();
 
     final AffineTransform oldTransform = g.getTransform();
     final AffineTransform at = new AffineTransform();
@@ -122,8 +177,7 @@ public class CombatEntityVision implements IVision {
     at.translate(Game.getCamera().getPixelOffsetX(), Game.getCamera().getPixelOffsetY());
 
     g.setTransform(at);
-    g.setColor(FogOfWarColor);
-    g.fill(this.fogOfWar);
+    this.drawFogOfWar(g);
     g.setTransform(oldTransform);
   }
 
@@ -135,6 +189,8 @@ public class CombatEntityVision implements IVision {
    */
   @Override
   public void renderMinimapFogOfWar(final Graphics2D g, final float minimapScale, final int x, final int y) {
+    this.updateIfOutdated();
+
     final AffineTransform oldTransform = g.getTransform();
 
     final AffineTransform at = new AffineTransform();
@@ -142,8 +198,7 @@ public class CombatEntityVision implements IVision {
     at.scale(minimapScale, minimapScale);
 
     g.setTransform(at);
-    g.setColor(FogOfWarColor);
-    g.fill(this.fogOfWar);
+    this.drawFogOfWar(g);
     g.setTransform(oldTransform);
   }
 
@@ -154,27 +209,39 @@ public class CombatEntityVision implements IVision {
 
   @Override
   public void updateVisionShape() {
-    final Path2D path = new Path2D.Float();
-    final Path2D renderPath = new Path2D.Float();
-    path.append(this.getMapVisionCircle(this.combatEntity), false);
-    renderPath.append(this.getRenderVisionArc(this.combatEntity), false);
+    this.updatedTick = getCurrentTick();
+    this.initGrid();
+    if (this.stampRadius != this.visionRadius) {
+      // the vision radius changed so all cells need to be revealed again
+      for (final VisionStamp stamp : this.stamps.values()) {
+        this.stamp(stamp.column, stamp.row, -1);
+      }
+
+      this.stamps.clear();
+      this.stampRadius = this.visionRadius;
+    }
 
+    this.updateCount++;
+    this.reveal(this.combatEntity);
     for (final ICombatEntity entity : this.environment.getCombatEntities()) {
       if (entity.isFriendly(this.combatEntity) && !entity.equals(this.combatEntity)) {
-        path.append(this.getMapVisionCircle(entity), false);
-        renderPath.append(this.getRenderVisionArc(entity), false);
+        this.reveal(entity);
       }
     }
 
-    this.renderVisionShape = renderPath;
-
-    final float width = (float) this.environment.getMap().getSizeInPixels().getWidth();
-    final float height = (float) this.environment.getMap().getSizeInPixels().getHeight();
-    final Rectangle2D rect = new Rectangle2D.Float(0, 0, width, height);
-    final Area rectangleArea = new Area(rect);
-    rectangleArea.subtract(new Area(path));
+    // hide the cells of entities that are no longer friendly or were removed
+    final Iterator<VisionStamp> iterator = this.stamps.values().iterator();
+    while (iterator.hasNext()) {
+      final VisionStamp stamp = iterator.next();
+      if (stamp.updateCount != this.updateCount) {
+        this.stamp(stamp.column, stamp.row, -1);
+        iterator.remove();
+      }
+    }
 
-    this.fogOfWar = rectangleArea;
+    // the render shape depends on the camera and is created when it's requested
+    this.visibleEntities = this.stamps.keySet().toArray(new ICombatEntity[this.stamps.size()]);
+    this.renderVisionShape = null;
   }
 
   protected ICombatEntity getCombatEntity() {
@@ -185,27 +252,30 @@ public class CombatEntityVision implements IVision {
     return this.environment;
   }
 
-  protected Shape getFogOfWar() {
+  /**
+   * Gets the fog of war mask that contains one pixel per tile of the map.
+   *
+   * @return the fog of war mask or null if the vision was not updated yet
+   */
+  protected BufferedImage getFogOfWar() {
     return this.fogOfWar;
   }
 
-  protected void setFogOfWar(final Shape fogOfWar) {
-    this.fogOfWar = fogOfWar;
-  }
-
   protected void setRenderVisionShape(final Shape renderVisionShape) {
     this.renderVisionShape = renderVisionShape;
   }
 
-  /**
-   * Gets the map vision circle.
-   *
-   * @param mob
-   *          the mob
-   * @return the map vision circle
-   */
-  private Ellipse2D getMapVisionCircle(final ICombatEntity entity) {
-    return new Ellipse2D.Double(entity.getDimensionCenter().getX() - this.visionRadius, entity.getDimensionCenter().getY() - this.visionRadius, this.visionDiameter, this.visionDiameter);
+  private void drawFogOfWar(final Graphics2D g) {
+    final Object interpolation = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.drawImage(this.fogOfWar, 0, 0, this.columns * this.cellWidth, this.rows * this.cellHeight, null);
+    if (interpolation != null) {
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+    }
+  }
+
+  private static long getCurrentTick() {
+    return Game.getLoop() != null ? Game.getLoop().getTicks() : -1;
   }
 
   /**
@@ -220,4 +290,110 @@ public class CombatEntityVision implements IVision {
     return new Ellipse2D.Double(renderDimensionCenter.getX() - this.visionRadius, renderDimensionCenter.getY() - this.visionRadius, this.visionDiameter, this.visionDiameter);
   }
 
+  /**
+   * Creates the grid and the fog of war mask if they don't exist yet or the
+   * size of the map changed.
+   */
+  private void initGrid() {
+    final Dimension tileSize = this.environment.getMap().getTileSize();
+    final Dimension mapSize = this.environment.getMap().getSizeInPixels();
+    final int width = Math.max(1, tileSize.width);
+    final int height = Math.max(1, tileSize.height);
+    final int newColumns = Math.max(1, (mapSize.width + width - 1) / width);
+    final int newRows = Math.max(1, (mapSize.height + height - 1) / height);
+    if (this.visibility != null && this.cellWidth == width && this.cellHeight == height && this.columns == newColumns && this.rows == newRows) {
+      return;
+    }
+
+    this.cellWidth = width;
+    this.cellHeight = height;
+    this.columns = newColumns;
+    this.rows = newRows;
+    this.visibility = new int[newColumns * newRows];
+    this.stamps.clear();
+
+    this.fogOfWar = new BufferedImage(newColumns, newRows, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D g = this.fogOfWar.createGraphics();
+    g.setColor(FogOfWarColor);
+    g.fillRect(0, 0, newColumns, newRows);
+    g.dispose();
+  }
+
+  /**
+   * Updates the grid if it wasn't updated during the current tick of the game
+   * loop or if there is no game loop to tell whether entities moved since the
+   * last update.
+   */
+  private void updateIfOutdated() {
+    final long tick = getCurrentTick();
+    if (this.visibility == null || tick == -1 || tick != this.updatedTick) {
+      this.updateVisionShape();
+    }
+  }
+
+  /**
+   * Reveals the cells around the specified entity. The cells are only updated
+   * if the entity moved to another cell since the last update.
+   */
+  private void reveal(final ICombatEntity entity) {
+    final Point2D center = entity.getDimensionCenter();
+    final int column = (int) Math.floor(center.getX() / this.cellWidth);
+    final int row = (int) Math.floor(center.getY() / this.cellHeight);
+
+    VisionStamp stamp = this.stamps.get(entity);
+    if (stamp == null) {
+      stamp = new VisionStamp(column, row);
+      this.stamps.put(entity, stamp);
+      this.stamp(column, row, 1);
+    } else if (stamp.column != column || stamp.row != row) {
+      this.stamp(stamp.column, stamp.row, -1);
+      stamp.column = column;
+      stamp.row = row;
+      this.stamp(column, row, 1);
+    }
+
+    stamp.updateCount = this.updateCount;
+  }
+
+  /**
+   * Adds the specified delta to the visibility of all cells whose centers lie
+   * within the vision radius around the specified cell and updates the fog of
+   * war mask for cells that became visible or invisible.
+   */
+  private void stamp(final int column, final int row, final int delta) {
+    final int fogOfWarColor = FogOfWarColor.getRGB();
+    final long radiusSquared = (long) this.stampRadius * this.stampRadius;
+    final int columnRange = this.stampRadius / this.cellWidth;
+    final int rowRange = this.stampRadius / this.cellHeight;
+    for (int y = Math.max(0, row - rowRange); y <= Math.min(this.rows - 1, row + rowRange); y++) {
+      final long dy = (long) (y - row) * this.cellHeight;
+      for (int x = Math.max(0, column - columnRange); x <= Math.min(this.columns - 1, column + columnRange); x++) {
+        final long dx = (long) (x - column) * this.cellWidth;
+        if (dx * dx + dy * dy > radiusSquared) {
+          continue;
+        }
+
+        final int index = y * this.columns + x;
+        final int previous = this.visibility[index];
+        this.visibility[index] += delta;
+        if (previous == 0 && this.visibility[index] > 0) {
+          this.fogOfWar.setRGB(x, y, 0);
+        } else if (previous > 0 && this.visibility[index] == 0) {
+          this.fogOfWar.setRGB(x, y, fogOfWarColor);
+        }
+      }
+    }
+  }
+
+  private static final class VisionStamp {
+    private int column;
+    private int row;
+    private long updateCount;
+
+    private VisionStamp(final int column, final int row) {
+      this.column = column;
+      this.row = row;
+    }
+  }
+
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package de.gurkenlabs.litiengine.entities;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.function.Consumer;
 
 public interface ICollisionEntity extends IEntity {
   public boolean canCollideWith(ICollisionEntity otherEntity);
@@ -36,6 +37,15 @@ public interface ICollisionEntity extends IEntity {
    */
   public boolean hasCollision();
 
+  /**
+   * Adds the specified consumer that is notified after the collision box of
+   * this entity has changed, e.g. because the entity was moved or resized.
+   *
+   * @param consumer
+   *          the consumer
+   */
+  public void onCollisionBoxChanged(Consumer<ICollisionEntity> consumer);
+
   /**
    * Sets the collision.
    *
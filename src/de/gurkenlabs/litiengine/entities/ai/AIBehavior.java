@@ -1,9 +1,11 @@
 package de.gurkenlabs.litiengine.entities.ai;
 
+import de.gurkenlabs.litiengine.IPhasedUpdateable;
+import de.gurkenlabs.litiengine.UpdatePhase;
 import de.gurkenlabs.litiengine.entities.Entity;
 import de.gurkenlabs.states.StateMachine;
 
-public class AIBehavior<T extends Entity> extends StateMachine implements IEntityController<T> {
+public class AIBehavior<T extends Entity> extends StateMachine implements IEntityController<T>, IPhasedUpdateable {
   private final T entity;
 
   protected AIBehavior(final T entity) {
@@ -15,4 +17,19 @@ public class AIBehavior<T extends Entity> extends StateMachine implements IEntit
   public T getEntity() {
     return this.entity;
   }
+
+  @Override
+  public UpdatePhase getUpdatePhase() {
+    return UpdatePhase.AI;
+  }
+
+  /**
+   * AI behaviors are updated sequentially by default because their states can
+   * access any state of the game. Behaviors whose states only affect their own
+   * entity can override this method to be updated in parallel.
+   */
+  @Override
+  public boolean isParallelUpdateSafe() {
+    return false;
+  }
 }
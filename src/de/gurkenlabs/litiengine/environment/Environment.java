@@ -25,6 +25,7 @@ import java.util.stream.Collectors;
 
 import de.gurkenlabs.configuration.Quality;
 import de.gurkenlabs.litiengine.Game;
+import de.gurkenlabs.litiengine.GameMetrics;
 import de.gurkenlabs.litiengine.IUpdateable;
 import de.gurkenlabs.litiengine.entities.Collider;
 import de.gurkenlabs.litiengine.entities.Direction;
@@ -41,6 +42,7 @@ import de.gurkenlabs.litiengine.environment.tilemap.IMapObjectLayer;
 import de.gurkenlabs.litiengine.environment.tilemap.MapArea;
 import de.gurkenlabs.litiengine.environment.tilemap.MapObjectProperty;
 import de.gurkenlabs.litiengine.environment.tilemap.MapObjectType;
+import de.gurkenlabs.litiengine.environment.tilemap.MapOrientation;
 import de.gurkenlabs.litiengine.environment.tilemap.MapProperty;
 import de.gurkenlabs.litiengine.environment.tilemap.MapUtilities;
 import de.gurkenlabs.litiengine.environment.tilemap.Spawnpoint;
@@ -48,6 +50,7 @@ import de.gurkenlabs.litiengine.environment.tilemap.StaticShadow;
 import de.gurkenlabs.litiengine.environment.tilemap.StaticShadow.StaticShadowType;
 import de.gurkenlabs.litiengine.environment.tilemap.TmxMapLoader;
 import de.gurkenlabs.litiengine.graphics.AmbientLight;
+import de.gurkenlabs.litiengine.graphics.EntityRenderList;
 import de.gurkenlabs.litiengine.graphics.IRenderable;
 import de.gurkenlabs.litiengine.graphics.LightSource;
 import de.gurkenlabs.litiengine.graphics.RenderEngine;
@@ -72,6 +75,7 @@ public class Environment implements IEnvironment {
 
   private final List<Consumer<Graphics2D>> entitiesRenderedConsumer;
   private final List<IRenderable> groundRenderable;
+  private final Map<RenderType, EntityRenderList> renderLists;
   private final List<Consumer<IEnvironment>> initializedConsumer;
   private final List<Consumer<IEnvironment>> loadedConsumer;
 
@@ -132,6 +136,10 @@ public class Environment implements IEnvironment {
     this.entities.put(RenderType.GROUND, new ConcurrentHashMap<>());
     this.entities.put(RenderType.NORMAL, new ConcurrentHashMap<>());
     this.entities.put(RenderType.OVERLAY, new ConcurrentHashMap<>());
+    this.renderLists = new ConcurrentHashMap<>();
+    this.renderLists.put(RenderType.GROUND, new EntityRenderList(false));
+    this.renderLists.put(RenderType.NORMAL, new EntityRenderList(true));
+    this.renderLists.put(RenderType.OVERLAY, new EntityRenderList(false));
 
     this.combatEntities = new ConcurrentHashMap<>();
     this.movableEntities = new ConcurrentHashMap<>();
@@ -183,6 +191,9 @@ public class Environment implements IEnvironment {
 
     if (entity instanceof LightSource) {
       this.lightSources.add((LightSource) entity);
+      if (this.getAmbientLight() != null) {
+        this.getAmbientLight().add((LightSource) entity);
+      }
     }
 
     if (entity instanceof Trigger) {
@@ -205,7 +216,12 @@ public class Environment implements IEnvironment {
       this.load(entity);
     }
 
-    this.entities.get(entity.getRenderType()).put(entity.getMapId(), entity);
+    final IEntity previous = this.entities.get(entity.getRenderType()).put(entity.getMapId(), entity);
+    if (previous != null) {
+      this.renderLists.get(entity.getRenderType()).remove(previous);
+    }
+
+    this.renderLists.get(entity.getRenderType()).add(entity);
   }
 
   @Override
@@ -239,6 +255,7 @@ public class Environment implements IEnvironment {
     this.entities.get(RenderType.GROUND).clear();
     this.entities.get(RenderType.NORMAL).clear();
     this.entities.get(RenderType.OVERLAY).clear();
+    this.renderLists.values().forEach(EntityRenderList::clear);
     this.initialized = false;
   }
 
@@ -705,6 +722,7 @@ public class Environment implements IEnvironment {
     }
 
     this.entities.get(entity.getRenderType()).entrySet().removeIf(e -> e.getValue().getMapId() == entity.getMapId());
+    this.renderLists.get(entity.getRenderType()).remove(entity);
     for (String tag : entity.getTags()) {
       if (this.entitiesByTag.containsKey(tag)) {
         this.entitiesByTag.get(tag).remove(entity);
@@ -717,6 +735,10 @@ public class Environment implements IEnvironment {
 
     if (entity instanceof LightSource) {
       this.lightSources.remove(entity);
+      if (this.getAmbientLight() != null) {
+        this.getAmbientLight().remove((LightSource) entity);
+      }
+
       this.addStaticShadows();
     }
 
@@ -773,37 +795,55 @@ public class Environment implements IEnvironment {
   public void render(final Graphics2D g) {
     g.scale(Game.getCamera().getRenderScale(), Game.getCamera().getRenderScale());
 
+    final GameMetrics metrics = Game.getMetrics();
+    final boolean sampled = metrics.isFrameSampled();
+    long stageStart = sampled ? System.nanoTime() : 0;
+
     Game.getRenderEngine().renderMap(g, this.getMap());
     this.informConsumers(g, this.mapRenderedConsumer);
+    stageStart = recordRenderStage(metrics, sampled, GameMetrics.PROFILE_RENDER_MAP, stageStart);
 
     for (final IRenderable rend : this.getGroundRenderable()) {
       rend.render(g);
     }
 
-    Game.getRenderEngine().renderEntities(g, this.entities.get(RenderType.GROUND).values(), false);
+    Game.getRenderEngine().renderEntities(g, this.renderLists.get(RenderType.GROUND));
     if (Game.getConfiguration().graphics().getGraphicQuality() == Quality.VERYHIGH) {
       Game.getRenderEngine().renderEntities(g, this.getLightSources(), false);
     }
 
-    Game.getRenderEngine().renderEntities(g, this.entities.get(RenderType.NORMAL).values());
+    Game.getRenderEngine().renderEntities(g, this.renderLists.get(RenderType.NORMAL));
     this.informConsumers(g, this.entitiesRenderedConsumer);
+    stageStart = recordRenderStage(metrics, sampled, GameMetrics.PROFILE_RENDER_ENTITIES, stageStart);
 
     Game.getRenderEngine().renderLayers(g, this.getMap(), RenderType.OVERLAY);
 
-    Game.getRenderEngine().renderEntities(g, this.entities.get(RenderType.OVERLAY).values(), false);
+    Game.getRenderEngine().renderEntities(g, this.renderLists.get(RenderType.OVERLAY));
+    final long overlayTime = sampled ? System.nanoTime() - stageStart : 0;
+    stageStart = sampled ? System.nanoTime() : 0;
 
     // render static shadows
     RenderEngine.renderImage(g, this.getStaticShadowImage(), Game.getCamera().getViewPortLocation(0, 0));
+    stageStart = recordRenderStage(metrics, sampled, GameMetrics.PROFILE_RENDER_SHADOWS, stageStart);
 
     if (this.getAmbientLight() != null && this.getAmbientLight().getAlpha() != 0) {
       RenderEngine.renderImage(g, this.getAmbientLight().getImage(), Game.getCamera().getViewPortLocation(0, 0));
     }
 
+    stageStart = recordRenderStage(metrics, sampled, GameMetrics.PROFILE_RENDER_AMBIENT_LIGHT, stageStart);
+
     for (final IRenderable rend : this.getOverlayRenderable()) {
       rend.render(g);
     }
 
     this.informConsumers(g, this.overlayRenderedConsumer);
+
+    // the overlay renderables are rendered on top of the light and belong to
+    // the overlay stage
+    if (sampled) {
+      metrics.record(GameMetrics.PROFILE_RENDER_OVERLAY, overlayTime + System.nanoTime() - stageStart);
+    }
+
     g.scale(1.0 / Game.getCamera().getRenderScale(), 1.0 / Game.getCamera().getRenderScale());
   }
 
@@ -818,6 +858,10 @@ public class Environment implements IEnvironment {
       this.unload(entity);
     }
 
+    if (this.getMap() != null && this.getMap().getOrientation() == MapOrientation.ORTHOGONAL) {
+      Game.getRenderEngine().getMapRenderer(this.getMap().getOrientation()).clearCache(this.getMap());
+    }
+
     this.loaded = false;
   }
 
@@ -1025,6 +1069,22 @@ public class Environment implements IEnvironment {
     }
   }
 
+  /**
+   * Records the time since the start of a render stage if the current frame is
+   * sampled.
+   *
+   * @return the start of the next stage
+   */
+  private static long recordRenderStage(final GameMetrics metrics, final boolean sampled, final String stage, final long stageStart) {
+    if (!sampled) {
+      return 0;
+    }
+
+    final long now = System.nanoTime();
+    metrics.record(stage, now - stageStart);
+    return now;
+  }
+
   /**
    * Loads the specified entiy by performing the following steps:
    * <ol>
@@ -8,6 +8,15 @@ import java.awt.image.BufferedImage;
  * The Interface IMapRenderer.
  */
 public interface IMapRenderer {
+  /**
+   * Removes all cached renderings of the specified map. This needs to be called
+   * when the map is unloaded.
+   *
+   * @param map
+   *          the map
+   */
+  public void clearCache(IMap map);
+
   /**
    * Gets the map image.
    *
@@ -24,6 +33,22 @@ public interface IMapRenderer {
    */
   public MapOrientation getSupportedOrientation();
 
+  /**
+   * Invalidates the cached rendering of the tile at the specified location so
+   * that it is updated with the next rendering. This needs to be called after a
+   * tile has been changed at runtime.
+   *
+   * @param map
+   *          the map
+   * @param layer
+   *          the layer that contains the changed tile
+   * @param x
+   *          the x coordinate of the tile
+   * @param y
+   *          the y coordinate of the tile
+   */
+  public void invalidateTile(IMap map, ITileLayer layer, int x, int y);
+
   /**
    * Renders the entire map (without overlay layers) onto the specified graphics
    * object. The resulting map image of this method is cached and therefore
@@ -2,6 +2,7 @@ package de.gurkenlabs.litiengine.environment.tilemap;
 
 import java.awt.geom.Point2D;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The Interface ITileLayer.
@@ -25,4 +26,26 @@ public interface ITileLayer extends ILayer {
    * @return the tiles
    */
   public List<ITile> getTiles();
+
+  /**
+   * Adds the specified consumer that is notified after a tile of this layer
+   * has been changed.
+   *
+   * @param consumer
+   *          the consumer
+   */
+  public void onTileChanged(Consumer<ITile> consumer);
+
+  /**
+   * Sets the grid id of the tile at the specified location and notifies the
+   * registered tile changed consumers. A grid id of 0 removes the tile.
+   *
+   * @param x
+   *          the x coordinate of the tile
+   * @param y
+   *          the y coordinate of the tile
+   * @param gridId
+   *          the new grid id
+   */
+  public void setGridId(int x, int y, int gridId);
 }
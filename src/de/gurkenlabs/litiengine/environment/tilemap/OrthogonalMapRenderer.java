@@ -2,17 +2,24 @@ package de.gurkenlabs.litiengine.environment.tilemap;
 
 import java.awt.AlphaComposite;
 import java.awt.Composite;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
-import java.awt.Image;
 import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.IntStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 import de.gurkenlabs.litiengine.Game;
 import de.gurkenlabs.litiengine.graphics.ImageCache;
@@ -26,62 +33,84 @@ import de.gurkenlabs.util.MathUtilities;
  * The Class OrthogonalMapRenderer.
  */
 public class OrthogonalMapRenderer implements IMapRenderer {
+  /** The size in pixels of the chunks in which static tiles are cached. */
+  public static final int CHUNK_SIZE = 512;
 
   /**
-   * Gets the cache key.
-   *
-   * @param map
-   *          the map
-   * @return the cache key
+   * The minimum number of cached chunks before the least recently used are
+   * evicted.
    */
-  public static String getCacheKey(final IMap map) {
-    return MessageFormat.format("map_{0}_version_{1}", map.getFileName(), map.getCustomProperty("version") != null ? map.getCustomProperty("version") : map.getVersion());
-  }
+  public static final int DEFAULT_MIN_CACHED_CHUNKS = 64;
 
-  private static Image getTileImage(final IMap map, final ITile tile) {
-    if (tile == null) {
-      return null;
-    }
+  private static final int CHUNK_COORDINATE_BITS = 24;
+  private static final long CHUNK_COORDINATE_MASK = (1L << CHUNK_COORDINATE_BITS) - 1;
 
-    final ITileset tileset = MapUtilities.findTileSet(map, tile);
-    if (tileset == null || tileset.getFirstGridId() > tile.getGridId()) {
-      return null;
-    }
+  private final Map<Long, BufferedImage> chunks;
 
-    // get the grid id relative to the sprite sheet since we use a 0 based
-    // approach to calculate the position
-    int index = tile.getGridId() - tileset.getFirstGridId();
-
-    // support for animated tiles
-    final ITileAnimation animation = MapUtilities.getAnimation(map, index);
-    if (animation != null && !animation.getFrames().isEmpty()) {
-      final long playedMs = Game.getLoop().getTime().getMilliseconds();
-
-      final int totalDuration = animation.getTotalDuration();
-      final long animationsPlayed = playedMs / totalDuration;
-
-      final long deltaTicks = playedMs - animationsPlayed * totalDuration;
-      int currentPlayTime = 0;
-      for (final ITileAnimationFrame frame : animation.getFrames()) {
-        currentPlayTime += frame.getDuration();
-        if (deltaTicks < currentPlayTime) {
-          // found the current animation frame
-          index = frame.getTileId();
-          break;
-        }
-      }
+  /** The map to which the cached chunks belong. */
+  private IMap chunkMap;
+  private int chunkCapacity;
+  private final Map<ITileLayer, Integer> layerIds;
+  private final int minCachedChunks;
 
-    }
+  /** The layers whose tile changes invalidate the cached chunks. */
+  private final Set<ITileLayer> observedLayers;
 
-    Spritesheet sprite = Spritesheet.find(tileset.getImage().getSource());
-    if (sprite == null) {
-      sprite = Spritesheet.load(tileset);
-      if (sprite == null) {
-        return null;
+  /**
+   * Instantiates a new orthogonal map renderer that caches at least
+   * {@link #DEFAULT_MIN_CACHED_CHUNKS} chunks of static tiles.
+   */
+  public OrthogonalMapRenderer() {
+    this(DEFAULT_MIN_CACHED_CHUNKS);
+  }
+
+  /**
+   * Instantiates a new orthogonal map renderer. The number of cached chunks
+   * grows with the number of chunks that are needed to cover the viewport on
+   * all tile layers of the rendered map.
+   *
+   * @param minCachedChunks
+   *          The minimum number of chunks of static tiles that are cached.
+   */
+  public OrthogonalMapRenderer(final int minCachedChunks) {
+    this.minCachedChunks = minCachedChunks;
+    this.chunkCapacity = minCachedChunks;
+    this.layerIds = new IdentityHashMap<>();
+    this.observedLayers = Collections.newSetFromMap(new WeakHashMap<>());
+    this.chunks = new LinkedHashMap<Long, BufferedImage>(minCachedChunks, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Long, BufferedImage> eldest) {
+        return this.size() > OrthogonalMapRenderer.this.chunkCapacity;
       }
+    };
+  }
+
+  /**
+   * Removes all cached chunks of the specified map.
+   *
+   * @param map
+   *          the map
+   */
+  @Override
+  public synchronized void clearCache(final IMap map) {
+    if (map == this.chunkMap) {
+      this.chunks.clear();
+      this.layerIds.clear();
+      this.chunkMap = null;
     }
+  }
 
-    return sprite.getSprite(index);
+  /**
+   * Gets the cache key.
+   *
+   * @param map
+   *          the map
+   * @return the cache key
+   */
+  public static String getCacheKey(final IMap map) {
+    return MessageFormat.format("map_{0}_version_{1}", map.getFileName(), map.getCustomProperty("version") != null ? map.getCustomProperty("version") : map.getVersion());
   }
 
   @Override
@@ -112,6 +141,18 @@ public class OrthogonalMapRenderer implements IMapRenderer {
     return MapOrientation.ORTHOGONAL;
   }
 
+  @Override
+  public synchronized void invalidateTile(final IMap map, final ITileLayer layer, final int x, final int y) {
+    // the images of the whole map and of the layer contain the tile as well
+    ImageCache.MAPS.clear(Pattern.quote(getCacheKey(map)) + "(_" + Pattern.quote(String.valueOf(layer.getName())) + ")?");
+    if (map != this.chunkMap) {
+      return;
+    }
+
+    final Dimension chunkSize = getChunkSizeInTiles(map);
+    this.chunks.remove(this.getChunkCacheKey(layer, x / chunkSize.width, y / chunkSize.height));
+  }
+
   @Override
   public void renderImage(final Graphics2D g, final IMap map) {
     this.renderImage(g, map, 0, 0);
@@ -125,7 +166,7 @@ public class OrthogonalMapRenderer implements IMapRenderer {
 
   @Override
   public void render(final Graphics2D g, final IMap map, final Rectangle2D viewport) {
-
+    this.prepareChunks(map, viewport);
     for (final ILayer layer : this.getAllRenderLayers(map)) {
       if (layer == null || layer.getRenderType() == RenderType.OVERLAY) {
         continue;
@@ -143,6 +184,7 @@ public class OrthogonalMapRenderer implements IMapRenderer {
 
   @Override
   public void renderOverlay(final Graphics2D g, final IMap map, final Rectangle2D viewport) {
+    this.prepareChunks(map, viewport);
     for (final ITileLayer layer : map.getTileLayers()) {
       if (layer == null || layer.getRenderType() != RenderType.OVERLAY) {
         continue;
@@ -152,6 +194,23 @@ public class OrthogonalMapRenderer implements IMapRenderer {
     }
   }
 
+  /**
+   * Gets the key of a chunk, which consists of the id of the layer and the
+   * coordinates of the chunk.
+   */
+  private long getChunkCacheKey(final ITileLayer layer, final int chunkX, final int chunkY) {
+    if (this.observedLayers.add(layer)) {
+      layer.onTileChanged(tile -> this.tileChanged(layer, tile));
+    }
+
+    final long layerId = this.layerIds.computeIfAbsent(layer, l -> this.layerIds.size());
+    return layerId << 2 * CHUNK_COORDINATE_BITS | (chunkX & CHUNK_COORDINATE_MASK) << CHUNK_COORDINATE_BITS | chunkY & CHUNK_COORDINATE_MASK;
+  }
+
+  private static Dimension getChunkSizeInTiles(final IMap map) {
+    return new Dimension(Math.max(1, CHUNK_SIZE / map.getTileSize().width), Math.max(1, CHUNK_SIZE / map.getTileSize().height));
+  }
+
   private List<ILayer> getAllRenderLayers(IMap map) {
     ArrayList<ILayer> layers = new ArrayList<>();
     for (ITileLayer tileLayer : map.getTileLayers()) {
@@ -191,27 +250,88 @@ public class OrthogonalMapRenderer implements IMapRenderer {
     final AlphaComposite ac = java.awt.AlphaComposite.getInstance(AlphaComposite.SRC_OVER, layer.getOpacity());
     imageGraphics.setComposite(ac);
 
-    layer.getTiles().parallelStream().forEach(tile -> {
-      // get the tile from the tileset image
-      final int index = layer.getTiles().indexOf(tile);
-      if (tile.getGridId() == 0) {
-        return;
-      }
+    final TileResolutionTable tiles = TileResolutionTable.get(map);
+    renderTiles(imageGraphics, layer, tiles, 0, 0, layer.getSizeInTiles().width, layer.getSizeInTiles().height, 0, 0, tile -> includeAnimationTiles || !tiles.hasAnimation(tile), Game.getLoop().getTime().getMilliseconds(), map.getTileSize().width, map.getTileSize().height);
+    imageGraphics.dispose();
 
-      if (!includeAnimationTiles && MapUtilities.hasAnimation(map, tile)) {
-        return;
-      }
+    ImageCache.MAPS.put(getCacheKey(map) + "_" + layer.getName(), bufferedImage);
+    return bufferedImage;
+  }
 
-      final Image tileTexture = getTileImage(map, tile);
+  /**
+   * Gets the image of all static tiles within the specified chunk of the layer.
+   * Only chunks that are requested are created and the least recently used
+   * chunks are evicted from the cache.
+   */
+  synchronized BufferedImage getChunkImage(final ITileLayer layer, final IMap map, final int chunkX, final int chunkY) {
+    final long cacheKey = this.getChunkCacheKey(layer, chunkX, chunkY);
+    final BufferedImage cached = this.chunks.get(cacheKey);
+    if (cached != null) {
+      return cached;
+    }
 
-      // draw the tile on the layer image
-      final int x = index % layer.getSizeInTiles().width * map.getTileSize().width;
-      final int y = index / layer.getSizeInTiles().width * map.getTileSize().height;
-      RenderEngine.renderImage(imageGraphics, tileTexture, x, y);
-    });
+    final Dimension chunkSize = getChunkSizeInTiles(map);
+    final int startX = chunkX * chunkSize.width;
+    final int startY = chunkY * chunkSize.height;
+    final int endX = Math.min(layer.getSizeInTiles().width, startX + chunkSize.width);
+    final int endY = Math.min(layer.getSizeInTiles().height, startY + chunkSize.height);
+    final BufferedImage chunkImage = ImageProcessing.getCompatibleImage((endX - startX) * map.getTileSize().width, (endY - startY) * map.getTileSize().height);
+    final Graphics2D imageGraphics = chunkImage.createGraphics();
+    final TileResolutionTable tiles = TileResolutionTable.get(map);
+    renderTiles(imageGraphics, layer, tiles, startX, startY, endX, endY, 0, 0, tile -> !tiles.hasAnimation(tile), 0, map.getTileSize().width, map.getTileSize().height);
+    imageGraphics.dispose();
+    this.chunks.put(cacheKey, chunkImage);
+    return chunkImage;
+  }
 
-    ImageCache.MAPS.put(getCacheKey(map) + "_" + layer.getName(), bufferedImage);
-    return bufferedImage;
+  /**
+   * Clears the cached chunks if another map is rendered and sizes the cache so
+   * that it can hold the chunks of all tile layers that intersect with the
+   * viewport and the ring of chunks around them.
+   */
+  synchronized void prepareChunks(final IMap map, final Rectangle2D viewport) {
+    if (map != this.chunkMap) {
+      this.chunks.clear();
+      this.layerIds.clear();
+      this.chunkMap = map;
+    }
+
+    final Dimension chunkSize = getChunkSizeInTiles(map);
+    final int chunksX = (int) Math.ceil(viewport.getWidth() / (chunkSize.width * map.getTileSize().width)) + 2;
+    final int chunksY = (int) Math.ceil(viewport.getHeight() / (chunkSize.height * map.getTileSize().height)) + 2;
+    this.chunkCapacity = Math.max(this.minCachedChunks, chunksX * chunksY * map.getTileLayers().size());
+  }
+
+  /**
+   * Renders the cached chunks of static tiles that intersect with the
+   * viewport.
+   */
+  private void renderStaticTileChunks(final Graphics2D g, final ITileLayer layer, final IMap map, final Rectangle2D viewport) {
+    final Dimension chunkSize = getChunkSizeInTiles(map);
+    final int chunkWidth = chunkSize.width * map.getTileSize().width;
+    final int chunkHeight = chunkSize.height * map.getTileSize().height;
+    final int chunksX = (layer.getSizeInTiles().width + chunkSize.width - 1) / chunkSize.width;
+    final int chunksY = (layer.getSizeInTiles().height + chunkSize.height - 1) / chunkSize.height;
+
+    final double layerViewportX = viewport.getX() - layer.getPosition().x;
+    final double layerViewportY = viewport.getY() - layer.getPosition().y;
+    final int firstX = (int) Math.floor(layerViewportX / chunkWidth);
+    final int lastX = (int) Math.floor((layerViewportX + viewport.getWidth()) / chunkWidth);
+    final int firstY = (int) Math.floor(layerViewportY / chunkHeight);
+    final int lastY = (int) Math.floor((layerViewportY + viewport.getHeight()) / chunkHeight);
+    if (lastX < 0 || lastY < 0 || firstX >= chunksX || firstY >= chunksY) {
+      return;
+    }
+
+    final int startX = Math.max(0, firstX);
+    final int endX = Math.min(chunksX - 1, lastX);
+    final int startY = Math.max(0, firstY);
+    final int endY = Math.min(chunksY - 1, lastY);
+    for (int x = startX; x <= endX; x++) {
+      for (int y = startY; y <= endY; y++) {
+        RenderEngine.renderImage(g, this.getChunkImage(layer, map, x, y), x * chunkWidth - layerViewportX, y * chunkHeight - layerViewportY);
+      }
+    }
   }
 
   /**
@@ -236,21 +356,10 @@ public class OrthogonalMapRenderer implements IMapRenderer {
     final AlphaComposite ac = java.awt.AlphaComposite.getInstance(AlphaComposite.SRC_OVER, layer.getOpacity());
     g.setComposite(ac);
 
-    if (Game.getConfiguration().graphics().enableCacheStaticTiles()) {
-      // render all static tiles first because we're able to cache them because
-      // they're never supposed to be change during runtime
-      final String cacheKey = MessageFormat.format("{0}_{1}_static", getCacheKey(map), layer.getName());
-      BufferedImage staticTileImage = null;
-      if (ImageCache.MAPS.containsKey(cacheKey)) {
-        staticTileImage = ImageCache.MAPS.get(cacheKey);
-      } else {
-        staticTileImage = this.getLayerImage(layer, map, false);
-        ImageCache.MAPS.put(cacheKey, staticTileImage);
-      }
-
-      double staticX = layer.getPosition().x - viewport.getX();
-      double staticY = layer.getPosition().x - viewport.getY();
-      RenderEngine.renderImage(g, staticTileImage, staticX, staticY);
+    if (Game.getConfiguration().graphics().enableCacheStaticTiles() && layer.getSizeInTiles().width > 0 && layer.getSizeInTiles().height > 0) {
+      // render all static tiles first because we're able to cache them in
+      // chunks that only need to be updated if a tile is changed
+      this.renderStaticTileChunks(g, layer, map, viewport);
     }
 
     final int startX = MathUtilities.clamp(startTile.x, 0, layer.getSizeInTiles().width);
@@ -261,20 +370,37 @@ public class OrthogonalMapRenderer implements IMapRenderer {
     final double offsetX = viewportOffsetX + (startX - startTile.x) * map.getTileSize().width;
     final double offsetY = viewportOffsetY + (startY - startTile.y) * map.getTileSize().height;
 
-    IntStream.range(startX, endX + 1).parallel().forEach(x -> {
-      for (int y = startY; y <= endY; y++) {
-        ITile tile = layer.getTile(x, y);
+    // always render tiles if the cache for static tiles is disabled or, in
+    // case it is enabled: only render animation tiles here
+    final TileResolutionTable tiles = TileResolutionTable.get(map);
+    final boolean cacheStaticTiles = Game.getConfiguration().graphics().enableCacheStaticTiles();
+    renderTiles(g, layer, tiles, startX, startY, endX + 1, endY + 1, offsetX, offsetY, tile -> !cacheStaticTiles || tiles.hasAnimation(tile), Game.getLoop().getTime().getMilliseconds(), map.getTileSize().width, map.getTileSize().height);
+
+    g.setComposite(oldComp);
+  }
 
-        // always render tiles if the cache for static tiles is disabled or, in
-        // case it is enabled: only render animation tiles here
-        if (!Game.getConfiguration().graphics().enableCacheStaticTiles() || MapUtilities.hasAnimation(map, tile)) {
-          final Image tileTexture = getTileImage(map, tile);
-          RenderEngine.renderImage(g, tileTexture, offsetX + (x - startX) * map.getTileSize().width, offsetY + (y - startY) * map.getTileSize().height);
+  private static void renderTiles(final Graphics2D g, final ITileLayer layer, final TileResolutionTable tiles, final int fromX, final int fromY, final int toX, final int toY, final double offsetX, final double offsetY, final Predicate<ITile> filter, final long time, final int tileWidth,
+      final int tileHeight) {
+    for (int x = fromX; x < toX; x++) {
+      for (int y = fromY; y < toY; y++) {
+        final ITile tile = layer.getTile(x, y);
+        if (tile == null || tile.getGridId() == 0 || !filter.test(tile)) {
+          continue;
         }
+
+        RenderEngine.renderImage(g, tiles.getImage(tile, time), offsetX + (x - fromX) * tileWidth, offsetY + (y - fromY) * tileHeight);
       }
-    });
+    }
+  }
 
-    g.setComposite(oldComp);
+  /**
+   * Invalidates the cached chunk of a changed tile if its layer belongs to the
+   * map of the cached chunks.
+   */
+  private synchronized void tileChanged(final ITileLayer layer, final ITile tile) {
+    if (this.chunkMap != null && this.layerIds.containsKey(layer)) {
+      this.invalidateTile(this.chunkMap, layer, tile.getTileCoordinate().x, tile.getTileCoordinate().y);
+    }
   }
 
   private void renderImageLayer(Graphics2D g, IImageLayer layer, Rectangle2D viewport) {
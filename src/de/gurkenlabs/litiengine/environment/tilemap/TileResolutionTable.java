@@ -0,0 +1,196 @@
+package de.gurkenlabs.litiengine.environment.tilemap;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import de.gurkenlabs.litiengine.graphics.Spritesheet;
+
+/**
+ * Resolves the tiles of a map to their tileset, sprite and animation by their
+ * grid id. The table is built once per map, so rendering a tile only requires
+ * array lookups instead of searching the tilesets and animations of the map.
+ */
+public final class TileResolutionTable {
+  /** Animations with more time slots than this are resolved by a search over their frames. */
+  private static final int MAX_ANIMATION_SLOTS = 1024;
+
+  private static final Map<IMap, TileResolutionTable> tables = Collections.synchronizedMap(new WeakHashMap<>());
+
+  private final Animation[] animations;
+  private final int[] spriteIndices;
+  private final Spritesheet[] spritesheets;
+  private final int[] tilesetIndices;
+  private final List<ITileset> tilesets;
+
+  private TileResolutionTable(final IMap map) {
+    this.tilesets = map.getTilesets();
+    this.spritesheets = new Spritesheet[this.tilesets.size()];
+
+    int maxGridId = 0;
+    for (final ITileset tileset : this.tilesets) {
+      maxGridId = Math.max(maxGridId, tileset.getFirstGridId() + tileset.getTilecount());
+    }
+
+    this.tilesetIndices = new int[maxGridId];
+    this.spriteIndices = new int[maxGridId];
+    this.animations = new Animation[maxGridId];
+    Arrays.fill(this.tilesetIndices, -1);
+
+    for (int i = 0; i < this.tilesets.size(); i++) {
+      final ITileset tileset = this.tilesets.get(i);
+      for (int index = 0; index < tileset.getTilecount(); index++) {
+        final int gridId = tileset.getFirstGridId() + index;
+        if (gridId <= 0 || this.tilesetIndices[gridId] != -1) {
+          continue;
+        }
+
+        this.tilesetIndices[gridId] = i;
+        this.spriteIndices[gridId] = index;
+
+        final ITileAnimation animation = tileset.getAnimation(index);
+        if (animation != null && !animation.getFrames().isEmpty() && animation.getTotalDuration() > 0) {
+          this.animations[gridId] = new Animation(animation);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the table for the specified map and builds it if the map has not been
+   * resolved before.
+   *
+   * @param map
+   *          the map
+   * @return the table for the map
+   */
+  public static TileResolutionTable get(final IMap map) {
+    return tables.computeIfAbsent(map, TileResolutionTable::new);
+  }
+
+  /**
+   * Removes the table of the specified map so that it is rebuilt with the next
+   * call of {@link #get(IMap)}. This needs to be called if the tilesets of the
+   * map are changed.
+   *
+   * @param map
+   *          the map
+   */
+  public static void remove(final IMap map) {
+    tables.remove(map);
+  }
+
+  /**
+   * Gets the image of the specified tile at the specified time. Animated tiles
+   * return the frame that is played at that time.
+   *
+   * @param tile
+   *          the tile
+   * @param milliseconds
+   *          the played time of the game
+   * @return the image of the tile or null if the tile is empty or its sprite
+   *         cannot be loaded
+   */
+  public BufferedImage getImage(final ITile tile, final long milliseconds) {
+    if (tile == null || tile.getGridId() <= 0 || tile.getGridId() >= this.tilesetIndices.length || this.tilesetIndices[tile.getGridId()] == -1) {
+      return null;
+    }
+
+    final int gridId = tile.getGridId();
+    final Spritesheet spritesheet = this.getSpritesheet(this.tilesetIndices[gridId]);
+    if (spritesheet == null) {
+      return null;
+    }
+
+    final Animation animation = this.animations[gridId];
+    return spritesheet.getSprite(animation != null ? animation.getSpriteIndex(milliseconds) : this.spriteIndices[gridId]);
+  }
+
+  public boolean hasAnimation(final ITile tile) {
+    return tile != null && tile.getGridId() > 0 && tile.getGridId() < this.animations.length && this.animations[tile.getGridId()] != null;
+  }
+
+  private Spritesheet getSpritesheet(final int tilesetIndex) {
+    Spritesheet spritesheet = this.spritesheets[tilesetIndex];
+    if (spritesheet != null) {
+      return spritesheet;
+    }
+
+    // the spritesheet is resolved with the first rendering because its image
+    // might not be available when the table is built
+    final ITileset tileset = this.tilesets.get(tilesetIndex);
+    spritesheet = Spritesheet.find(tileset.getImage().getSource());
+    if (spritesheet == null) {
+      spritesheet = Spritesheet.load(tileset);
+    }
+
+    this.spritesheets[tilesetIndex] = spritesheet;
+    return spritesheet;
+  }
+
+  /**
+   * The timeline of an animated tile. The total duration is split into slots
+   * with the greatest common divisor of all frame durations as length, so the
+   * current frame is a single lookup of the slot that contains the played time.
+   */
+  private static final class Animation {
+    private final int[] frameEnds;
+    private final int[] frameSprites;
+    private final int slotDuration;
+    private final int[] slots;
+    private final int totalDuration;
+
+    private Animation(final ITileAnimation animation) {
+      final List<ITileAnimationFrame> frames = animation.getFrames();
+      this.totalDuration = animation.getTotalDuration();
+      this.frameEnds = new int[frames.size()];
+      this.frameSprites = new int[frames.size()];
+
+      int end = 0;
+      int divisor = 0;
+      for (int i = 0; i < frames.size(); i++) {
+        end += frames.get(i).getDuration();
+        this.frameEnds[i] = end;
+        this.frameSprites[i] = frames.get(i).getTileId();
+        divisor = gcd(divisor, frames.get(i).getDuration());
+      }
+
+      if (divisor > 0 && this.totalDuration % divisor == 0 && this.totalDuration / divisor <= MAX_ANIMATION_SLOTS) {
+        this.slotDuration = divisor;
+        this.slots = new int[this.totalDuration / divisor];
+        for (int slot = 0; slot < this.slots.length; slot++) {
+          this.slots[slot] = this.findSprite(slot * divisor);
+        }
+      } else {
+        this.slotDuration = 0;
+        this.slots = null;
+      }
+    }
+
+    private static int gcd(final int a, final int b) {
+      return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private int findSprite(final long time) {
+      for (int i = 0; i < this.frameEnds.length; i++) {
+        if (time < this.frameEnds[i]) {
+          return this.frameSprites[i];
+        }
+      }
+
+      return this.frameSprites[this.frameSprites.length - 1];
+    }
+
+    private int getSpriteIndex(final long milliseconds) {
+      final long time = milliseconds % this.totalDuration;
+      if (this.slots != null) {
+        return this.slots[(int) (time / this.slotDuration)];
+      }
+
+      return this.findSprite(time);
+    }
+  }
+}
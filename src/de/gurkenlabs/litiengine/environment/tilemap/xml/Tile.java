@@ -65,6 +65,19 @@ public class Tile extends CustomPropertyProvider implements ITile, Serializable
     return this.tileCoordinate;
   }
 
+  /**
+   * Sets the grid id. Tiles are changed through their layer, which notifies
+   * the consumers of the change.
+   *
+   * @param gridId
+   *          the new grid id
+   * @see de.gurkenlabs.litiengine.environment.tilemap.ITileLayer#setGridId(int,
+   *      int, int)
+   */
+  void setGridId(final int gridId) {
+    this.gid = gridId == 0 ? null : gridId;
+  }
+
   /**
    * Sets the tile coordinate.
    *
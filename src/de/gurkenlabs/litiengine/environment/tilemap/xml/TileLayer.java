@@ -6,6 +6,7 @@ import java.awt.geom.Point2D;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
@@ -30,6 +31,8 @@ public class TileLayer extends Layer implements ITileLayer {
 
   private transient Tile[][] tiles;
 
+  private final transient List<Consumer<ITile>> tileChangedConsumers = new CopyOnWriteArrayList<>();
+
   /*
    * (non-Javadoc)
    *
@@ -97,6 +100,24 @@ public class TileLayer extends Layer implements ITileLayer {
     return this.tileList;
   }
 
+  @Override
+  public void onTileChanged(final Consumer<ITile> consumer) {
+    this.tileChangedConsumers.add(consumer);
+  }
+
+  @Override
+  public void setGridId(final int x, final int y, final int gridId) {
+    final ITile tile = this.getTile(x, y);
+    if (tile == null || tile.getGridId() == gridId) {
+      return;
+    }
+
+    ((Tile) tile).setGridId(gridId);
+    for (final Consumer<ITile> consumer : this.tileChangedConsumers) {
+      consumer.accept(tile);
+    }
+  }
+
   protected List<Tile> getData() {
     return this.data;
   }
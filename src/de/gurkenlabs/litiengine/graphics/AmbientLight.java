@@ -3,18 +3,27 @@ package de.gurkenlabs.litiengine.graphics;
 import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Composite;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Paint;
 import java.awt.RadialGradientPaint;
+import java.awt.Rectangle;
 import java.awt.geom.Area;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import de.gurkenlabs.litiengine.Game;
 import de.gurkenlabs.litiengine.environment.IEnvironment;
 import de.gurkenlabs.litiengine.environment.tilemap.StaticShadow;
 import de.gurkenlabs.util.ImageProcessing;
@@ -22,70 +31,67 @@ import de.gurkenlabs.util.MathUtilities;
 import de.gurkenlabs.util.geom.GeometricUtilities;
 import de.gurkenlabs.util.geom.Vector2D;
 
+/**
+ * The ambient light darkens the whole map with its color and alpha, except for
+ * the areas that are lit by the light sources of the environment.
+ * <p>
+ * The image of the ambient light is only recomposited in the sections that
+ * changed since it was last requested. The contribution of every light source
+ * is tracked by its bounds, so toggling, moving or recoloring a light source
+ * only recomposites the area it covers.
+ * </p>
+ */
 public class AmbientLight {
+  private final List<Rectangle> dirtySections;
+  private final IEnvironment environment;
+  private final Map<LightSource, Rectangle> lightBounds;
+  private final Set<LightSource> observedLights;
   private int alpha;
   private Color color;
-  private final IEnvironment environment;
-  private Image image;
+  private BufferedImage image;
 
   public AmbientLight(final IEnvironment env, final Color ambientColor, final int ambientAlpha) {
     this.environment = env;
     this.color = ambientColor;
     this.alpha = ambientAlpha;
+    this.dirtySections = new ArrayList<>();
+    this.lightBounds = new HashMap<>();
+    this.observedLights = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (final LightSource light : env.getLightSources()) {
+      this.add(light);
+    }
+
     this.createImage();
   }
 
-  public void createImage() {
-    final String cacheKey = this.getCacheKey();
-    if (ImageCache.IMAGES.containsKey(cacheKey)) {
-      this.image = ImageCache.IMAGES.get(cacheKey);
+  /**
+   * Adds the specified light source to this ambient light. The area it covers
+   * is recomposited the next time the image is requested.
+   *
+   * @param light
+   *          the light source
+   */
+  public synchronized void add(final LightSource light) {
+    if (light == null || this.lightBounds.containsKey(light)) {
       return;
     }
 
-    final Color colorWithAlpha = new Color(this.getColor().getRed(), this.getColor().getGreen(), this.getColor().getBlue(), this.getAlpha());
-    final BufferedImage img = ImageProcessing.getCompatibleImage((int) this.environment.getMap().getSizeInPixels().getWidth(), (int) this.environment.getMap().getSizeInPixels().getHeight());
-    final Graphics2D g = img.createGraphics();
-
-    // create large rectangle and crop lights from it
-    final double mapWidth = this.environment.getMap().getSizeInPixels().getWidth();
-    final double mapHeight = this.environment.getMap().getSizeInPixels().getHeight();
-    double longerDimension = mapWidth;
-    if (mapWidth < mapHeight) {
-      longerDimension = mapHeight;
-    }
-    final Area darkArea = new Area(new Rectangle2D.Double(0, 0, mapWidth, mapHeight));
-
-    for (final LightSource light : this.environment.getLightSources()) {
-      if (!light.isActive()) {
-        continue;
-      }
-
-      this.renderLightSource(g, light, longerDimension);
-    }
-
-    g.setColor(colorWithAlpha);
-    final Composite comp = g.getComposite();
-
-    g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OUT, 1.0f));
-    g.fill(darkArea);
-
-    for (final LightSource light : this.environment.getLightSources()) {
-      if (light.getIntensity() <= 0) {
-        continue;
-      }
-
-      final float intensity = MathUtilities.clamp((float) light.getIntensity() / 255, 0, 1);
-      g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, intensity));
-      this.renderLightSource(g, light, longerDimension);
+    final Rectangle bounds = getBounds(light);
+    this.lightBounds.put(light, bounds);
+    if (this.observedLights.add(light)) {
+      light.onChanged(this::lightChanged);
     }
 
-    g.setComposite(comp);
-    g.dispose();
-    this.image = img;
+    this.updateSection(bounds);
+  }
 
-    if (!Game.getInfo().getName().equals("utiLITI")) {
-      ImageCache.IMAGES.put(cacheKey, img);
-    }
+  /**
+   * Recomposites the whole image of this ambient light.
+   */
+  public synchronized void createImage() {
+    this.dirtySections.clear();
+    this.dirtySections.add(this.getMapBounds());
+    this.renderDirtySections();
   }
 
   public int getAlpha() {
@@ -96,41 +102,155 @@ public class AmbientLight {
     return this.color;
   }
 
-  public Image getImage() {
-    this.createImage();
+  /**
+   * Gets the image of this ambient light. Only the sections that changed since
+   * the last call are recomposited.
+   *
+   * @return the image
+   */
+  public synchronized Image getImage() {
+    if (!this.dirtySections.isEmpty()) {
+      this.renderDirtySections();
+    }
+
     return this.image;
   }
 
-  public void setAlpha(int ambientAlpha) {
+  /**
+   * Removes the specified light source from this ambient light. The area it
+   * covered is recomposited the next time the image is requested.
+   *
+   * @param light
+   *          the light source
+   */
+  public synchronized void remove(final LightSource light) {
+    if (!this.lightBounds.containsKey(light)) {
+      return;
+    }
+
+    this.updateSection(this.lightBounds.remove(light));
+  }
+
+  public synchronized void setAlpha(int ambientAlpha) {
     this.alpha = MathUtilities.clamp(ambientAlpha, 0, 255);
-    this.createImage();
+    this.updateSection(this.getMapBounds());
   }
 
-  public void setColor(final Color color) {
+  public synchronized void setColor(final Color color) {
     this.color = color;
-    this.createImage();
+    this.updateSection(this.getMapBounds());
   }
 
-  private String getCacheKey() {
-    final StringBuilder sb = new StringBuilder();
-    sb.append(this.getColor());
-    sb.append(this.getAlpha());
-
-    for (final LightSource light : this.environment.getLightSources()) {
-      sb.append(light.getBrightness());
-      sb.append(light.getIntensity());
-      sb.append(light.getColor());
-      sb.append(light.getLocation());
-      sb.append(light.getRadius());
-      sb.append(light.getLightShapeType());
-      sb.append(light.getWidth());
-      sb.append(light.getHeight());
+  /**
+   * Marks the specified section of the map to be recomposited the next time
+   * the image is requested.
+   *
+   * @param section
+   *          the section in map coordinates
+   */
+  public synchronized void updateSection(final Rectangle2D section) {
+    if (section == null || section.isEmpty()) {
+      return;
     }
 
-    sb.append(this.environment.getMap().getSizeInPixels());
+    Rectangle dirty = section.getBounds();
+    final Iterator<Rectangle> iterator = this.dirtySections.iterator();
+    while (iterator.hasNext()) {
+      final Rectangle other = iterator.next();
+      if (other.intersects(dirty)) {
+        dirty = dirty.union(other);
+        iterator.remove();
+      }
+    }
+
+    this.dirtySections.add(dirty);
+  }
+
+  /**
+   * Gets the bounds of the area that is affected by the specified light source,
+   * including a margin for anti-aliased edges.
+   */
+  private static Rectangle getBounds(final LightSource light) {
+    if (light.getLightShape() == null) {
+      return null;
+    }
+
+    final Rectangle bounds = light.getLightShape().getBounds();
+    bounds.grow(1, 1);
+    return bounds;
+  }
+
+  private Rectangle getMapBounds() {
+    final Dimension size = this.environment.getMap().getSizeInPixels();
+    return new Rectangle(0, 0, (int) size.getWidth(), (int) size.getHeight());
+  }
+
+  private synchronized void lightChanged(final LightSource light) {
+    if (!this.lightBounds.containsKey(light)) {
+      return;
+    }
+
+    final Rectangle bounds = getBounds(light);
+    this.updateSection(this.lightBounds.put(light, bounds));
+    this.updateSection(bounds);
+  }
+
+  private void renderDirtySections() {
+    final Rectangle mapBounds = this.getMapBounds();
+    if (this.image == null || this.image.getWidth() != mapBounds.width || this.image.getHeight() != mapBounds.height) {
+      this.image = ImageProcessing.getCompatibleImage(mapBounds.width, mapBounds.height);
+      this.dirtySections.clear();
+      this.dirtySections.add(mapBounds);
+    }
+
+    final Color colorWithAlpha = new Color(this.getColor().getRed(), this.getColor().getGreen(), this.getColor().getBlue(), this.getAlpha());
+    final double longerDimension = Math.max(mapBounds.getWidth(), mapBounds.getHeight());
+    final Graphics2D g = this.image.createGraphics();
+    final Composite comp = g.getComposite();
+    for (final Rectangle dirtySection : this.dirtySections) {
+      final Rectangle section = dirtySection.intersection(mapBounds);
+      if (section.isEmpty()) {
+        continue;
+      }
+
+      g.setClip(section);
+      g.setComposite(AlphaComposite.Clear);
+      g.fill(section);
+      g.setComposite(comp);
+
+      // render the lights and crop them from the dark area
+      for (final LightSource light : this.environment.getLightSources()) {
+        if (!light.isActive() || !this.affects(light, section)) {
+          continue;
+        }
+
+        this.renderLightSource(g, light, longerDimension);
+      }
+
+      g.setColor(colorWithAlpha);
+      g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OUT, 1.0f));
+      g.fill(section);
+
+      for (final LightSource light : this.environment.getLightSources()) {
+        if (light.getIntensity() <= 0 || !this.affects(light, section)) {
+          continue;
+        }
+
+        final float intensity = MathUtilities.clamp((float) light.getIntensity() / 255, 0, 1);
+        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, intensity));
+        this.renderLightSource(g, light, longerDimension);
+      }
+
+      g.setComposite(comp);
+    }
+
+    g.dispose();
+    this.dirtySections.clear();
+  }
 
-    final int key = sb.toString().hashCode();
-    return "ambientlight-" + this.environment.getMap().getFileName() + "-" + Integer.toString(key);
+  private boolean affects(final LightSource light, final Rectangle section) {
+    final Rectangle bounds = this.lightBounds.get(light);
+    return bounds != null && bounds.intersects(section);
   }
 
   private void renderLightSource(final Graphics2D g, final LightSource light, final double longerDimension) {
@@ -0,0 +1,148 @@
+package de.gurkenlabs.litiengine.graphics;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import de.gurkenlabs.litiengine.entities.EntityYComparator;
+import de.gurkenlabs.litiengine.entities.IEntity;
+
+/**
+ * A persistent list of the entities that are rendered for a {@link RenderType}.
+ * If the list is sorted, the entities are kept in the order of
+ * {@link EntityYComparator}. Because entities only move a little between two
+ * frames, the order is repaired with an insertion sort that runs in almost
+ * linear time for a nearly sorted list instead of sorting the whole list every
+ * frame.
+ */
+public class EntityRenderList {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private IEntity[] entities;
+  private double[] maxY;
+  private int size;
+  private final boolean sorted;
+
+  /**
+   * The buffer for the entities that are passed to the consumer of
+   * {@link #forEach(Rectangle2D, Consumer)}, reused between the frames.
+   */
+  private IEntity[] visible;
+
+  /**
+   * Instantiates a new render list.
+   *
+   * @param sorted
+   *          True if the entities are rendered in the order of their max Y
+   *          coordinate, false if they are rendered in the order they were
+   *          added.
+   */
+  public EntityRenderList(final boolean sorted) {
+    this.sorted = sorted;
+    this.entities = new IEntity[INITIAL_CAPACITY];
+    this.maxY = new double[INITIAL_CAPACITY];
+  }
+
+  public synchronized void add(final IEntity entity) {
+    if (this.size == this.entities.length) {
+      this.entities = Arrays.copyOf(this.entities, this.size * 2);
+      this.maxY = Arrays.copyOf(this.maxY, this.size * 2);
+    }
+
+    this.entities[this.size++] = entity;
+  }
+
+  public synchronized void clear() {
+    Arrays.fill(this.entities, 0, this.size, null);
+    this.size = 0;
+  }
+
+  /**
+   * Passes all entities of this list that intersect with the specified area to
+   * the consumer, in their render order. The entities are copied to a reused
+   * buffer while the list is locked and passed to the consumer after the lock
+   * is released, so rendering doesn't block other threads that add or remove
+   * entities.
+   *
+   * @param area
+   *          The area that the entities need to intersect with, usually the
+   *          viewport of the camera, or null to pass all entities.
+   * @param consumer
+   *          The consumer that renders the entities.
+   */
+  public void forEach(final Rectangle2D area, final Consumer<IEntity> consumer) {
+    final IEntity[] buffer;
+    int count = 0;
+    synchronized (this) {
+      // concurrent or nested calls get their own buffer while it is in use
+      buffer = this.visible != null && this.visible.length >= this.size ? this.visible : new IEntity[this.entities.length];
+      this.visible = null;
+      for (int i = 0; i < this.size; i++) {
+        final IEntity entity = this.entities[i];
+        if (area == null || area.intersects(entity.getBoundingBox())) {
+          buffer[count++] = entity;
+        }
+      }
+    }
+
+    try {
+      for (int i = 0; i < count; i++) {
+        consumer.accept(buffer[i]);
+      }
+    } finally {
+      Arrays.fill(buffer, 0, count, null);
+      synchronized (this) {
+        this.visible = buffer;
+      }
+    }
+  }
+
+  public boolean isSorted() {
+    return this.sorted;
+  }
+
+  public synchronized void remove(final IEntity entity) {
+    for (int i = 0; i < this.size; i++) {
+      if (this.entities[i] == entity) {
+        System.arraycopy(this.entities, i + 1, this.entities, i, this.size - i - 1);
+        System.arraycopy(this.maxY, i + 1, this.maxY, i, this.size - i - 1);
+        this.entities[--this.size] = null;
+        return;
+      }
+    }
+  }
+
+  public synchronized int size() {
+    return this.size;
+  }
+
+  /**
+   * Restores the render order after entities have moved. This should be called
+   * once per frame before the entities are rendered.
+   */
+  public synchronized void update() {
+    if (!this.sorted) {
+      return;
+    }
+
+    for (int i = 0; i < this.size; i++) {
+      this.maxY[i] = EntityYComparator.getMaxY(this.entities[i]);
+    }
+
+    // insertion sort is stable and only needs to move the few entities that
+    // have changed their position relative to their neighbours
+    for (int i = 1; i < this.size; i++) {
+      final IEntity entity = this.entities[i];
+      final double y = this.maxY[i];
+      int j = i - 1;
+      while (j >= 0 && this.maxY[j] > y) {
+        this.entities[j + 1] = this.entities[j];
+        this.maxY[j + 1] = this.maxY[j];
+        j--;
+      }
+
+      this.entities[j + 1] = entity;
+      this.maxY[j + 1] = y;
+    }
+  }
+}
@@ -41,6 +41,17 @@ public interface IRenderEngine {
 
   public void renderEntities(Graphics2D g, Collection<? extends IEntity> entities, IVision vision);
 
+  /**
+   * Renders all entities of the specified render list that are visible in the
+   * viewport of the camera after restoring the render order of the list.
+   *
+   * @param g
+   *          the g
+   * @param entities
+   *          the entities to render
+   */
+  public void renderEntities(Graphics2D g, EntityRenderList entities);
+
   public void renderEntity(Graphics2D g, IEntity entity);
 
   /**
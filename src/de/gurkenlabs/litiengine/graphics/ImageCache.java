@@ -6,19 +6,83 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import de.gurkenlabs.util.io.CompressionUtilities;
 import de.gurkenlabs.util.io.FileUtilities;
+import de.gurkenlabs.util.io.ImagePack;
 import de.gurkenlabs.util.io.ImageSerializer;
 
 /**
  * The Class ImageCache.
+ * <p>
+ * By default, the cache is unbounded. If a maximum size in bytes is set, the
+ * cache evicts images according to its {@link EvictionPolicy} as soon as the
+ * estimated size of all images in memory exceeds that size. Evicted images that
+ * were put persistently are reloaded from the disk when they are requested
+ * again.
+ * </p>
+ * <p>
+ * Requests for images that are held in memory never lock the cache. The order
+ * in which images are evicted is only tracked while a maximum size is set.
+ * </p>
+ * <p>
+ * Images are decoded from the disk on a shared pool of background threads by
+ * {@link #loadAllAsync()}. Concurrent requests for the same image wait for a
+ * single decode.
+ * </p>
+ * <p>
+ * Persistent images are stored as PNG files by default. With a raw
+ * {@link PersistenceFormat}, they are stored in a single {@link ImagePack} per
+ * cache instead, which is much faster to load.
+ * </p>
  */
 public final class ImageCache {
+  /**
+   * Defines which image is evicted when an {@link ImageCache} exceeds its
+   * maximum size.
+   */
+  public enum EvictionPolicy {
+    /** Evicts the image that has not been requested for the longest time. */
+    LEAST_RECENTLY_USED,
+
+    /**
+     * Evicts the image with the highest product of its size and the time since
+     * it was last requested, so large images that are rarely used are evicted
+     * before small ones. Only the least recently used image of every
+     * power-of-two size class is considered, so the evicted image is close to,
+     * but not always exactly, the one with the highest product.
+     */
+    SIZE_WEIGHTED
+  }
+
+  /**
+   * Defines how images that are put persistently are stored on the disk.
+   */
+  public enum PersistenceFormat {
+    /** Stores every image as a PNG file in the folder of the cache. */
+    PNG,
+
+    /** Stores the raw ARGB rasters of the images in the pack of the cache. */
+    RAW,
+
+    /**
+     * Stores the deflated ARGB rasters of the images in the pack of the cache.
+     */
+    RAW_COMPRESSED
+  }
+
   /** The Constant CACHE_DIRECTORY. */
   public static final String CACHE_DIRECTORY = "cache/";
 
@@ -37,8 +101,34 @@ public final class ImageCache {
 
   private static final Logger log = Logger.getLogger(ImageCache.class.getName());
 
-  /** The cache. */
-  private final ConcurrentHashMap<String, BufferedImage> cache;
+  private static final Comparator<CacheEntry> ACCESS_ORDER = (a, b) -> Long.compare(a.queuedAccess, b.queuedAccess);
+
+  private static final ExecutorService loader = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+    final Thread thread = new Thread(runnable, "ImageCache");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /** The images that are held in memory. */
+  private final ConcurrentHashMap<String, CacheEntry> cache;
+
+  /**
+   * The images in memory by their power-of-two size class, each ordered by the
+   * time of their last request. Only maintained while a maximum size is set.
+   */
+  private final Map<Integer, PriorityQueue<CacheEntry>> evictionQueues;
+
+  /** The images that are currently decoded from the disk. */
+  private final ConcurrentHashMap<String, CompletableFuture<BufferedImage>> loading;
+
+  private EvictionPolicy evictionPolicy;
+  private long evictions;
+  private final LongAdder hits;
+  private volatile long maxBytes;
+  private final LongAdder misses;
+  private ImagePack pack;
+  private PersistenceFormat persistenceFormat;
+  private long residentBytes;
 
   /** The sub folder. */
   private final String subFolder;
@@ -51,7 +141,13 @@ public final class ImageCache {
    */
   private ImageCache(final String subfolder) {
     this.cache = new ConcurrentHashMap<>();
+    this.evictionQueues = new HashMap<>();
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.loading = new ConcurrentHashMap<>();
     this.subFolder = subfolder;
+    this.evictionPolicy = EvictionPolicy.LEAST_RECENTLY_USED;
+    this.persistenceFormat = PersistenceFormat.PNG;
   }
 
   public static void loadCache() {
@@ -87,22 +183,38 @@ public final class ImageCache {
     }
   }
 
-  public void clearPersistent() {
+  public synchronized void clearPersistent() {
+    if (this.pack != null) {
+      this.pack.close();
+      this.pack = null;
+    }
+
+    final File packFile = new File(this.getPackFileName());
+    if (packFile.exists()) {
+      try {
+        Files.delete(packFile.toPath().toAbsolutePath());
+        log.log(Level.INFO, "deleted \'{0}\'", new Object[] { packFile.toString() });
+      } catch (IOException e) {
+        log.log(Level.SEVERE, e.getMessage(), e);
+      }
+    }
+
     final File dir = new File(this.getSubFolderName());
-    if (!dir.exists() || !dir.isDirectory()) {
-      return;
+    if (dir.exists() && dir.isDirectory()) {
+      log.log(Level.INFO, "deleted \'{0}\'", new Object[] { dir.toString() });
+      FileUtilities.deleteDir(dir);
     }
 
-    log.log(Level.INFO, "deleted \'{0}\'", new Object[] { dir.toString() });
-    FileUtilities.deleteDir(dir);
-    this.cache.clear();
+    this.clear();
   }
 
-  public void clear() {
+  public synchronized void clear() {
     this.cache.clear();
+    this.evictionQueues.clear();
+    this.residentBytes = 0;
   }
 
-  public void clear(final String regex) {
+  public synchronized void clear(final String regex) {
     List<String> remove = new ArrayList<>();
     for (String key : this.cache.keySet()) {
       if (key.matches(regex)) {
@@ -111,7 +223,7 @@ public final class ImageCache {
     }
 
     for (String key : remove) {
-      this.cache.remove(key);
+      this.remove(key);
     }
   }
 
@@ -123,7 +235,16 @@ public final class ImageCache {
    * @return true, if successful
    */
   public boolean containsKey(final String key) {
-    return this.cache.containsKey(key) || new File(this.getFileName(key)).exists();
+    if (this.cache.containsKey(key)) {
+      return true;
+    }
+
+    final ImagePack imagePack = this.getPack();
+    if (imagePack != null && imagePack.contains(key)) {
+      return true;
+    }
+
+    return new File(this.getFileName(key)).exists();
   }
 
   /**
@@ -134,28 +255,108 @@ public final class ImageCache {
    * @return the buffered image
    */
   public BufferedImage get(final String key) {
-    if (this.cache.containsKey(key)) {
-      return this.cache.get(key);
+    final CacheEntry entry = this.cache.get(key);
+    if (entry != null) {
+      // the time of the request is only needed to choose the image to evict
+      if (this.maxBytes > 0) {
+        entry.lastAccess = System.nanoTime();
+      }
+
+      this.hits.increment();
+      return entry.image;
     }
 
+    this.misses.increment();
     return this.loadImage(key);
   }
 
+  public synchronized EvictionPolicy getEvictionPolicy() {
+    return this.evictionPolicy;
+  }
+
+  /**
+   * Gets the number of images that have been evicted because the cache
+   * exceeded its maximum size.
+   *
+   * @return the number of evictions
+   */
+  public synchronized long getEvictions() {
+    return this.evictions;
+  }
+
+  /**
+   * Gets the number of requests for images that were held in memory.
+   *
+   * @return the number of hits
+   */
+  public long getHits() {
+    return this.hits.sum();
+  }
+
   /**
-   * Load all.
+   * Gets the maximum size of all images in memory.
+   *
+   * @return the maximum size in bytes or 0 if the cache is unbounded
+   */
+  public long getMaxBytes() {
+    return this.maxBytes;
+  }
+
+  /**
+   * Gets the number of requests for images that were not held in memory,
+   * including the ones that were loaded from the disk afterwards.
+   *
+   * @return the number of misses
+   */
+  public long getMisses() {
+    return this.misses.sum();
+  }
+
+  public synchronized PersistenceFormat getPersistenceFormat() {
+    return this.persistenceFormat;
+  }
+
+  /**
+   * Gets the estimated size of all images that are held in memory.
+   *
+   * @return the resident size in bytes
+   */
+  public synchronized long getResidentBytes() {
+    return this.residentBytes;
+  }
+
+  /**
+   * Loads all images of this cache from the disk and waits until all of them
+   * are decoded.
    */
   public void loadAll() {
-    final File dir = new File(this.getSubFolderName());
-    if (!dir.exists() || !dir.isDirectory()) {
-      return;
+    this.loadAllAsync().join();
+  }
+
+  /**
+   * Starts to load all images of this cache from the disk in the background.
+   * The images are decoded in parallel and put to the cache as soon as they
+   * are loaded.
+   *
+   * @return a future that is completed when all images are loaded
+   */
+  public CompletableFuture<Void> loadAllAsync() {
+    final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    final ImagePack imagePack = this.getPack();
+    if (imagePack != null) {
+      for (final String key : imagePack.getKeys()) {
+        futures.add(CompletableFuture.runAsync(() -> this.loadImage(key), loader));
+      }
     }
+
+    final File dir = new File(this.getSubFolderName());
     final File[] directoryListing = dir.listFiles();
-    if (directoryListing != null) {
-      for (final File child : directoryListing) {
-        if (!child.isFile()) {
-          continue;
-        }
+    for (final File child : directoryListing != null ? directoryListing : new File[0]) {
+      if (!child.isFile()) {
+        continue;
+      }
 
+      futures.add(CompletableFuture.runAsync(() -> {
         final BufferedImage img = this.loadImage(child.getName());
 
         // clean up cached file if the image is null
@@ -166,8 +367,10 @@ public final class ImageCache {
             log.log(Level.SEVERE, e.getMessage(), e);
           }
         }
-      }
+      }, loader));
     }
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
   }
 
   /**
@@ -179,8 +382,18 @@ public final class ImageCache {
    *          the value
    * @return the buffered image
    */
-  public BufferedImage put(final String key, final BufferedImage value) {
-    return this.cache.put(key, value);
+  public synchronized BufferedImage put(final String key, final BufferedImage value) {
+    final CacheEntry added = new CacheEntry(key, value, System.nanoTime());
+    final CacheEntry previous = this.cache.put(key, added);
+    this.residentBytes += added.bytes;
+    if (previous != null) {
+      this.residentBytes -= previous.bytes;
+      this.dequeue(previous);
+    }
+
+    this.enqueue(added);
+    this.evict(added);
+    return previous != null ? previous.image : null;
   }
 
   /**
@@ -197,11 +410,161 @@ public final class ImageCache {
       return null;
     }
 
-    this.cache.put(key, value);
+    this.put(key, value);
     this.saveImage(key, value);
     return value;
   }
 
+  public synchronized void setEvictionPolicy(final EvictionPolicy evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+  }
+
+  /**
+   * Sets the format in which images that are put persistently are stored.
+   * Images that were already stored in another format can still be loaded.
+   *
+   * @param persistenceFormat
+   *          the persistence format
+   */
+  public synchronized void setPersistenceFormat(final PersistenceFormat persistenceFormat) {
+    if (this.persistenceFormat == persistenceFormat) {
+      return;
+    }
+
+    this.persistenceFormat = persistenceFormat;
+    if (this.pack != null) {
+      this.pack.close();
+      this.pack = null;
+    }
+  }
+
+  /**
+   * Sets the maximum size of all images in memory and evicts images if the
+   * cache currently exceeds that size.
+   *
+   * @param maxBytes
+   *          the maximum size in bytes or 0 for an unbounded cache
+   */
+  public synchronized void setMaxBytes(final long maxBytes) {
+    final boolean wasBounded = this.maxBytes > 0;
+    this.maxBytes = maxBytes;
+    if (maxBytes <= 0) {
+      this.evictionQueues.clear();
+      return;
+    }
+
+    if (!wasBounded) {
+      this.cache.values().forEach(this::enqueue);
+    }
+
+    this.evict(null);
+  }
+
+  /**
+   * Estimates the size of the raster of the specified image.
+   *
+   * @param image
+   *          the image
+   * @return the estimated size in bytes
+   */
+  private static long getSize(final BufferedImage image) {
+    if (image == null) {
+      return 0;
+    }
+
+    // sub images share the raster of their parent, so the size is estimated
+    // by the dimensions of the image instead of the size of its data buffer
+    final int bytesPerPixel = Math.max(1, (image.getColorModel().getPixelSize() + 7) / 8);
+    return (long) image.getWidth() * image.getHeight() * bytesPerPixel;
+  }
+
+  /**
+   * Gets the least recently used entry of the specified queue. Requests only
+   * update the time of an entry, so its position in the queue is corrected
+   * when it reaches the head.
+   */
+  private static CacheEntry getLeastRecentlyUsed(final PriorityQueue<CacheEntry> queue) {
+    CacheEntry head = queue.peek();
+    while (head != null && head.queuedAccess != head.lastAccess) {
+      queue.poll();
+      head.queuedAccess = head.lastAccess;
+      queue.add(head);
+      head = queue.peek();
+    }
+
+    return head;
+  }
+
+  private void dequeue(final CacheEntry entry) {
+    final PriorityQueue<CacheEntry> queue = this.evictionQueues.get(entry.sizeClass);
+    if (queue != null) {
+      queue.remove(entry);
+    }
+  }
+
+  private void enqueue(final CacheEntry entry) {
+    if (this.maxBytes <= 0) {
+      return;
+    }
+
+    entry.queuedAccess = entry.lastAccess;
+    this.evictionQueues.computeIfAbsent(entry.sizeClass, sizeClass -> new PriorityQueue<>(ACCESS_ORDER)).add(entry);
+  }
+
+  /**
+   * Evicts images until the cache doesn't exceed its maximum size anymore.
+   *
+   * @param added
+   *          the most recently added entry, which is never evicted, or null
+   */
+  private void evict(final CacheEntry added) {
+    while (this.maxBytes > 0 && this.residentBytes > this.maxBytes && this.cache.size() > 1) {
+      final CacheEntry evicted = this.getEvictionCandidate(added);
+      if (evicted == null) {
+        return;
+      }
+
+      this.evictionQueues.get(evicted.sizeClass).poll();
+      this.cache.remove(evicted.key);
+      this.residentBytes -= evicted.bytes;
+      this.evictions++;
+    }
+  }
+
+  /**
+   * Gets the entry that is evicted next according to the eviction policy. Only
+   * the least recently used entry of every size class is a candidate, so the
+   * cache is never scanned.
+   */
+  private CacheEntry getEvictionCandidate(final CacheEntry added) {
+    final long now = System.nanoTime();
+    CacheEntry candidate = null;
+    double maxWeight = -1;
+    for (final PriorityQueue<CacheEntry> queue : this.evictionQueues.values()) {
+      final CacheEntry entry = getLeastRecentlyUsed(queue);
+      if (entry == null || entry == added) {
+        continue;
+      }
+
+      final double age = now - entry.lastAccess;
+      final double weight = this.evictionPolicy == EvictionPolicy.SIZE_WEIGHTED ? entry.bytes * age : age;
+      if (weight > maxWeight) {
+        maxWeight = weight;
+        candidate = entry;
+      }
+    }
+
+    return candidate;
+  }
+
+  private void remove(final String key) {
+    final CacheEntry entry = this.cache.remove(key);
+    if (entry != null) {
+      this.residentBytes -= entry.bytes;
+      this.dequeue(entry);
+    }
+  }
+
   /**
    * Gets the file name.
    *
@@ -213,6 +576,24 @@ public final class ImageCache {
     return this.getSubFolderName() + "\\" + key;
   }
 
+  /**
+   * Gets the pack of this cache. The pack is only opened if its file exists or
+   * images are persisted in a raw format.
+   *
+   * @return the pack or null
+   */
+  private synchronized ImagePack getPack() {
+    if (this.pack == null && (this.persistenceFormat != PersistenceFormat.PNG || new File(this.getPackFileName()).exists())) {
+      this.pack = new ImagePack(new File(this.getPackFileName()), this.persistenceFormat == PersistenceFormat.RAW_COMPRESSED);
+    }
+
+    return this.pack;
+  }
+
+  private String getPackFileName() {
+    return this.getSubFolderName() + ".pack";
+  }
+
   /**
    * Gets the sub folder name.
    *
@@ -229,14 +610,39 @@ public final class ImageCache {
    *          the key
    * @return the buffered image
    */
-  private synchronized BufferedImage loadImage(final String key) {
-    final BufferedImage img = ImageSerializer.loadImage(this.getFileName(key));
-    if (img == null) {
-      return null;
+  private BufferedImage loadImage(final String key) {
+    final CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+    final CompletableFuture<BufferedImage> pending = this.loading.putIfAbsent(key, future);
+    if (pending != null) {
+      return pending.join();
     }
 
-    this.cache.put(key, img);
-    return img;
+    try {
+      // another thread might have finished loading the image in the meantime
+      final CacheEntry entry = this.cache.get(key);
+      if (entry != null) {
+        future.complete(entry.image);
+        return entry.image;
+      }
+
+      final ImagePack imagePack = this.getPack();
+      BufferedImage img = imagePack != null ? imagePack.read(key) : null;
+      if (img == null) {
+        img = ImageSerializer.loadImage(this.getFileName(key));
+      }
+
+      if (img != null) {
+        this.put(key, img);
+      }
+
+      future.complete(img);
+      return img;
+    } catch (final RuntimeException e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      this.loading.remove(key, future);
+    }
   }
 
   /**
@@ -248,6 +654,28 @@ public final class ImageCache {
    *          the value
    */
   private void saveImage(final String key, final BufferedImage value) {
-    ImageSerializer.saveImage(this.getFileName(key), value);
+    if (this.getPersistenceFormat() == PersistenceFormat.PNG) {
+      ImageSerializer.saveImage(this.getFileName(key), value);
+      return;
+    }
+
+    this.getPack().write(key, value);
+  }
+
+  private static final class CacheEntry {
+    private final long bytes;
+    private final BufferedImage image;
+    private final String key;
+    private volatile long lastAccess;
+    private long queuedAccess;
+    private final int sizeClass;
+
+    private CacheEntry(final String key, final BufferedImage image, final long lastAccess) {
+      this.key = key;
+      this.image = image;
+      this.bytes = getSize(image);
+      this.lastAccess = lastAccess;
+      this.sizeClass = Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.max(1, this.bytes));
+    }
   }
 }
@@ -3,22 +3,25 @@ package de.gurkenlabs.litiengine.graphics;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Paint;
-import java.awt.Point;
-import java.awt.Polygon;
 import java.awt.RadialGradientPaint;
 import java.awt.Shape;
-import java.awt.geom.Area;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.util.function.Predicate;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import de.gurkenlabs.litiengine.Game;
 import de.gurkenlabs.litiengine.annotation.EntityInfo;
 import de.gurkenlabs.litiengine.entities.Entity;
 import de.gurkenlabs.litiengine.entities.ICombatEntity;
 import de.gurkenlabs.litiengine.entities.IEntity;
-import de.gurkenlabs.util.geom.GeometricUtilities;
 
 /**
  * The Class LightSource.
@@ -48,6 +51,13 @@ public class LightSource extends Entity implements IRenderable {
    */
   private static final Color[] SHADOW_GRADIENT_COLORS = new Color[] { new Color(0, 0, 0, .3f), new Color(0f, 0f, 0f, 0f) };
 
+  private static final boolean ELLIPSE_CLOCKWISE = isClockwise(new Ellipse2D.Double(0, 0, 1, 1));
+
+  private final List<Consumer<LightSource>> changedConsumer = new CopyOnWriteArrayList<>();
+
+  /** The cached shadows of the entities around this light source. */
+  private final Map<IEntity, ShadowGeometry> shadows = new WeakHashMap<>();
+
   private boolean activated;
   /** The brightness. */
   private int brightness;
@@ -83,10 +93,12 @@ public class LightSource extends Entity implements IRenderable {
 
   public void activate() {
     this.activated = true;
+    this.fireChanged();
   }
 
   public void deactivate() {
     this.activated = false;
+    this.fireChanged();
   }
 
   /**
@@ -132,6 +144,22 @@ public class LightSource extends Entity implements IRenderable {
     return this.activated;
   }
 
+  /**
+   * Adds a consumer that is notified whenever a property of this light source
+   * changes that affects the light it emits, e.g. its location, size, color or
+   * whether it's active.
+   *
+   * @param consumer
+   *          the consumer
+   */
+  public void onChanged(final Consumer<LightSource> consumer) {
+    if (this.changedConsumer.contains(consumer)) {
+      return;
+    }
+
+    this.changedConsumer.add(consumer);
+  }
+
   @Override
   public void render(final Graphics2D g) {
     if (Game.getConfiguration().graphics().renderDynamicShadows()) {
@@ -147,18 +175,22 @@ public class LightSource extends Entity implements IRenderable {
    */
   public void setBrightness(final int brightness) {
     this.brightness = brightness;
+    this.fireChanged();
   }
 
   public void setColor(final Color result) {
     this.color = result;
+    this.fireChanged();
   }
 
   public void setIntensity(final int intensity) {
     this.intensity = intensity;
+    this.fireChanged();
   }
 
   public void setLightShapeType(final String shapeType) {
     this.lightShapeType = shapeType;
+    this.fireChanged();
   }
 
   @Override
@@ -175,6 +207,8 @@ public class LightSource extends Entity implements IRenderable {
       this.lightShape = new Ellipse2D.Double(location.getX(), location.getY(), this.getWidth(), this.getHeight());
       break;
     }
+
+    this.fireChanged();
   }
 
   @Override
@@ -185,10 +219,12 @@ public class LightSource extends Entity implements IRenderable {
       shorterDimension = height;
     }
     this.setRadius((int) shorterDimension / 2);
+    this.fireChanged();
   }
 
   public void toggle() {
     this.activated = !this.activated;
+    this.fireChanged();
   }
 
   @Override
@@ -206,158 +242,146 @@ public class LightSource extends Entity implements IRenderable {
   }
 
   /**
-   * Gets the shadow ellipse.
-   *
-   * @param mob
-   *          the mob
-   * @return the shadow ellipse
+   * Determines whether the path of the specified shape runs clockwise in screen
+   * coordinates.
    */
-  private static Ellipse2D getShadowEllipse(final IEntity mob) {
-    final int shadowHeight = (int) (mob.getHeight() / 4);
-    final int shadowWidth = (int) (mob.getWidth() / 3);
-
-    final int yOffset = (int) mob.getHeight();
-    final double x = mob.getLocation().getX() + (mob.getWidth() - shadowWidth) / 2;
-    final double y = mob.getLocation().getY() + yOffset - shadowHeight / 2.0;
-    return new Ellipse2D.Double(x, y, shadowWidth, shadowHeight);
+  private static boolean isClockwise(final Shape shape) {
+    final PathIterator iterator = shape.getPathIterator(null, 0.1);
+    final double[] coords = new double[6];
+    double area = 0;
+    double startX = 0;
+    double startY = 0;
+    double lastX = 0;
+    double lastY = 0;
+    while (!iterator.isDone()) {
+      final int type = iterator.currentSegment(coords);
+      if (type == PathIterator.SEG_MOVETO) {
+        startX = lastX = coords[0];
+        startY = lastY = coords[1];
+      } else if (type == PathIterator.SEG_LINETO) {
+        area += lastX * coords[1] - coords[0] * lastY;
+        lastX = coords[0];
+        lastY = coords[1];
+      } else if (type == PathIterator.SEG_CLOSE) {
+        area += lastX * startY - startX * lastY;
+      }
+
+      iterator.next();
+    }
+
+    return area > 0;
   }
 
-  /**
-   * Checks if is in range.
-   *
-   * @param center
-   *          the center
-   * @param radius
-   *          the radius
-   * @return the predicate<? super mob>
-   */
-  private static Predicate<? super IEntity> isInRange(final Point2D center, final float radius) {
-    return mob -> new Ellipse2D.Double(center.getX() - radius, center.getY() - radius, radius * 2, radius * 2).contains(mob.getDimensionCenter());
+  private static boolean isInRange(final IEntity mob, final double centerX, final double centerY, final double radius) {
+    final double dx = mob.getDimensionCenter().getX() - centerX;
+    final double dy = mob.getDimensionCenter().getY() - centerY;
+    return dx * dx + dy * dy < radius * radius;
+  }
+
+  private void fireChanged() {
+    for (final Consumer<LightSource> consumer : this.changedConsumer) {
+      consumer.accept(this);
+    }
   }
 
   /**
-   * Gets the obstructed vision area.
+   * Gets the cached shadow of the specified entity and updates it if the
+   * entity or this light source moved since it was computed.
    *
    * @param mob
    *          the mob
-   * @param center
-   *          the center
-   * @return the obstructed vision area
+   * @param lightX
+   *          the x-coordinate of the light center on the map
+   * @param lightY
+   *          the y-coordinate of the light center on the map
+   * @return the shadow in map coordinates
    */
-  private Area getObstructedVisionArea(final IEntity mob, final Point2D center) {
-    final Polygon shadowPolygon = new Polygon();
-
-    final Ellipse2D shadowEllipse = getShadowEllipse(mob);
-
-    final Rectangle2D bounds = shadowEllipse.getBounds2D();
-
-    // radius of Entity's bounding circle
-    final float r = (float) bounds.getWidth() / 2f;
-    final float ry = (float) bounds.getHeight() / 2f;
-
-    // get relative center of entity
-    final Point2D relativeCenter = Game.getCamera().getViewPortLocation(new Point((int) (bounds.getX() + r), (int) (bounds.getY() + ry)));
-    final double cx = relativeCenter.getX();
-    final double cy = relativeCenter.getY();
-
-    // get direction from light to entity center
-    final double dx = cx - center.getX();
-    final double dy = cy - center.getY();
-
-    // get euclidean distance from entity to center
-    final double distSq = dx * dx + dy * dy; // avoid sqrt for performance
-
-    // normalize the direction to a unit vector
-    final float len = (float) Math.sqrt(distSq);
-    double nx = dx;
-    double ny = dy;
-    if (len != 0) { // avoid division by 0
-      nx /= len;
-      ny /= len;
+  private Shape getObstructedVisionArea(final IEntity mob, final double lightX, final double lightY) {
+    ShadowGeometry geometry = this.shadows.get(mob);
+    if (geometry == null) {
+      geometry = new ShadowGeometry();
+      this.shadows.put(mob, geometry);
     }
 
-    // get perpendicular of unit vector
-    final double px = -ny;
-    final double py = nx;
-
-    // our perpendicular points in either direction from radius
-    final Point2D.Double pointA = new Point2D.Double(cx - px * r, cy - py * ry);
-    final Point2D.Double pointB = new Point2D.Double(cx + px * r, cy + py * ry);
-
-    // project the points by our SHADOW_EXTRUDE amount
-    final Point2D pointC = GeometricUtilities.project(center, pointA, OBSTRUCTED_VISION_RADIUS);
-    final Point2D pointD = GeometricUtilities.project(center, pointB, OBSTRUCTED_VISION_RADIUS);
-
-    // construct a polygon from our points
-    shadowPolygon.reset();
-    shadowPolygon.addPoint((int) pointA.getX(), (int) pointA.getY());
-    shadowPolygon.addPoint((int) pointB.getX(), (int) pointB.getY());
-    shadowPolygon.addPoint((int) pointD.getX(), (int) pointD.getY());
-    shadowPolygon.addPoint((int) pointC.getX(), (int) pointC.getY());
-
-    final Point2D shadowRenderLocation = Game.getCamera().getViewPortLocation(new Point2D.Double(shadowEllipse.getX(), shadowEllipse.getY()));
-    final Ellipse2D relativeEllipse = new Ellipse2D.Double(shadowRenderLocation.getX(), shadowRenderLocation.getY(), shadowEllipse.getWidth(), shadowEllipse.getHeight());
+    if (!geometry.isValid(mob, lightX, lightY)) {
+      geometry.update(mob, lightX, lightY);
+    }
 
-    final Area ellipseArea = new Area(relativeEllipse);
-    final Area shadowArea = new Area(shadowPolygon);
-    shadowArea.add(ellipseArea);
-    return shadowArea;
+    return geometry.shape;
   }
 
   /**
    * Renders the shadows using simple vector math. The steps are as follows:
    *
    * <pre>
+   * if the light can't cast a shadow into the viewport:
+   *     ignore light
+   *
    * for each entity
-   *     if entity is not moving:
-   *         ignore entity
-   *     if entity is too far from mouse:
+   *     if entity is too far from the light:
    *         ignore entity
+   *     if neither the entity nor the light moved:
+   *         reuse the cached shadow
    *
-   *     determine unit vector from mouse to entity center
+   *     determine unit vector from light to entity center
    *     get perpendicular of unit vector
    *
    *     Create Points A + B:
    *         extrude perpendicular in either direction, by the half-size of the entity
    *     Create Points C + D:
-   *         extrude A + B away from mouse position
+   *         extrude A + B away from light position
    *
-   *     construct polygon with points A, B, C, D
+   *     construct a path with the quad A, B, D, C and the shadow ellipse of the entity
    *
    *     render with RadialGradientPaint to give it a "fade-out" appearance
    * </pre>
    *
+   * The shadows are computed in map coordinates, so they don't have to be
+   * updated when the camera moves.
+   *
    * @param g
    *          the graphics to use for rendering
-   * @param center
-   *          the center
    */
   private void renderShadows(final Graphics2D g) {
-    if (!Game.getEnvironment().getCombatEntities().stream().anyMatch(isInRange(this.getDimensionCenter(), SHADOW_GRADIENT_SIZE))) {
+    final Point2D viewPortCenter = Game.getCamera().getViewPortDimensionCenter(this);
+    final double offsetX = Game.getCamera().getPixelOffsetX();
+    final double offsetY = Game.getCamera().getPixelOffsetY();
+    final double lightX = viewPortCenter.getX() - offsetX;
+    final double lightY = viewPortCenter.getY() - offsetY;
+
+    final Rectangle2D viewPort = Game.getCamera().getViewPort();
+    final double shadowRange = SHADOW_GRADIENT_SIZE + OBSTRUCTED_VISION_RADIUS;
+    if (viewPort != null && !viewPort.intersects(lightX - shadowRange, lightY - shadowRange, shadowRange * 2, shadowRange * 2)) {
       return;
     }
 
-    // we'll use a radial gradient
-    final Paint gradientPaint = new RadialGradientPaint(Game.getCamera().getViewPortDimensionCenter(this), SHADOW_GRADIENT_SIZE, SHADOW_GRADIENT_FRACTIONS, SHADOW_GRADIENT_COLORS);
-
-    // old Paint object for resetting it later
+    final Point2D center = this.getDimensionCenter();
     final Paint oldPaint = g.getPaint();
-    g.setPaint(gradientPaint);
+    final AffineTransform oldTransform = g.getTransform();
+    boolean prepared = false;
 
     // for each entity
     for (final ICombatEntity mob : Game.getEnvironment().getCombatEntities()) {
-      if (mob.isDead() || !isInRange(this.getDimensionCenter(), SHADOW_GRADIENT_SIZE).test(mob)) {
+      if (mob.isDead() || !isInRange(mob, center.getX(), center.getY(), SHADOW_GRADIENT_SIZE)) {
         continue;
       }
 
-      final Shape obstructedVision = this.getObstructedVisionArea(mob, Game.getCamera().getViewPortDimensionCenter(this));
-      // fill the polygon with the gradient paint
+      if (!prepared) {
+        // we'll use a radial gradient
+        g.translate(offsetX, offsetY);
+        g.setPaint(new RadialGradientPaint(new Point2D.Double(lightX, lightY), SHADOW_GRADIENT_SIZE, SHADOW_GRADIENT_FRACTIONS, SHADOW_GRADIENT_COLORS));
+        prepared = true;
+      }
 
-      g.fill(obstructedVision);
+      // fill the shadow with the gradient paint
+      g.fill(this.getObstructedVisionArea(mob, lightX, lightY));
     }
 
-    // reset to old Paint object
-    g.setPaint(oldPaint);
+    if (prepared) {
+      // reset to old Paint object
+      g.setPaint(oldPaint);
+      g.setTransform(oldTransform);
+    }
   }
 
   /**
@@ -369,4 +393,103 @@ public class LightSource extends Entity implements IRenderable {
   private void setRadius(final int radius) {
     this.radius = radius;
   }
+
+  /**
+   * The shadow of an entity that is cast by this light source. The path and
+   * the ellipse are reused whenever the shadow needs to be updated.
+   */
+  private static final class ShadowGeometry {
+    private final Ellipse2D.Double ellipse = new Ellipse2D.Double();
+    private final double[] quad = new double[8];
+    private final Path2D.Double shape = new Path2D.Double(Path2D.WIND_NON_ZERO);
+    private double height;
+    private double lightX = Double.NaN;
+    private double lightY;
+    private double width;
+    private double x;
+    private double y;
+
+    private boolean isValid(final IEntity mob, final double lightX, final double lightY) {
+      return this.lightX == lightX && this.lightY == lightY && this.x == mob.getLocation().getX() && this.y == mob.getLocation().getY() && this.width == mob.getWidth() && this.height == mob.getHeight();
+    }
+
+    private void update(final IEntity mob, final double lightX, final double lightY) {
+      this.lightX = lightX;
+      this.lightY = lightY;
+      this.x = mob.getLocation().getX();
+      this.y = mob.getLocation().getY();
+      this.width = mob.getWidth();
+      this.height = mob.getHeight();
+
+      final int shadowHeight = (int) (this.height / 4);
+      final int shadowWidth = (int) (this.width / 3);
+      this.ellipse.setFrame(this.x + (this.width - shadowWidth) / 2, this.y + (int) this.height - shadowHeight / 2.0, shadowWidth, shadowHeight);
+
+      // radius of Entity's bounding circle
+      final double r = this.ellipse.getWidth() / 2;
+      final double ry = this.ellipse.getHeight() / 2;
+
+      // get center of entity
+      final double cx = (int) (this.ellipse.getX() + r);
+      final double cy = (int) (this.ellipse.getY() + ry);
+
+      // get direction from light to entity center and normalize it
+      double nx = cx - lightX;
+      double ny = cy - lightY;
+      final double len = Math.sqrt(nx * nx + ny * ny);
+      if (len != 0) {
+        nx /= len;
+        ny /= len;
+      }
+
+      // our perpendicular points in either direction from radius (A + B)
+      final double px = -ny;
+      final double py = nx;
+      this.quad[0] = cx - px * r;
+      this.quad[1] = cy - py * ry;
+      this.quad[2] = cx + px * r;
+      this.quad[3] = cy + py * ry;
+
+      // project the points away from the light (D + C)
+      this.project(this.quad[2], this.quad[3], 4);
+      this.project(this.quad[0], this.quad[1], 6);
+
+      // the quad must run in the same direction as the ellipse so that the
+      // non-zero winding rule fills their union only once
+      double area = 0;
+      for (int i = 0; i < 8; i += 2) {
+        final int next = (i + 2) % 8;
+        area += this.quad[i] * this.quad[next + 1] - this.quad[next] * this.quad[i + 1];
+      }
+
+      this.shape.reset();
+      if (area > 0 == ELLIPSE_CLOCKWISE) {
+        this.shape.moveTo(this.quad[0], this.quad[1]);
+        this.shape.lineTo(this.quad[2], this.quad[3]);
+        this.shape.lineTo(this.quad[4], this.quad[5]);
+        this.shape.lineTo(this.quad[6], this.quad[7]);
+      } else {
+        this.shape.moveTo(this.quad[0], this.quad[1]);
+        this.shape.lineTo(this.quad[6], this.quad[7]);
+        this.shape.lineTo(this.quad[4], this.quad[5]);
+        this.shape.lineTo(this.quad[2], this.quad[3]);
+      }
+
+      this.shape.closePath();
+      this.shape.append(this.ellipse, false);
+    }
+
+    private void project(final double pointX, final double pointY, final int index) {
+      double dx = pointX - this.lightX;
+      double dy = pointY - this.lightY;
+      final double len = Math.sqrt(dx * dx + dy * dy);
+      if (len != 0) {
+        dx /= len;
+        dy /= len;
+      }
+
+      this.quad[index] = this.lightX + dx * OBSTRUCTED_VISION_RADIUS;
+      this.quad[index + 1] = this.lightY + dy * OBSTRUCTED_VISION_RADIUS;
+    }
+  }
 }
@@ -389,6 +389,12 @@ public final class RenderEngine implements IRenderEngine {
     this.renderEntities(g, entities, true, vision);
   }
 
+  @Override
+  public void renderEntities(final Graphics2D g, final EntityRenderList entities) {
+    entities.update();
+    entities.forEach(Game.getCamera().getViewPort(), entity -> this.renderEntity(g, entity));
+  }
+
   @Override
   public void renderEntity(final Graphics2D g, final IEntity entity) {
     if (entity == null) {
@@ -7,13 +7,13 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,6 +40,9 @@ public final class Spritesheet {
   /** The rows. */
   private int rows;
 
+  /** The sprites that have already been sliced from the image by their index. */
+  private volatile AtomicReferenceArray<BufferedImage> sprites;
+
   /** The sprite height. */
   private int spriteHeight;
 
@@ -207,10 +210,23 @@ public final class Spritesheet {
     return this.rows;
   }
 
+  /**
+   * Gets the sprite with the specified index. The sprites are sliced from the
+   * image of this spritesheet when they are requested for the first time and
+   * are then kept in a lookup table, so subsequent calls don't allocate
+   * anything.
+   *
+   * @param index
+   *          The index of the sprite, counted row by row.
+   * @return The sprite or null if the index is outside of this spritesheet.
+   */
   public BufferedImage getSprite(final int index) {
-    final String imageCacheKey = MessageFormat.format("{0}_{1}", this.hashCode, index);
-    if (ImageCache.SPRITES.containsKey(imageCacheKey)) {
-      return ImageCache.SPRITES.get(imageCacheKey);
+    final AtomicReferenceArray<BufferedImage> table = this.sprites;
+    if (index >= 0 && index < table.length()) {
+      final BufferedImage sprite = table.get(index);
+      if (sprite != null) {
+        return sprite;
+      }
     }
 
     if (this.getImage() == null) {
@@ -221,7 +237,11 @@ public final class Spritesheet {
     final Point position = this.getLocation(index);
     try {
       final BufferedImage smallImage = this.getImage().getSubimage(position.x, position.y, this.spriteWidth, this.spriteHeight);
-      ImageCache.SPRITES.put(imageCacheKey, smallImage);
+      if (index >= 0 && index < table.length() && !table.compareAndSet(index, null, smallImage)) {
+        // another thread has sliced the same sprite in the meantime
+        return table.get(index);
+      }
+
       return smallImage;
     } catch (final RasterFormatException rfe) {
       log.warning("could not read sprite of size [" + this.spriteWidth + "x" + this.spriteHeight + " at position [" + position.x + "," + position.y + "] from sprite'" + this.getName() + "'");
@@ -331,5 +351,7 @@ public final class Spritesheet {
 
       throw new IllegalArgumentException(error);
     }
+
+    this.sprites = new AtomicReferenceArray<>(this.columns * this.rows);
   }
 }
\ No newline at end of file
@@ -8,13 +8,15 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import de.gurkenlabs.litiengine.Game;
 import de.gurkenlabs.litiengine.IGameLoop;
+import de.gurkenlabs.litiengine.IPhasedUpdateable;
 import de.gurkenlabs.litiengine.ITimeToLive;
-import de.gurkenlabs.litiengine.IUpdateable;
+import de.gurkenlabs.litiengine.UpdatePhase;
 import de.gurkenlabs.litiengine.annotation.CollisionInfo;
 import de.gurkenlabs.litiengine.annotation.EmitterInfo;
 import de.gurkenlabs.litiengine.entities.Entity;
@@ -25,7 +27,7 @@ import de.gurkenlabs.litiengine.graphics.IRenderable;
  * An abstract implementation for emitters that provide a particle effect.
  */
 @CollisionInfo(collision = false)
-public abstract class Emitter extends Entity implements IUpdateable, ITimeToLive, IRenderable {
+public abstract class Emitter extends Entity implements IPhasedUpdateable, ITimeToLive, IRenderable {
   private static final Color DEFAULT_PARTICLE_COLOR = new Color(255, 255, 255, 150);
   private static final Random RANDOM = new Random();
 
@@ -44,6 +46,9 @@ public abstract class Emitter extends Entity implements IUpdateable, ITimeToLive
 
   private final List<Color> colors;
 
+  /** Determines whether the emitter finished and is about to be deleted. */
+  private boolean finished;
+
   private IGameLoop gameLoop;
 
   /** The last spawn. */
@@ -112,6 +117,7 @@ public abstract class Emitter extends Entity implements IUpdateable, ITimeToLive
 
     this.gameLoop = gameLoop;
     this.activated = true;
+    this.finished = false;
     this.activationTick = this.gameLoop.getTicks();
     this.gameLoop.attach(this);
   }
@@ -231,6 +237,11 @@ public abstract class Emitter extends Entity implements IUpdateable, ITimeToLive
     return this.timeToLive;
   }
 
+  @Override
+  public UpdatePhase getUpdatePhase() {
+    return UpdatePhase.EFFECTS;
+  }
+
   public boolean isActivateOnInit() {
     return this.activateOnInit;
   }
@@ -246,6 +257,16 @@ public abstract class Emitter extends Entity implements IUpdateable, ITimeToLive
     return this.getTimeToLive() > 0 && this.timeToLiveReached() || this.activated && this.lastSpawn > 0 && this.getParticles().isEmpty();
   }
 
+  /**
+   * Emitters only update their own particles, so they can be updated in
+   * parallel. Finished emitters that are updated by a worker thread are removed
+   * from the environment by a timed action on the game loop thread.
+   */
+  @Override
+  public boolean isParallelUpdateSafe() {
+    return true;
+  }
+
   /**
    * Checks if is paused.
    *
@@ -346,11 +367,14 @@ public abstract class Emitter extends Entity implements IUpdateable, ITimeToLive
 
     // clear particles if the effect time to life is reached
     if (this.isFinished()) {
-      for (Consumer<Emitter> cons : this.finishedConsumer) {
-        cons.accept(this);
+      // workers of a parallel update must not modify the environment
+      if (!ForkJoinTask.inForkJoinPool()) {
+        this.finish();
+      } else if (!this.finished) {
+        this.finished = true;
+        loop.execute(0, index -> this.finish());
       }
 
-      this.delete();
       return;
     }
 
@@ -458,4 +482,11 @@ public abstract class Emitter extends Entity implements IUpdateable, ITimeToLive
     }
   }
 
+  private void finish() {
+    for (Consumer<Emitter> cons : this.finishedConsumer) {
+      cons.accept(this);
+    }
+
+    this.delete();
+  }
 }
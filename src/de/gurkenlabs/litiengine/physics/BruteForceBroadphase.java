@@ -0,0 +1,68 @@
+package de.gurkenlabs.litiengine.physics;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.gurkenlabs.litiengine.entities.ICollisionEntity;
+
+/**
+ * The default broadphase that doesn't narrow down the candidates at all. Every
+ * query returns all known entities and static collision boxes.
+ */
+public class BruteForceBroadphase implements IBroadphase {
+  private final List<ICollisionEntity> entities;
+  private final List<Rectangle2D> staticCollisionBoxes;
+
+  public BruteForceBroadphase() {
+    this.entities = new CopyOnWriteArrayList<>();
+    this.staticCollisionBoxes = new CopyOnWriteArrayList<>();
+  }
+
+  @Override
+  public void add(final ICollisionEntity entity) {
+    this.entities.add(entity);
+  }
+
+  @Override
+  public void add(final Rectangle2D staticCollisionBox) {
+    this.staticCollisionBoxes.add(staticCollisionBox);
+  }
+
+  @Override
+  public void clear() {
+    this.entities.clear();
+    this.staticCollisionBoxes.clear();
+  }
+
+  @Override
+  public Collection<ICollisionEntity> getEntities(final Rectangle2D area) {
+    return this.entities;
+  }
+
+  @Override
+  public Collection<Rectangle2D> getStaticCollisionBoxes(final Rectangle2D area) {
+    return this.staticCollisionBoxes;
+  }
+
+  @Override
+  public void remove(final ICollisionEntity entity) {
+    this.entities.remove(entity);
+  }
+
+  @Override
+  public void remove(final Rectangle2D staticCollisionBox) {
+    this.staticCollisionBoxes.remove(staticCollisionBox);
+  }
+
+  @Override
+  public void update() {
+    // nothing to update because every query returns all candidates
+  }
+
+  @Override
+  public void update(final ICollisionEntity entity) {
+    // nothing to update because every query returns all candidates
+  }
+}
@@ -10,7 +10,10 @@ import java.util.function.Predicate;
 import de.gurkenlabs.litiengine.Game;
 import de.gurkenlabs.litiengine.IGameLoop;
 import de.gurkenlabs.litiengine.entities.IMovableEntity;
+import de.gurkenlabs.litiengine.physics.pathfinding.FlowField;
+import de.gurkenlabs.litiengine.physics.pathfinding.FlowFieldService;
 import de.gurkenlabs.litiengine.physics.pathfinding.IPathFinder;
+import de.gurkenlabs.litiengine.physics.pathfinding.PathRequestService;
 import de.gurkenlabs.util.geom.GeometricUtilities;
 
 /**
@@ -26,11 +29,24 @@ public class EntityNavigator implements IEntityNavigator {
   private int currentSegment;
   private final IMovableEntity entity;
 
+  private FlowFieldService flowFieldService;
+
+  /** The target of the navigation along a flow field. */
+  private Point2D flowTarget;
+
   /** The navigations. */
   private Path path;
 
   private final IPathFinder pathFinder;
 
+  private PathRequestService pathRequestService;
+
+  /** The id of the latest asynchronous path request. */
+  private int pathRequest;
+
+  /** Indicates whether the path of the latest request is still calculated. */
+  private boolean pathRequestPending;
+
   /**
    * Instantiates a new entity navigator.
    * 
@@ -68,18 +84,65 @@ public class EntityNavigator implements IEntityNavigator {
     return this.pathFinder;
   }
 
+  public FlowFieldService getFlowFieldService() {
+    return this.flowFieldService;
+  }
+
+  public PathRequestService getPathRequestService() {
+    return this.pathRequestService;
+  }
+
+  /**
+   * Indicates whether the entity is navigated. This includes the time in which
+   * the path to a target is still being calculated by the path request service.
+   *
+   * @return true, if the entity follows a path or a flow field or waits for a
+   *         requested path
+   */
   @Override
   public boolean isNavigating() {
-    return this.path != null;
+    return this.path != null || this.flowTarget != null || this.pathRequestPending;
   }
 
   @Override
   public void navigate(final Path2D path) {
+    // a pending path request must not replace the new path
+    ++this.pathRequest;
+    this.pathRequestPending = false;
+    this.flowTarget = null;
+    this.currentSegment = 0;
     this.path = new Path(path);
   }
 
   @Override
   public void navigate(final Point2D target) {
+    // only the path of the latest request will be used for the navigation and
+    // the previous path is abandoned right away, so the entity stands still
+    // until the new path is delivered
+    final int request = ++this.pathRequest;
+    this.pathRequestPending = false;
+    this.flowTarget = null;
+    this.path = null;
+    this.currentSegment = 0;
+    if (this.getFlowFieldService() != null) {
+      // the entity follows the shared flow field of the target with every update
+      this.flowTarget = target;
+      return;
+    }
+
+    if (this.getPathRequestService() != null) {
+      this.pathRequestPending = true;
+      this.getPathRequestService().request(this.entity, target, path -> {
+        if (request == this.pathRequest) {
+          this.pathRequestPending = false;
+          this.currentSegment = 0;
+          this.path = path;
+        }
+      });
+
+      return;
+    }
+
     if (this.getPathFinder() != null) {
       this.path = this.getPathFinder().findPath(this.entity, target);
     }
@@ -91,10 +154,42 @@ public class EntityNavigator implements IEntityNavigator {
     this.entity.setAngle((float) angle);
   }
 
+  /**
+   * Sets the service that provides the flow fields for this instance. If a
+   * service is set, the entity follows the flow field of its target instead of
+   * calculating an own path. This should be preferred if many entities
+   * navigate to the same target.
+   *
+   * @param flowFieldService
+   *          The service to use or null to navigate along calculated paths.
+   */
+  public void setFlowFieldService(final FlowFieldService flowFieldService) {
+    this.flowFieldService = flowFieldService;
+  }
+
+  /**
+   * Sets the service that calculates the paths for this instance
+   * asynchronously. If a service is set, the navigation will start with the
+   * first update after the path has been calculated. The previous path is
+   * abandoned as soon as a new target is requested and the entity stands still
+   * while the request is pending, during which {@link #isNavigating()} is
+   * true.
+   *
+   * @param pathRequestService
+   *          The service to use or null to calculate the paths synchronously
+   *          with the path finder of this instance.
+   */
+  public void setPathRequestService(final PathRequestService pathRequestService) {
+    this.pathRequestService = pathRequestService;
+  }
+
   @Override
   public void stop() {
     this.currentSegment = 0;
+    this.pathRequestPending = false;
     this.path = null;
+    this.flowTarget = null;
+    ++this.pathRequest;
   }
 
   /*
@@ -108,10 +203,6 @@ public class EntityNavigator implements IEntityNavigator {
       return;
     }
 
-    if (this.path == null) {
-      return;
-    }
-
     for (final Predicate<IMovableEntity> pred : this.cancelNavigationConditions) {
       if (pred.test(this.getEntity())) {
         this.stop();
@@ -119,6 +210,15 @@ public class EntityNavigator implements IEntityNavigator {
       }
     }
 
+    if (this.flowTarget != null) {
+      this.followFlowField(loop);
+      return;
+    }
+
+    if (this.path == null) {
+      return;
+    }
+
     final PathIterator pi = this.path.getPath().getPathIterator(null);
     if (pi.isDone()) {
       this.stop();
@@ -153,7 +253,30 @@ public class EntityNavigator implements IEntityNavigator {
       return;
     }
 
-    final double angle = GeometricUtilities.calcRotationAngleInDegrees(this.entity.getCollisionBox().getCenterX(), this.entity.getCollisionBox().getCenterY(), coordinates[0], coordinates[1]);
+    this.move(loop, coordinates[0], coordinates[1], distance);
+  }
+
+  private void followFlowField(final IGameLoop loop) {
+    final Point2D center = new Point2D.Double(this.entity.getCollisionBox().getCenterX(), this.entity.getCollisionBox().getCenterY());
+    final FlowField flowField = this.getFlowFieldService().getFlowField(this.flowTarget);
+    final boolean onGoal = flowField.getNode(center).equals(flowField.getGoal());
+    final Point2D next = onGoal ? this.flowTarget : flowField.getNextLocation(center);
+    if (next == null) {
+      this.stop();
+      return;
+    }
+
+    final double distance = center.distance(next);
+    if (onGoal && distance < ACCEPTABLE_ERROR) {
+      this.stop();
+      return;
+    }
+
+    this.move(loop, next.getX(), next.getY(), distance);
+  }
+
+  private void move(final IGameLoop loop, final double x, final double y, final double distance) {
+    final double angle = GeometricUtilities.calcRotationAngleInDegrees(this.entity.getCollisionBox().getCenterX(), this.entity.getCollisionBox().getCenterY(), x, y);
     final float pixelsPerTick = loop.getDeltaTime() * 0.001f * this.entity.getVelocity() * loop.getTimeScale();
     Game.getPhysicsEngine().move(this.entity, (float) angle, (float) (distance < pixelsPerTick ? distance : pixelsPerTick));
   }
@@ -0,0 +1,61 @@
+package de.gurkenlabs.litiengine.physics;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+
+import de.gurkenlabs.litiengine.entities.ICollisionEntity;
+
+/**
+ * The broadphase of the physics engine narrows down the collision boxes that
+ * need to be checked for a certain area. Implementations only provide
+ * candidates, the exact intersection tests are performed by the
+ * {@link IPhysicsEngine}.
+ */
+public interface IBroadphase {
+  public void add(ICollisionEntity entity);
+
+  public void add(Rectangle2D staticCollisionBox);
+
+  public void clear();
+
+  /**
+   * Gets all collision entities whose collision boxes might intersect with the
+   * specified area.
+   * 
+   * @param area
+   *          The area to get the candidates for.
+   * @return A collection that contains at least all entities that intersect
+   *         with the specified area.
+   */
+  public Collection<ICollisionEntity> getEntities(Rectangle2D area);
+
+  /**
+   * Gets all static collision boxes that might intersect with the specified
+   * area.
+   * 
+   * @param area
+   *          The area to get the candidates for.
+   * @return A collection that contains at least all static collision boxes
+   *         that intersect with the specified area.
+   */
+  public Collection<Rectangle2D> getStaticCollisionBoxes(Rectangle2D area);
+
+  public void remove(ICollisionEntity entity);
+
+  public void remove(Rectangle2D staticCollisionBox);
+
+  /**
+   * Updates the broadphase for all entities that have changed their location
+   * or collision box since the last update.
+   */
+  public void update();
+
+  /**
+   * Updates the broadphase for the specified entity after its location or
+   * collision box has changed.
+   * 
+   * @param entity
+   *          The entity to update.
+   */
+  public void update(ICollisionEntity entity);
+}
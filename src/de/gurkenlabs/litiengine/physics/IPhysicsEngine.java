@@ -49,6 +49,14 @@ public interface IPhysicsEngine extends IUpdateable {
 
   public List<Rectangle2D> getAllCollisionBoxes();
 
+  /**
+   * Gets the broadphase that narrows down the collision boxes for all
+   * collision queries of this instance.
+   * 
+   * @return The current broadphase.
+   */
+  public IBroadphase getBroadphase();
+
   public List<ICollisionEntity> getCollisionEntities();
 
   public List<Rectangle2D> getStaticCollisionBoxes();
@@ -79,5 +87,16 @@ public interface IPhysicsEngine extends IUpdateable {
 
   public void remove(Rectangle2D staticCollisionBox);
 
+  /**
+   * Sets the broadphase that is used to narrow down the collision boxes for all
+   * collision queries. All currently known entities and static collision boxes
+   * are added to the specified broadphase.
+   * 
+   * @param broadphase
+   *          The broadphase to use, e.g. the {@link BruteForceBroadphase} or a
+   *          {@link SpatialHashBroadphase}.
+   */
+  public void setBroadphase(IBroadphase broadphase);
+
   public void setBounds(Rectangle2D environmentBounds);
 }
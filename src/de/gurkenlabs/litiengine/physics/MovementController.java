@@ -5,15 +5,21 @@ import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import de.gurkenlabs.litiengine.Game;
 import de.gurkenlabs.litiengine.IGameLoop;
 import de.gurkenlabs.litiengine.entities.IMovableEntity;
+import de.gurkenlabs.litiengine.physics.pathfinding.FlowField;
+import de.gurkenlabs.litiengine.physics.pathfinding.FlowFieldService;
 import de.gurkenlabs.util.geom.GeometricUtilities;
 
 public class MovementController<T extends IMovableEntity> implements IMovementController<T> {
   private static final double FORCE_APPLY_ACCEPTED_ERROR = 0.1;
+  private static final double TARGET_ACCEPTED_ERROR = 0.3;
   private final List<Force> activeForces;
+  private FlowFieldService flowFieldService;
+  private Supplier<Point2D> flowTarget;
   private final T movableEntity;
   private final List<Predicate<T>> movementPredicates;
   private final List<Consumer<Point2D>> movedConsumer;
@@ -37,11 +43,51 @@ public class MovementController<T extends IMovableEntity> implements IMovementCo
     return this.activeForces;
   }
 
+  /**
+   * Lets the entity follow the flow field towards the specified target with
+   * every update, at the velocity of the entity. The target is queried on every
+   * update, so it can be a moving location, e.g. the one of a chased entity.
+   * All entities whose targets are on the same node share one flow field of the
+   * service, so each of them only needs a lookup per update. The entity stops
+   * following when it has reached the target or the target cannot be reached.
+   *
+   * @param flowFieldService
+   *          The service that provides the flow fields.
+   * @param target
+   *          The supplier of the location to move to.
+   */
+  public void follow(final FlowFieldService flowFieldService, final Supplier<Point2D> target) {
+    this.flowFieldService = flowFieldService;
+    this.flowTarget = target;
+  }
+
+  /**
+   * Lets the entity follow the flow field towards the specified location.
+   *
+   * @param flowFieldService
+   *          The service that provides the flow fields.
+   * @param target
+   *          The location to move to.
+   * @see #follow(FlowFieldService, Supplier)
+   */
+  public void follow(final FlowFieldService flowFieldService, final Point2D target) {
+    this.follow(flowFieldService, () -> target);
+  }
+
   @Override
   public T getEntity() {
     return this.movableEntity;
   }
 
+  public boolean isFollowing() {
+    return this.flowTarget != null;
+  }
+
+  public void stopFollowing() {
+    this.flowFieldService = null;
+    this.flowTarget = null;
+  }
+
   @Override
   public void onMovementCheck(final Predicate<T> predicate) {
     if (!this.movementPredicates.contains(predicate)) {
@@ -52,6 +98,9 @@ public class MovementController<T extends IMovableEntity> implements IMovementCo
   @Override
   public void update(final IGameLoop gameLoop) {
     this.handleForces(gameLoop);
+    if (this.isFollowing() && this.isMovementAllowed()) {
+      this.followFlowField(gameLoop);
+    }
   }
 
   @Override
@@ -83,6 +132,34 @@ public class MovementController<T extends IMovableEntity> implements IMovementCo
     return true;
   }
 
+  private void followFlowField(final IGameLoop gameLoop) {
+    final Point2D target = this.flowTarget.get();
+    if (target == null) {
+      this.stopFollowing();
+      return;
+    }
+
+    final Point2D center = new Point2D.Double(this.getEntity().getCollisionBox().getCenterX(), this.getEntity().getCollisionBox().getCenterY());
+    final FlowField flowField = this.flowFieldService.getFlowField(target);
+    final boolean onGoal = flowField.getNode(center).equals(flowField.getGoal());
+    final Point2D next = onGoal ? target : flowField.getNextLocation(center);
+    final double distance = next != null ? center.distance(next) : 0;
+    if (next == null || onGoal && distance < TARGET_ACCEPTED_ERROR) {
+      this.stopFollowing();
+      return;
+    }
+
+    final double previousX = this.getEntity().getLocation().getX();
+    final double previousY = this.getEntity().getLocation().getY();
+    final float pixelsPerTick = gameLoop.getDeltaTime() * 0.001f * this.getEntity().getVelocity() * gameLoop.getTimeScale();
+    this.getPhysicsEngine().move(this.getEntity(), (float) GeometricUtilities.calcRotationAngleInDegrees(center, next), (float) Math.min(distance, pixelsPerTick));
+
+    final Point2D delta = new Point2D.Double(this.getEntity().getLocation().getX() - previousX, this.getEntity().getLocation().getY() - previousY);
+    for (Consumer<Point2D> cons : this.movedConsumer) {
+      cons.accept(delta);
+    }
+  }
+
   private void handleForces(final IGameLoop gameLoop) {
     // clean up forces
     this.activeForces.forEach(x -> {
@@ -4,11 +4,11 @@ import java.awt.Shape;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
-import de.gurkenlabs.litiengine.Game;
 import de.gurkenlabs.litiengine.IGameLoop;
 import de.gurkenlabs.litiengine.entities.ICollisionEntity;
 import de.gurkenlabs.litiengine.entities.IMovableEntity;
@@ -28,14 +28,28 @@ public final class PhysicsEngine implements IPhysicsEngine {
   private final List<CollisionBox> allCollisionBoxes;
   private final List<Rectangle2D> allCollisionBoxRectangles;
 
+  private IBroadphase broadphase;
+
   /**
    * Instantiates a new physics engine.
    */
   public PhysicsEngine() {
+    this(new BruteForceBroadphase());
+  }
+
+  /**
+   * Instantiates a new physics engine that uses the specified broadphase to
+   * narrow down the collision boxes of its collision queries.
+   *
+   * @param broadphase
+   *          the broadphase
+   */
+  public PhysicsEngine(final IBroadphase broadphase) {
     this.collisionEntities = new CopyOnWriteArrayList<>();
     this.staticCollisionBoxes = new CopyOnWriteArrayList<>();
     this.allCollisionBoxes = new CopyOnWriteArrayList<>();
     this.allCollisionBoxRectangles = new CopyOnWriteArrayList<>();
+    this.setBroadphase(broadphase);
   }
 
   @Override
@@ -50,6 +64,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
 
     if (!this.collisionEntities.contains(entity)) {
       this.collisionEntities.add(entity);
+      this.broadphase.add(entity);
     }
   }
 
@@ -57,6 +72,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
   public void add(final Rectangle2D staticCollisionBox) {
     if (!this.staticCollisionBoxes.contains(staticCollisionBox)) {
       this.staticCollisionBoxes.add(staticCollisionBox);
+      this.broadphase.add(staticCollisionBox);
     }
   }
 
@@ -64,6 +80,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
   public void clear() {
     this.staticCollisionBoxes.clear();
     this.collisionEntities.clear();
+    this.broadphase.clear();
   }
 
   @Override
@@ -74,7 +91,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
   @Override
   public Point2D collides(final Line2D rayCast) {
     final Point2D rayCastSource = new Point2D.Double(rayCast.getX1(), rayCast.getY1());
-    final List<Rectangle2D> collBoxes = this.getAllCollisionBoxes();
+    final List<Rectangle2D> collBoxes = this.getCollisionBoxes(rayCast.getBounds2D());
     collBoxes.sort((rect1, rect2) -> {
       final Point2D rect1Center = new Point2D.Double(rect1.getCenterX(), rect1.getCenterY());
       final Point2D rect2Center = new Point2D.Double(rect2.getCenterX(), rect2.getCenterY());
@@ -113,7 +130,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
 
   @Override
   public boolean collides(final Point2D point) {
-    for (final Rectangle2D collisionBox : this.getAllCollisionBoxes()) {
+    for (final Rectangle2D collisionBox : this.getCollisionBoxes(new Rectangle2D.Double(point.getX(), point.getY(), 0, 0))) {
       if (collisionBox.contains(point)) {
         return true;
       }
@@ -124,7 +141,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
 
   @Override
   public boolean collides(final Rectangle2D rect) {
-    for (final Rectangle2D collisionBox : this.getAllCollisionBoxes()) {
+    for (final Rectangle2D collisionBox : this.getCollisionBoxes(rect)) {
       if (GeometricUtilities.intersects(rect, collisionBox)) {
         return true;
       }
@@ -153,7 +170,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
   @Override
   public List<ICollisionEntity> collidesWithEntites(final Rectangle2D rect) {
     final List<ICollisionEntity> collEntities = new CopyOnWriteArrayList<>();
-    for (final ICollisionEntity coll : Game.getPhysicsEngine().getCollisionEntities()) {
+    for (final ICollisionEntity coll : this.broadphase.getEntities(rect)) {
       if (coll.getCollisionBox().intersects(rect)) {
         collEntities.add(coll);
       }
@@ -167,6 +184,11 @@ public final class PhysicsEngine implements IPhysicsEngine {
     return this.getAllCollisionBoxRectangles();
   }
 
+  @Override
+  public IBroadphase getBroadphase() {
+    return this.broadphase;
+  }
+
   @Override
   public List<ICollisionEntity> getCollisionEntities() {
     return this.collisionEntities;
@@ -205,7 +227,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
     }
 
     if (!entity.hasCollision()) {
-      entity.setLocation(newPosition);
+      this.setLocation(entity, newPosition);
       return true;
     }
 
@@ -225,7 +247,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
     }
 
     // set new map location
-    entity.setLocation(newPosition);
+    this.setLocation(entity, newPosition);
     return true;
   }
 
@@ -233,7 +255,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
     // resolve collision for current location
     if (this.collidesWithAnything(entity, entity.getCollisionBox()) != null) {
       final Point2D resolvedPosition = this.resolveCollision(entity, entity.getLocation());
-      entity.setLocation(resolvedPosition);
+      this.setLocation(entity, resolvedPosition);
       return true;
     }
 
@@ -244,7 +266,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
     // resolve collision for new location
     if (this.collidesWithAnything(entity, entity.getCollisionBox(newPosition)) != null) {
       final Point2D resolvedPosition = this.resolveCollision(entity, newPosition);
-      entity.setLocation(resolvedPosition);
+      this.setLocation(entity, resolvedPosition);
       return true;
     }
 
@@ -255,14 +277,20 @@ public final class PhysicsEngine implements IPhysicsEngine {
     // special case to prevent entities to glitch through collision boxes if
     // they have a large enough step size
     final Line2D line = new Line2D.Double(entity.getCollisionBox().getCenterX(), entity.getCollisionBox().getCenterY(), entity.getCollisionBox(newPosition).getCenterX(), entity.getCollisionBox(newPosition).getCenterY());
-    for (final CollisionBox collisionBox : this.getAllCollisionBoxesInternal()) {
-      if (collisionBox.getEntity() != null && (collisionBox.getEntity().equals(entity) || !entity.canCollideWith(collisionBox.getEntity()))) {
+    final Rectangle2D lineBounds = line.getBounds2D();
+    for (final ICollisionEntity otherEntity : this.broadphase.getEntities(lineBounds)) {
+      if (!otherEntity.hasCollision() || otherEntity.equals(entity) || !entity.canCollideWith(otherEntity)) {
         continue;
       }
 
       // there was a collision in between
-      final Point2D intersection = GeometricUtilities.getIntersectionPoint(line, collisionBox.getCollisionBox());
-      if (intersection != null) {
+      if (GeometricUtilities.getIntersectionPoint(line, otherEntity.getCollisionBox()) != null) {
+        return true;
+      }
+    }
+
+    for (final Rectangle2D collisionBox : this.broadphase.getStaticCollisionBoxes(lineBounds)) {
+      if (GeometricUtilities.getIntersectionPoint(line, collisionBox) != null) {
         return true;
       }
     }
@@ -288,6 +316,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
 
     if (this.collisionEntities.contains(entity)) {
       this.collisionEntities.remove(entity);
+      this.broadphase.remove(entity);
     }
   }
 
@@ -295,9 +324,22 @@ public final class PhysicsEngine implements IPhysicsEngine {
   public void remove(final Rectangle2D staticCollisionBox) {
     if (this.staticCollisionBoxes.contains(staticCollisionBox)) {
       this.staticCollisionBoxes.remove(staticCollisionBox);
+      this.broadphase.remove(staticCollisionBox);
     }
   }
 
+  @Override
+  public void setBroadphase(final IBroadphase broadphase) {
+    if (broadphase == null) {
+      throw new IllegalArgumentException("The broadphase must not be null.");
+    }
+
+    broadphase.clear();
+    this.collisionEntities.forEach(broadphase::add);
+    this.staticCollisionBoxes.forEach(broadphase::add);
+    this.broadphase = broadphase;
+  }
+
   @Override
   public void setBounds(final Rectangle2D environmentBounds) {
     this.environmentBounds = environmentBounds;
@@ -305,15 +347,25 @@ public final class PhysicsEngine implements IPhysicsEngine {
 
   @Override
   public void update(IGameLoop loop) {
+    this.broadphase.update();
     this.updateAllCollisionBoxes();
   }
 
-  private List<CollisionBox> getAllCollisionBoxesInternal() {
-    if (this.allCollisionBoxes.isEmpty()) {
-      this.updateAllCollisionBoxes();
+  /**
+   * Gets the collision boxes of all entities with collision and all static
+   * collision boxes that are considered by the broadphase for the specified
+   * area.
+   */
+  private List<Rectangle2D> getCollisionBoxes(final Rectangle2D area) {
+    final List<Rectangle2D> collisionBoxes = new ArrayList<>();
+    for (final ICollisionEntity entity : this.broadphase.getEntities(area)) {
+      if (entity.hasCollision()) {
+        collisionBoxes.add(entity.getCollisionBox());
+      }
     }
 
-    return this.allCollisionBoxes;
+    collisionBoxes.addAll(this.broadphase.getStaticCollisionBoxes(area));
+    return collisionBoxes;
   }
 
   private List<Rectangle2D> getAllCollisionBoxRectangles() {
@@ -343,7 +395,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
    * @return true, if successful
    */
   private Rectangle2D collidesWithAnyEntity(final ICollisionEntity entity, final Rectangle2D collisionBox) {
-    for (final ICollisionEntity otherEntity : this.collisionEntities) {
+    for (final ICollisionEntity otherEntity : this.broadphase.getEntities(collisionBox)) {
       if (otherEntity == null || entity == null || !otherEntity.hasCollision() || otherEntity.equals(entity) || !entity.canCollideWith(otherEntity)) {
         continue;
       }
@@ -366,7 +418,7 @@ public final class PhysicsEngine implements IPhysicsEngine {
    * @return true, if successful
    */
   private Rectangle2D collidesWithAnyStaticCollisionBox(final Rectangle2D entityCollisionBox) {
-    for (final Rectangle2D collisionBox : this.staticCollisionBoxes) {
+    for (final Rectangle2D collisionBox : this.broadphase.getStaticCollisionBoxes(entityCollisionBox)) {
       if (GeometricUtilities.intersects(collisionBox, entityCollisionBox)) {
         return collisionBox.createIntersection(entityCollisionBox);
       }
@@ -376,26 +428,42 @@ public final class PhysicsEngine implements IPhysicsEngine {
   }
 
   private Rectangle2D collidesWithAnything(final ICollisionEntity entity, final Rectangle2D entityCollisionBox) {
-    for (final CollisionBox collisionBox : this.allCollisionBoxes) {
+    for (final ICollisionEntity otherEntity : this.broadphase.getEntities(entityCollisionBox)) {
 
       // an entity cannot collide with itself or other entities that are
       // excluded from collision by the canCollideWith method
-      if (collisionBox.getEntity() != null && (collisionBox.getEntity().equals(entity) || !entity.canCollideWith(collisionBox.getEntity()))) {
+      if (!otherEntity.hasCollision() || otherEntity.equals(entity) || !entity.canCollideWith(otherEntity)) {
         continue;
       }
 
-      if (collisionBox.getCollisionBox().contains(entityCollisionBox)) {
-        return collisionBox.getCollisionBox();
+      final Rectangle2D intersection = getIntersection(otherEntity.getCollisionBox(), entityCollisionBox);
+      if (intersection != null) {
+        return intersection;
       }
+    }
 
-      if (GeometricUtilities.intersects(collisionBox.getCollisionBox(), entityCollisionBox)) {
-        return collisionBox.getCollisionBox().createIntersection(entityCollisionBox);
+    for (final Rectangle2D collisionBox : this.broadphase.getStaticCollisionBoxes(entityCollisionBox)) {
+      final Rectangle2D intersection = getIntersection(collisionBox, entityCollisionBox);
+      if (intersection != null) {
+        return intersection;
       }
     }
 
     return null;
   }
 
+  private static Rectangle2D getIntersection(final Rectangle2D collisionBox, final Rectangle2D entityCollisionBox) {
+    if (collisionBox.contains(entityCollisionBox)) {
+      return collisionBox;
+    }
+
+    if (GeometricUtilities.intersects(collisionBox, entityCollisionBox)) {
+      return collisionBox.createIntersection(entityCollisionBox);
+    }
+
+    return null;
+  }
+
   /**
    * Find location without collision.
    *
@@ -431,6 +499,11 @@ public final class PhysicsEngine implements IPhysicsEngine {
     return this.environmentBounds.contains(collisionBox.getBounds());
   }
 
+  private void setLocation(final IMovableEntity entity, final Point2D location) {
+    entity.setLocation(location);
+    this.broadphase.update(entity);
+  }
+
   /**
    * With the current physics implementation is is possible to glitch through
    * other entities, if their collisionbox is smaller than the velocity of the
@@ -0,0 +1,239 @@
+package de.gurkenlabs.litiengine.physics;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import de.gurkenlabs.litiengine.entities.ICollisionEntity;
+
+/**
+ * A broadphase that sorts all collision boxes into the cells of a uniform grid.
+ * Queries only need to look at the cells that are covered by the requested
+ * area instead of all collision boxes of the environment.
+ * <p>
+ * Entities are re-indexed incrementally: an entity is only moved to other
+ * cells if the cells covered by its collision box have actually changed. The
+ * broadphase listens to the collision box changes of all added entities, so
+ * entities that are moved directly (e.g. by
+ * {@link ICollisionEntity#setLocation(java.awt.geom.Point2D)}) are re-indexed
+ * immediately and not only on the next {@link #update()}.
+ * </p>
+ */
+public class SpatialHashBroadphase implements IBroadphase {
+  public static final int DEFAULT_CELL_SIZE = 64;
+
+  private final int cellSize;
+
+  private final Map<Long, List<Entry<ICollisionEntity>>> entityCells;
+  private final Map<ICollisionEntity, Entry<ICollisionEntity>> entities;
+
+  private final Map<Long, List<Entry<Rectangle2D>>> staticCells;
+  private final Map<Rectangle2D, Entry<Rectangle2D>> staticCollisionBoxes;
+
+  private final Consumer<ICollisionEntity> collisionBoxChanged = this::update;
+
+  public SpatialHashBroadphase() {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  public SpatialHashBroadphase(final int cellSize) {
+    if (cellSize <= 0) {
+      throw new IllegalArgumentException("The cell size must be greater than 0.");
+    }
+
+    this.cellSize = cellSize;
+    this.entityCells = new HashMap<>();
+    this.entities = new IdentityHashMap<>();
+    this.staticCells = new HashMap<>();
+    this.staticCollisionBoxes = new HashMap<>();
+  }
+
+  @Override
+  public synchronized void add(final ICollisionEntity entity) {
+    if (this.entities.containsKey(entity)) {
+      return;
+    }
+
+    final Entry<ICollisionEntity> entry = new Entry<>(entity);
+    this.entities.put(entity, entry);
+    this.setRange(entry, entity.getCollisionBox());
+    this.insert(this.entityCells, entry);
+    entity.onCollisionBoxChanged(this.collisionBoxChanged);
+  }
+
+  @Override
+  public synchronized void add(final Rectangle2D staticCollisionBox) {
+    if (this.staticCollisionBoxes.containsKey(staticCollisionBox)) {
+      return;
+    }
+
+    final Entry<Rectangle2D> entry = new Entry<>(staticCollisionBox);
+    this.staticCollisionBoxes.put(staticCollisionBox, entry);
+    this.setRange(entry, staticCollisionBox);
+    this.insert(this.staticCells, entry);
+  }
+
+  @Override
+  public synchronized void clear() {
+    this.entityCells.clear();
+    this.entities.clear();
+    this.staticCells.clear();
+    this.staticCollisionBoxes.clear();
+  }
+
+  public int getCellSize() {
+    return this.cellSize;
+  }
+
+  @Override
+  public synchronized Collection<ICollisionEntity> getEntities(final Rectangle2D area) {
+    return this.query(this.entityCells, this.entities.values(), area);
+  }
+
+  @Override
+  public synchronized Collection<Rectangle2D> getStaticCollisionBoxes(final Rectangle2D area) {
+    return this.query(this.staticCells, this.staticCollisionBoxes.values(), area);
+  }
+
+  @Override
+  public synchronized void remove(final ICollisionEntity entity) {
+    final Entry<ICollisionEntity> entry = this.entities.remove(entity);
+    if (entry != null) {
+      this.delete(this.entityCells, entry);
+    }
+  }
+
+  @Override
+  public synchronized void remove(final Rectangle2D staticCollisionBox) {
+    final Entry<Rectangle2D> entry = this.staticCollisionBoxes.remove(staticCollisionBox);
+    if (entry != null) {
+      this.delete(this.staticCells, entry);
+    }
+  }
+
+  @Override
+  public synchronized void update() {
+    for (final Entry<ICollisionEntity> entry : this.entities.values()) {
+      this.update(entry);
+    }
+  }
+
+  @Override
+  public synchronized void update(final ICollisionEntity entity) {
+    final Entry<ICollisionEntity> entry = this.entities.get(entity);
+    if (entry != null) {
+      this.update(entry);
+    }
+  }
+
+  private static long getKey(final int x, final int y) {
+    return (long) x << 32 | y & 0xFFFFFFFFL;
+  }
+
+  private int getCell(final double coordinate) {
+    return (int) Math.floor(coordinate / this.cellSize);
+  }
+
+  private <T> void insert(final Map<Long, List<Entry<T>>> cells, final Entry<T> entry) {
+    for (int x = entry.minX; x <= entry.maxX; x++) {
+      for (int y = entry.minY; y <= entry.maxY; y++) {
+        cells.computeIfAbsent(getKey(x, y), key -> new ArrayList<>()).add(entry);
+      }
+    }
+  }
+
+  private <T> void delete(final Map<Long, List<Entry<T>>> cells, final Entry<T> entry) {
+    for (int x = entry.minX; x <= entry.maxX; x++) {
+      for (int y = entry.minY; y <= entry.maxY; y++) {
+        final Long key = getKey(x, y);
+        final List<Entry<T>> cell = cells.get(key);
+        if (cell == null) {
+          continue;
+        }
+
+        cell.remove(entry);
+        if (cell.isEmpty()) {
+          cells.remove(key);
+        }
+      }
+    }
+  }
+
+  private <T> List<T> query(final Map<Long, List<Entry<T>>> cells, final Collection<Entry<T>> allEntries, final Rectangle2D area) {
+    final List<T> candidates = new ArrayList<>();
+    final int minX = this.getCell(area.getMinX());
+    final int minY = this.getCell(area.getMinY());
+    final int maxX = this.getCell(area.getMaxX());
+    final int maxY = this.getCell(area.getMaxY());
+
+    // for large areas it is cheaper to check the range of every entry than
+    // to walk all the covered cells
+    if ((long) (maxX - minX + 1) * (maxY - minY + 1) > allEntries.size()) {
+      for (final Entry<T> entry : allEntries) {
+        if (entry.overlaps(minX, minY, maxX, maxY)) {
+          candidates.add(entry.item);
+        }
+      }
+
+      return candidates;
+    }
+
+    for (int x = minX; x <= maxX; x++) {
+      for (int y = minY; y <= maxY; y++) {
+        final List<Entry<T>> cell = cells.get(getKey(x, y));
+        if (cell == null) {
+          continue;
+        }
+
+        for (final Entry<T> entry : cell) {
+          // entries that span multiple cells are only reported by the first
+          // cell that is shared with the queried area
+          if (x == Math.max(entry.minX, minX) && y == Math.max(entry.minY, minY)) {
+            candidates.add(entry.item);
+          }
+        }
+      }
+    }
+
+    return candidates;
+  }
+
+  private void setRange(final Entry<?> entry, final Rectangle2D box) {
+    entry.minX = this.getCell(box.getMinX());
+    entry.minY = this.getCell(box.getMinY());
+    entry.maxX = this.getCell(box.getMaxX());
+    entry.maxY = this.getCell(box.getMaxY());
+  }
+
+  private void update(final Entry<ICollisionEntity> entry) {
+    final Rectangle2D box = entry.item.getCollisionBox();
+    if (this.getCell(box.getMinX()) == entry.minX && this.getCell(box.getMinY()) == entry.minY && this.getCell(box.getMaxX()) == entry.maxX && this.getCell(box.getMaxY()) == entry.maxY) {
+      return;
+    }
+
+    this.delete(this.entityCells, entry);
+    this.setRange(entry, box);
+    this.insert(this.entityCells, entry);
+  }
+
+  private static class Entry<T> {
+    private final T item;
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+
+    private Entry(final T item) {
+      this.item = item;
+    }
+
+    private boolean overlaps(final int x1, final int y1, final int x2, final int y2) {
+      return this.minX <= x2 && this.maxX >= x1 && this.minY <= y2 && this.maxY >= y1;
+    }
+  }
+}
@@ -5,52 +5,94 @@ import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
+import de.gurkenlabs.litiengine.entities.ICollisionEntity;
 import de.gurkenlabs.litiengine.environment.tilemap.IMap;
 import de.gurkenlabs.litiengine.physics.IPhysicsEngine;
 
+/**
+ * A grid of nodes for the A* search that covers a whole map. The walkability
+ * of all nodes is stored in a compact bitset and the searches work on the
+ * indices of the nodes. {@link AStarNode} instances are only created as views
+ * when they are requested by the public API and are not kept by the grid, so
+ * large maps don't need to hold an object per node.
+ */
 public class AStarGrid {
+  /** The maximum number of neighbours of a node. */
+  static final int MAX_NEIGHBOURS = 8;
+
+  private static final int COLUMNS_PER_STRIPE = 32;
+  private static final int DIAGONAL_COST = 14;
+  private static final int STRAIGHT_COST = 10;
+
   private boolean allowDiagonalMovementOnCorners;
-  private final AStarNode[][] grid;
+  private final int height;
   private final int nodeSize;
   private final IPhysicsEngine physicsEngine;
 
   private final Dimension size;
+  private volatile AStarGridSnapshot snapshot;
+  private final List<Consumer<Rectangle2D>> walkableUpdatedConsumer;
+  private final int width;
 
   public AStarGrid(final IPhysicsEngine physicsEngine, final IMap map, final int nodeSize) {
     this.physicsEngine = physicsEngine;
     this.size = map.getSizeInPixels();
     this.nodeSize = nodeSize;
-    final int gridSizeX = this.size.width / nodeSize;
-    final int gridSizeY = this.size.height / nodeSize;
-    this.grid = new AStarNode[gridSizeX][gridSizeY];
-    this.populateGrid(gridSizeX, gridSizeY);
+    this.walkableUpdatedConsumer = new CopyOnWriteArrayList<>();
+    this.width = this.size.width / nodeSize;
+    this.height = this.size.height / nodeSize;
+    this.populateGrid();
   }
 
   public boolean diagonalMovementOnCorners() {
     return this.allowDiagonalMovementOnCorners;
   }
 
+  /**
+   * Gets a copy of all nodes of this grid with their current walkability. The
+   * grid doesn't keep any nodes, so every call allocates a new view for each
+   * node and the nodes of different calls are equal but not the same
+   * instances. Later updates of the walkability are not reflected by the
+   * returned nodes.
+   *
+   * @return A snapshot of all nodes of this grid, indexed by their grid
+   *         coordinates.
+   * @deprecated Use {@link #getNode(int, int)} to get single nodes or
+   *             {@link #getSnapshot()} to query the walkability instead.
+   */
+  @Deprecated
   public AStarNode[][] getGrid() {
-    return this.grid;
-  }
+    final AStarNode[][] allNodes = new AStarNode[this.width][this.height];
+    for (int x = 0; x < this.width; x++) {
+      for (int y = 0; y < this.height; y++) {
+        allNodes[x][y] = this.getNode(x * this.height + y);
+      }
+    }
 
-  public List<AStarNode> getIntersectedNodes(final Rectangle2D rectangle) {
-    final Point2D start = new Point2D.Double(rectangle.getMinX(), rectangle.getMinY());
-    final Point2D end = new Point2D.Double(rectangle.getMaxX(), rectangle.getMaxY());
+    return allNodes;
+  }
 
-    final AStarNode startNode = this.getNodeFromMapLocation(start);
-    final AStarNode endNode = this.getNodeFromMapLocation(end);
+  /**
+   * Gets the number of nodes in the vertical direction.
+   *
+   * @return The height of this grid in nodes.
+   */
+  public int getHeight() {
+    return this.height;
+  }
 
+  public List<AStarNode> getIntersectedNodes(final Rectangle2D rectangle) {
     final List<AStarNode> nodes = new ArrayList<>();
-    if (startNode == null || endNode == null) {
-      return nodes;
-    }
-
-    for (int x = startNode.getGridX(); x <= endNode.getGridX(); x++) {
-      for (int y = startNode.getGridY(); y <= endNode.getGridY(); y++) {
-        nodes.add(this.getGrid()[x][y]);
+    final Rectangle range = this.getIntersectedRange(rectangle);
+    for (int x = range.x; x < range.x + range.width; x++) {
+      for (int y = range.y; y < range.y + range.height; y++) {
+        nodes.add(this.getNode(x * this.height + y));
       }
     }
 
@@ -58,43 +100,49 @@ public class AStarGrid {
   }
 
   public List<AStarNode> getNeighbours(final AStarNode node) {
-    final List<AStarNode> neighbors = new ArrayList<>();
-    final int x = node.getGridX();
-    final int y = node.getGridY();
-
-    final AStarNode top = this.getNode(x, y - 1);
-    final AStarNode bottom = this.getNode(x, y + 1);
-    final AStarNode left = this.getNode(x - 1, y);
-    final AStarNode right = this.getNode(x + 1, y);
-
-    // diagonal
-    final AStarNode topLeft = this.getNode(x - 1, y - 1);
-    final AStarNode topRight = this.getNode(x + 1, y - 1);
-    final AStarNode bottomLeft = this.getNode(x - 1, y + 1);
-    final AStarNode bottomRight = this.getNode(x + 1, y + 1);
-
-    addNode(neighbors, top);
-    addNode(neighbors, bottom);
-    addNode(neighbors, right);
-    addNode(neighbors, left);
-
-    this.addDiagonalNode(neighbors, topLeft, top, left);
-    this.addDiagonalNode(neighbors, topRight, top, right);
-    this.addDiagonalNode(neighbors, bottomLeft, bottom, left);
-    this.addDiagonalNode(neighbors, bottomRight, bottom, right);
+    return this.getNeighbours(node, this.getSnapshot());
+  }
+
+  /**
+   * Gets the neighbours of the specified node with the walkability of the
+   * specified snapshot.
+   *
+   * @param node
+   *          The node to get the neighbours for.
+   * @param snapshot
+   *          The snapshot that defines which nodes are walkable.
+   * @return All walkable neighbours of the node.
+   */
+  public List<AStarNode> getNeighbours(final AStarNode node, final AStarGridSnapshot snapshot) {
+    final int[] indices = new int[MAX_NEIGHBOURS];
+    final int count = this.getNeighbours(this.getIndex(node), snapshot, indices);
+    final List<AStarNode> neighbors = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      neighbors.add(this.getNode(indices[i]));
+    }
 
     return neighbors;
   }
 
   public AStarNode getNodeFromMapLocation(final Point2D point) {
-    float percentX = (float) (point.getX() / this.getSize().getWidth());
-    float percentY = (float) (point.getY() / this.getSize().getHeight());
-    percentX = Math.max(0, Math.min(1, percentX));
-    percentY = Math.max(0, Math.min(1, percentY));
+    return this.getNode(this.getColumn(point.getX()) * this.height + this.getRow(point.getY()));
+  }
+
+  /**
+   * Gets the node at the specified grid coordinates.
+   *
+   * @param x
+   *          The column of the node.
+   * @param y
+   *          The row of the node.
+   * @return The node or null if the coordinates are outside of this grid.
+   */
+  public AStarNode getNode(final int x, final int y) {
+    if (x >= 0 && x < this.width && y >= 0 && y < this.height) {
+      return this.getNode(x * this.height + y);
+    }
 
-    final int x = (int) ((this.getGrid().length - 1) * percentX);
-    final int y = (int) (this.getGrid()[0].length * percentY);
-    return this.getGrid()[x][y];
+    return null;
   }
 
   public int getNodeSize() {
@@ -105,6 +153,38 @@ public class AStarGrid {
     return this.size;
   }
 
+  /**
+   * Gets the current walkability of all nodes. The returned snapshot is not
+   * affected by later calls of {@link #updateWalkable(Rectangle2D)}.
+   *
+   * @return The current snapshot of this grid.
+   */
+  public AStarGridSnapshot getSnapshot() {
+    return this.snapshot;
+  }
+
+  /**
+   * Gets the number of nodes in the horizontal direction.
+   *
+   * @return The width of this grid in nodes.
+   */
+  public int getWidth() {
+    return this.width;
+  }
+
+  /**
+   * Registers a consumer that is called with the updated rectangle after
+   * {@link #updateWalkable(Rectangle2D)} has published a new snapshot.
+   *
+   * @param consumer
+   *          The consumer to register.
+   */
+  public void onWalkableUpdated(final Consumer<Rectangle2D> consumer) {
+    if (!this.walkableUpdatedConsumer.contains(consumer)) {
+      this.walkableUpdatedConsumer.add(consumer);
+    }
+  }
+
   public void setAllowDiagonalMovementOnCorners(final boolean allowDiagonalMovementOnCorners) {
     this.allowDiagonalMovementOnCorners = allowDiagonalMovementOnCorners;
   }
@@ -115,40 +195,170 @@ public class AStarGrid {
    *
    * @param rectangle
    */
-  public void updateWalkable(final Rectangle2D rectangle) {
-    for (final AStarNode node : this.getIntersectedNodes(rectangle)) {
-      node.setWalkable(!this.physicsEngine.collides(node.getBounds()));
+  public synchronized void updateWalkable(final Rectangle2D rectangle) {
+    final AStarGridSnapshot current = this.getSnapshot();
+    final BitSet walkable = current.copyWalkable();
+    final Rectangle range = this.getIntersectedRange(rectangle);
+    for (int x = range.x; x < range.x + range.width; x++) {
+      for (int y = range.y; y < range.y + range.height; y++) {
+        walkable.set(x * this.height + y, !this.physicsEngine.collides(this.getNodeBounds(x, y)));
+      }
     }
+
+    this.snapshot = new AStarGridSnapshot(current.getWidth(), current.getHeight(), walkable, current.getVersion() + 1);
+    this.walkableUpdatedConsumer.forEach(consumer -> consumer.accept(rectangle));
   }
 
-  private static void addNode(final List<AStarNode> neighbors, AStarNode node) {
-    if (node != null && node.isWalkable()) {
-      neighbors.add(node);
+  /**
+   * Gets the costs of the direct move between the nodes with the specified
+   * indices, which is the same as {@link AStarNode#getCosts(AStarNode)}.
+   */
+  int getCosts(final int index, final int target) {
+    final int dstX = Math.abs(this.getX(index) - this.getX(target));
+    final int dstY = Math.abs(this.getY(index) - this.getY(target));
+    if (dstX > dstY) {
+      return DIAGONAL_COST * dstY + STRAIGHT_COST * (dstX - dstY);
     }
+
+    return DIAGONAL_COST * dstX + STRAIGHT_COST * (dstY - dstX);
   }
 
-  private void addDiagonalNode(final List<AStarNode> neighbors, AStarNode node, AStarNode diagonalNeighbor1, AStarNode diagonalNeighbor2) {
+  int getIndex(final AStarNode node) {
+    return this.getIndex(node.getGridX(), node.getGridY());
+  }
+
+  int getIndex(final int x, final int y) {
+    return x * this.height + y;
+  }
+
+  /**
+   * Writes the indices of the neighbours of the specified node into the array.
+   * Straight neighbours are only included if they are walkable and diagonal
+   * neighbours if they are not on a corner, in the same order as
+   * {@link #getNeighbours(AStarNode, AStarGridSnapshot)}.
+   *
+   * @param neighbours
+   *          An array with a length of at least {@link #MAX_NEIGHBOURS}.
+   * @return The number of neighbours.
+   */
+  int getNeighbours(final int index, final AStarGridSnapshot snapshot, final int[] neighbours) {
+    final int x = this.getX(index);
+    final int y = this.getY(index);
+    final boolean top = snapshot.isWalkable(x, y - 1);
+    final boolean bottom = snapshot.isWalkable(x, y + 1);
+    final boolean left = snapshot.isWalkable(x - 1, y);
+    final boolean right = snapshot.isWalkable(x + 1, y);
+
+    int count = 0;
+    count = this.addNeighbour(neighbours, count, x, y - 1, top);
+    count = this.addNeighbour(neighbours, count, x, y + 1, bottom);
+    count = this.addNeighbour(neighbours, count, x + 1, y, right);
+    count = this.addNeighbour(neighbours, count, x - 1, y, left);
+
     // only add diagonal neighbors when they are not on a corner
-    if (node != null && this.diagonalMovementOnCorners() || node != null && diagonalNeighbor1 != null && diagonalNeighbor1.isWalkable() && diagonalNeighbor2 != null && diagonalNeighbor2.isWalkable()) {
-      neighbors.add(node);
+    final boolean corners = this.diagonalMovementOnCorners();
+    count = this.addNeighbour(neighbours, count, x - 1, y - 1, corners || top && left);
+    count = this.addNeighbour(neighbours, count, x + 1, y - 1, corners || top && right);
+    count = this.addNeighbour(neighbours, count, x - 1, y + 1, corners || bottom && left);
+    return this.addNeighbour(neighbours, count, x + 1, y + 1, corners || bottom && right);
+  }
+
+  /**
+   * Creates a view of the node with the specified index that has the current
+   * walkability. The view is not cached, so every call returns a new instance.
+   */
+  AStarNode getNode(final int index) {
+    final int x = this.getX(index);
+    final int y = this.getY(index);
+    return new AStarNode(this.getSnapshot().isWalkable(x, y), this.getNodeBounds(x, y), x, y, 0);
+  }
+
+  int getX(final int index) {
+    return index / this.height;
+  }
+
+  int getY(final int index) {
+    return index % this.height;
+  }
+
+  private int addNeighbour(final int[] neighbours, final int count, final int x, final int y, final boolean add) {
+    if (!add || x < 0 || x >= this.width || y < 0 || y >= this.height) {
+      return count;
     }
+
+    neighbours[count] = this.getIndex(x, y);
+    return count + 1;
+  }
+
+  private int getColumn(final double mapX) {
+    final float percentX = Math.max(0, Math.min(1, (float) (mapX / this.getSize().getWidth())));
+    return (int) ((this.width - 1) * percentX);
+  }
+
+  /**
+   * Gets the range of nodes in grid coordinates that is intersected by the
+   * specified rectangle on the map.
+   */
+  private Rectangle getIntersectedRange(final Rectangle2D rectangle) {
+    final int startX = this.getColumn(rectangle.getMinX());
+    final int startY = this.getRow(rectangle.getMinY());
+    final int endX = this.getColumn(rectangle.getMaxX());
+    final int endY = this.getRow(rectangle.getMaxY());
+    return new Rectangle(startX, startY, Math.max(0, endX - startX + 1), Math.max(0, endY - startY + 1));
+  }
+
+  private Rectangle getNodeBounds(final int x, final int y) {
+    return new Rectangle(x * this.nodeSize, y * this.nodeSize, this.nodeSize, this.nodeSize);
   }
 
-  private AStarNode getNode(final int x, final int y) {
-    if (x >= 0 && x < this.getGrid().length && y >= 0 && y < this.getGrid()[0].length) {
-      return this.getGrid()[x][y];
+  private int getRow(final double mapY) {
+    final float percentY = Math.max(0, Math.min(1, (float) (mapY / this.getSize().getHeight())));
+    return Math.min(this.height - 1, (int) (this.height * percentY));
+  }
+
+  /**
+   * Determines the walkability of all nodes by rasterizing the collision boxes
+   * into the grid instead of querying the physics engine for every node. The
+   * columns of the grid are split into stripes that are rasterized in parallel.
+   */
+  private void populateGrid() {
+    final List<Rectangle2D> collisionBoxes = new ArrayList<>(this.physicsEngine.getStaticCollisionBoxes());
+    for (final ICollisionEntity entity : this.physicsEngine.getCollisionEntities()) {
+      if (entity.hasCollision()) {
+        collisionBoxes.add(entity.getCollisionBox());
+      }
     }
 
-    return null;
+    final int stripes = (this.width + COLUMNS_PER_STRIPE - 1) / COLUMNS_PER_STRIPE;
+    final BitSet blocked = IntStream.range(0, stripes).parallel().mapToObj(stripe -> this.rasterize(collisionBoxes, stripe * COLUMNS_PER_STRIPE, Math.min(this.width, (stripe + 1) * COLUMNS_PER_STRIPE))).collect(BitSet::new, BitSet::or, BitSet::or);
+
+    final BitSet walkable = new BitSet(this.width * this.height);
+    walkable.set(0, this.width * this.height);
+    walkable.andNot(blocked);
+    this.snapshot = new AStarGridSnapshot(this.width, this.height, walkable, 0);
   }
 
-  private void populateGrid(final int gridSizeX, final int gridSizeY) {
-    for (int x = 0; x < gridSizeX; x++) {
-      for (int y = 0; y < gridSizeY; y++) {
-        final Rectangle nodeBounds = new Rectangle(x * this.nodeSize, y * this.nodeSize, this.nodeSize, this.nodeSize);
+  /**
+   * Marks all nodes of the specified columns that intersect with any of the
+   * collision boxes, using the same exclusive bounds as
+   * {@link IPhysicsEngine#collides(Rectangle2D)}.
+   */
+  private BitSet rasterize(final List<Rectangle2D> collisionBoxes, final int fromX, final int toX) {
+    final BitSet blocked = new BitSet();
+    for (final Rectangle2D box : collisionBoxes) {
+      final int minX = Math.max(fromX, (int) Math.floor(box.getMinX() / this.nodeSize));
+      final int maxX = Math.min(toX - 1, (int) Math.ceil(box.getMaxX() / this.nodeSize) - 1);
+      final int minY = Math.max(0, (int) Math.floor(box.getMinY() / this.nodeSize));
+      final int maxY = Math.min(this.height - 1, (int) Math.ceil(box.getMaxY() / this.nodeSize) - 1);
+      if (minY > maxY) {
+        continue;
+      }
 
-        this.getGrid()[x][y] = new AStarNode(!this.physicsEngine.collides(nodeBounds), nodeBounds, x, y, 0);
+      for (int x = minX; x <= maxX; x++) {
+        blocked.set(x * this.height + minY, x * this.height + maxY + 1);
       }
     }
+
+    return blocked;
   }
 }
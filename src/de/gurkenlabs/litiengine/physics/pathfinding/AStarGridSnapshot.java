@@ -0,0 +1,55 @@
+package de.gurkenlabs.litiengine.physics.pathfinding;
+
+import java.util.BitSet;
+
+/**
+ * An immutable view on the walkability of all nodes of an {@link AStarGrid} at
+ * a certain version. Path finding queries use a snapshot for their whole
+ * search, so concurrent calls of {@link AStarGrid#updateWalkable} cannot change
+ * the grid while a search is running.
+ */
+public final class AStarGridSnapshot {
+  private final int height;
+  private final int version;
+  private final BitSet walkable;
+  private final int width;
+
+  AStarGridSnapshot(final int width, final int height, final BitSet walkable, final int version) {
+    this.width = width;
+    this.height = height;
+    this.walkable = walkable;
+    this.version = version;
+  }
+
+  public int getHeight() {
+    return this.height;
+  }
+
+  public int getVersion() {
+    return this.version;
+  }
+
+  public int getWidth() {
+    return this.width;
+  }
+
+  public boolean isWalkable(final AStarNode node) {
+    return this.isWalkable(node.getGridX(), node.getGridY());
+  }
+
+  public boolean isWalkable(final int x, final int y) {
+    return x >= 0 && x < this.width && y >= 0 && y < this.height && this.walkable.get(x * this.height + y);
+  }
+
+  boolean isWalkable(final int index) {
+    return this.walkable.get(index);
+  }
+
+  /**
+   * Creates a copy of the walkability of this instance that can be modified
+   * for the next version of the grid.
+   */
+  BitSet copyWalkable() {
+    return (BitSet) this.walkable.clone();
+  }
+}
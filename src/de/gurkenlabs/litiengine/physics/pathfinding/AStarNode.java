@@ -3,18 +3,21 @@ package de.gurkenlabs.litiengine.physics.pathfinding;
 import java.awt.Point;
 import java.awt.Rectangle;
 
+/**
+ * A view of a node of an {@link AStarGrid}. The walkability of a view is the
+ * one of the grid at the time the view was created and can only be changed
+ * through {@link AStarGrid#updateWalkable(java.awt.geom.Rectangle2D)}. Views of
+ * the same node are equal to each other.
+ */
 public class AStarNode {
   private static final int DIAGONAL_COST = 14;
   private static final int STRAIGHT_COST = 10;
   private final Rectangle bound;
-  private int gCost;
   private final int gridX;
   private final int gridY;
-  private int hCost;
 
   private final int penalty;
-  private AStarNode predecessor;
-  private boolean walkable;
+  private final boolean walkable;
 
   public AStarNode(final boolean walkable, final Rectangle bound, final int gridX, final int gridY, final int penalty) {
     this.bound = bound;
@@ -24,6 +27,20 @@ public class AStarNode {
     this.walkable = walkable;
   }
 
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (!(obj instanceof AStarNode)) {
+      return false;
+    }
+
+    final AStarNode other = (AStarNode) obj;
+    return this.gridX == other.gridX && this.gridY == other.gridY;
+  }
+
   public Rectangle getBounds() {
     return this.bound;
   }
@@ -40,14 +57,6 @@ public class AStarNode {
     return DIAGONAL_COST * dstX + STRAIGHT_COST * (dstY - dstX);
   }
 
-  public int getfCost() {
-    return this.getgCost() + this.gethCost();
-  }
-
-  public int getgCost() {
-    return this.gCost;
-  }
-
   public int getGridX() {
     return this.gridX;
   }
@@ -56,10 +65,6 @@ public class AStarNode {
     return this.gridY;
   }
 
-  public int gethCost() {
-    return this.hCost;
-  }
-
   public Point getLocation() {
     return new Point((int) this.getBounds().getCenterX(), (int) this.getBounds().getCenterY());
   }
@@ -68,27 +73,12 @@ public class AStarNode {
     return this.penalty;
   }
 
-  public AStarNode getPredecessor() {
-    return this.predecessor;
+  @Override
+  public int hashCode() {
+    return 31 * this.gridX + this.gridY;
   }
 
   public boolean isWalkable() {
     return this.walkable;
   }
-
-  public void setgCost(final int gCost) {
-    this.gCost = gCost;
-  }
-
-  public void sethCost(final int hCost) {
-    this.hCost = hCost;
-  }
-
-  public void setPredecessor(final AStarNode predecessor) {
-    this.predecessor = predecessor;
-  }
-
-  public void setWalkable(final boolean walkable) {
-    this.walkable = walkable;
-  }
 }
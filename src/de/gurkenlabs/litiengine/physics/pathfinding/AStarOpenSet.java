@@ -0,0 +1,155 @@
+package de.gurkenlabs.litiengine.physics.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * An indexed binary min-heap that holds the open nodes of an A* search. Nodes
+ * are identified by their index in the grid and ordered by their f-cost, then
+ * by their h-cost and finally by the order in which they were added. The heap
+ * position of every node is tracked which allows constant time lookups and a
+ * decrease-key operation in logarithmic time.
+ */
+final class AStarOpenSet {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final int[] gCosts;
+  private final int[] hCosts;
+  private final int[] positions;
+
+  private int[] nodes;
+  private long[] sequences;
+  private long nextSequence;
+  private int size;
+
+  AStarOpenSet(final int nodeCount, final int[] gCosts, final int[] hCosts) {
+    this.gCosts = gCosts;
+    this.hCosts = hCosts;
+    this.positions = new int[nodeCount];
+    this.nodes = new int[INITIAL_CAPACITY];
+    this.sequences = new long[INITIAL_CAPACITY];
+  }
+
+  public void add(final int node) {
+    if (this.size == this.nodes.length) {
+      this.nodes = Arrays.copyOf(this.nodes, this.size * 2);
+      this.sequences = Arrays.copyOf(this.sequences, this.size * 2);
+    }
+
+    this.nodes[this.size] = node;
+    this.sequences[this.size] = this.nextSequence++;
+    this.positions[node] = this.size + 1;
+    this.siftUp(this.size++);
+  }
+
+  public void clear() {
+    for (int i = 0; i < this.size; i++) {
+      this.positions[this.nodes[i]] = 0;
+    }
+
+    this.size = 0;
+    this.nextSequence = 0;
+  }
+
+  public boolean contains(final int node) {
+    return this.positions[node] != 0;
+  }
+
+  /**
+   * Restores the heap order for the specified node after its costs have been
+   * decreased.
+   *
+   * @param node
+   *          The index of the node with decreased costs.
+   */
+  public void decreased(final int node) {
+    final int position = this.positions[node];
+    if (position != 0) {
+      this.siftUp(position - 1);
+    }
+  }
+
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /**
+   * Removes the node with the lowest costs from this instance.
+   *
+   * @return The index of the removed node or -1 if this instance is empty.
+   */
+  public int poll() {
+    if (this.size == 0) {
+      return -1;
+    }
+
+    final int first = this.nodes[0];
+    this.positions[first] = 0;
+
+    this.size--;
+    if (this.size > 0) {
+      this.move(this.nodes[this.size], this.sequences[this.size], 0);
+      this.siftDown(0);
+    }
+
+    return first;
+  }
+
+  private boolean isLess(final int a, final int b) {
+    final int nodeA = this.nodes[a];
+    final int nodeB = this.nodes[b];
+    final int fCostA = this.gCosts[nodeA] + this.hCosts[nodeA];
+    final int fCostB = this.gCosts[nodeB] + this.hCosts[nodeB];
+    if (fCostA != fCostB) {
+      return fCostA < fCostB;
+    }
+
+    if (this.hCosts[nodeA] != this.hCosts[nodeB]) {
+      return this.hCosts[nodeA] < this.hCosts[nodeB];
+    }
+
+    return this.sequences[a] < this.sequences[b];
+  }
+
+  private void move(final int node, final long sequence, final int position) {
+    this.nodes[position] = node;
+    this.sequences[position] = sequence;
+    this.positions[node] = position + 1;
+  }
+
+  private void siftDown(int position) {
+    while (true) {
+      final int left = position * 2 + 1;
+      if (left >= this.size) {
+        return;
+      }
+
+      final int right = left + 1;
+      final int smallest = right < this.size && this.isLess(right, left) ? right : left;
+      if (!this.isLess(smallest, position)) {
+        return;
+      }
+
+      this.swap(position, smallest);
+      position = smallest;
+    }
+  }
+
+  private void siftUp(int position) {
+    while (position > 0) {
+      final int parent = (position - 1) / 2;
+      if (!this.isLess(position, parent)) {
+        return;
+      }
+
+      this.swap(position, parent);
+      position = parent;
+    }
+  }
+
+  private void swap(final int a, final int b) {
+    final int nodeA = this.nodes[a];
+    final long sequenceA = this.sequences[a];
+    this.move(this.nodes[b], this.sequences[b], a);
+    this.move(nodeA, sequenceA, b);
+  }
+}
@@ -7,6 +7,8 @@ import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import de.gurkenlabs.litiengine.entities.IMovableEntity;
 import de.gurkenlabs.litiengine.environment.tilemap.IMap;
@@ -15,14 +17,16 @@ import de.gurkenlabs.litiengine.physics.Path;
 
 public class AStarPathFinder extends PathFinder {
 
+  private final Queue<AStarSearchContext> contexts;
   private final AStarGrid grid;
 
   public AStarPathFinder(final IPhysicsEngine physicsEngine, final IMap map) {
-    this.grid = new AStarGrid(physicsEngine, map, map.getTileSize().width);
+    this(physicsEngine, map, map.getTileSize().width);
   }
 
   public AStarPathFinder(final IPhysicsEngine physicsEngine, final IMap map, final int gridNodeSize) {
     this.grid = new AStarGrid(physicsEngine, map, gridNodeSize);
+    this.contexts = new ConcurrentLinkedQueue<>();
   }
 
   @Override
@@ -40,68 +44,168 @@ public class AStarPathFinder extends PathFinder {
       return null;
     }
 
+    // the whole query works on the same version of the grid
+    final AStarGridSnapshot snapshot = this.getGrid().getSnapshot();
+
     // simple fallback if the target tile is not walkable.
-    if (!targetNode.isWalkable()) {
+    if (!snapshot.isWalkable(targetNode)) {
       return this.findDirectPath(startLocation, target);
     }
 
-    final List<AStarNode> opened = new ArrayList<>();
-    final List<AStarNode> closed = new ArrayList<>();
-    opened.add(startNode);
+    return this.findPath(snapshot, startNode, targetNode);
+  }
 
-    while (!opened.isEmpty()) {
-      AStarNode currentNode = opened.get(0);
+  /**
+   * Finds the shortest path between the specified nodes of the grid.
+   *
+   * @param startNode
+   *          The node to start the search from.
+   * @param targetNode
+   *          The node to find a path to.
+   * @return The path between the nodes or null if the target cannot be reached.
+   */
+  public Path findPath(final AStarNode startNode, final AStarNode targetNode) {
+    return this.findPath(this.getGrid().getSnapshot(), startNode, targetNode);
+  }
 
-      // find node with lowest cost
-      for (int i = 1; i < opened.size(); i++) {
-        if (opened.get(i).getfCost() < currentNode.getfCost() || opened.get(i).getfCost() == currentNode.getfCost() && opened.get(i).gethCost() < currentNode.gethCost()) {
-          currentNode = opened.get(i);
+  /**
+   * Finds the shortest path between the specified nodes of the grid with the
+   * walkability of the specified snapshot. This method can be called
+   * concurrently because all state of the search is kept in a search context
+   * that is exclusively used by the calling thread.
+   *
+   * @param snapshot
+   *          The snapshot of the grid that defines which nodes are walkable.
+   * @param startNode
+   *          The node to start the search from.
+   * @param targetNode
+   *          The node to find a path to.
+   * @return The path between the nodes or null if the target cannot be reached.
+   */
+  public Path findPath(final AStarGridSnapshot snapshot, final AStarNode startNode, final AStarNode targetNode) {
+    final AStarSearchContext context = this.acquireContext();
+    try {
+      final int start = this.grid.getIndex(startNode);
+      final int targetIndex = this.grid.getIndex(targetNode);
+
+      // the open set is ordered by the node costs and the closed set is
+      // indexed by the grid coordinates so neither of them needs to be searched
+      final AStarOpenSet opened = context.getOpened();
+      final int[] successors = context.getSuccessors();
+      context.visit(start, 0, 0, -1);
+      opened.add(start);
+
+      while (!opened.isEmpty()) {
+        // add node with the lowest cost to the closed set after checking it
+        final int current = opened.poll();
+        context.close(current);
+
+        if (current == targetIndex) {
+          return this.retracePath(context, start, targetIndex);
         }
-      }
-
-      // add node to closed list after checking it
-      opened.remove(currentNode);
-      closed.add(currentNode);
 
-      if (currentNode.equals(targetNode)) {
-        return this.retracePath(startNode, targetNode);
-      }
-
-      // check all neighbors for the potential next one
-      for (final AStarNode neighbour : this.grid.getNeighbours(currentNode)) {
-        if (!neighbour.equals(targetNode) && !neighbour.isWalkable() || closed.contains(neighbour)) {
-          continue;
-        }
+        // check all successors for the potential next one
+        final int predecessor = current != start ? context.getPredecessor(current) : -1;
+        final int successorCount = this.getSuccessors(snapshot, current, predecessor, targetIndex, successors);
+        for (int i = 0; i < successorCount; i++) {
+          final int neighbourIndex = successors[i];
+          if (neighbourIndex != targetIndex && !snapshot.isWalkable(neighbourIndex) || context.isClosed(neighbourIndex)) {
+            continue;
+          }
 
-        final int newgCostOfNeighbour = currentNode.getgCost() + currentNode.getCosts(neighbour);
-        if (newgCostOfNeighbour < neighbour.getgCost() || !opened.contains(neighbour)) {
-          neighbour.setgCost(newgCostOfNeighbour);
-          neighbour.sethCost(neighbour.getCosts(targetNode));
-          neighbour.setPredecessor(currentNode);
+          final int newgCostOfNeighbour = context.getgCost(current) + this.grid.getCosts(current, neighbourIndex);
+          final boolean isOpened = opened.contains(neighbourIndex);
+          if (!isOpened || newgCostOfNeighbour < context.getgCost(neighbourIndex)) {
+            context.visit(neighbourIndex, newgCostOfNeighbour, this.grid.getCosts(neighbourIndex, targetIndex), current);
 
-          if (!opened.contains(neighbour)) {
-            opened.add(neighbour);
+            if (isOpened) {
+              opened.decreased(neighbourIndex);
+            } else {
+              opened.add(neighbourIndex);
+            }
           }
         }
       }
 
+      return null;
+    } finally {
+      this.releaseContext(context);
     }
-    return null;
   }
 
   public AStarGrid getGrid() {
     return this.grid;
   }
 
-  private Path retracePath(final AStarNode startNode, final AStarNode targetNode) {
+  /**
+   * Gets the indices of the nodes that are considered as the next steps of a
+   * path that reaches the specified node. The nodes must be reachable from the
+   * node by a straight or diagonal line.
+   *
+   * @param snapshot
+   *          The snapshot of the grid that defines which nodes are walkable.
+   * @param node
+   *          The index of the node to get the successors for.
+   * @param predecessor
+   *          The index of the node from which the specified node was reached or
+   *          -1 if the node is the start of the path.
+   * @param target
+   *          The index of the target of the path.
+   * @param successors
+   *          The array to write the indices of the successors to, which has
+   *          room for the {@link AStarGrid#MAX_NEIGHBOURS} neighbours of the
+   *          node.
+   * @return The number of successors.
+   */
+  protected int getSuccessors(final AStarGridSnapshot snapshot, final int node, final int predecessor, final int target, final int[] successors) {
+    return this.grid.getNeighbours(node, snapshot, successors);
+  }
+
+  private AStarSearchContext acquireContext() {
+    final AStarSearchContext context = this.contexts.poll();
+    final AStarSearchContext result = context != null ? context : new AStarSearchContext(this.grid.getWidth() * this.grid.getHeight());
+    result.begin();
+    return result;
+  }
+
+  private void releaseContext(final AStarSearchContext context) {
+    this.contexts.offer(context);
+  }
+
+  /**
+   * Creates a path that passes all of the specified waypoints. Waypoints that
+   * are not adjacent to each other must be located on a straight or diagonal
+   * line.
+   *
+   * @param waypoints
+   *          The waypoints of the path, including the start and the target
+   *          node.
+   * @return The path along all nodes between the start and the target.
+   */
+  protected Path createPath(final List<AStarNode> waypoints) {
+    final AStarNode startNode = waypoints.get(0);
+    final AStarNode targetNode = waypoints.get(waypoints.size() - 1);
+
+    // successors that are not adjacent to their predecessor are connected by
+    // all the nodes on the straight or diagonal line between them
     final List<AStarNode> path = new ArrayList<>();
-    AStarNode currentNode = targetNode.getPredecessor();
+    for (int i = 1; i < waypoints.size(); i++) {
+      final AStarNode from = waypoints.get(i - 1);
+      final AStarNode to = waypoints.get(i);
+      final int dx = Integer.signum(to.getGridX() - from.getGridX());
+      final int dy = Integer.signum(to.getGridY() - from.getGridY());
+      int x = from.getGridX() + dx;
+      int y = from.getGridY() + dy;
+      while (x != to.getGridX() || y != to.getGridY()) {
+        path.add(this.grid.getNode(x, y));
+        x += dx;
+        y += dy;
+      }
 
-    while (currentNode != startNode) {
-      path.add(currentNode);
-      currentNode = currentNode.getPredecessor();
+      if (i < waypoints.size() - 1) {
+        path.add(to);
+      }
     }
-    Collections.reverse(path);
 
     final Path2D path2D = new GeneralPath(Path2D.WIND_NON_ZERO);
     path2D.moveTo(startNode.getLocation().x, startNode.getLocation().y);
@@ -119,4 +223,15 @@ public class AStarPathFinder extends PathFinder {
     return new Path(startNode.getLocation(), targetNode.getLocation(), path2D, pointsOfPath);
   }
 
+  private Path retracePath(final AStarSearchContext context, final int start, final int target) {
+    final List<AStarNode> waypoints = new ArrayList<>();
+    for (int current = target; current != start; current = context.getPredecessor(current)) {
+      waypoints.add(this.grid.getNode(current));
+    }
+
+    waypoints.add(this.grid.getNode(start));
+    Collections.reverse(waypoints);
+    return this.createPath(waypoints);
+  }
+
 }
@@ -0,0 +1,90 @@
+package de.gurkenlabs.litiengine.physics.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * Holds the state of a single path finding query: the costs, the predecessors,
+ * the open set and the closed set of all nodes of a grid. Instances are reused
+ * for multiple queries but must only be used by one query at a time.
+ * <p>
+ * Instead of resetting all arrays before each query, every query gets its own
+ * generation and all values that were not written in the current generation
+ * are treated as unset.
+ * </p>
+ */
+final class AStarSearchContext {
+  private final int[] closed;
+  private final int[] gCosts;
+  private final int[] hCosts;
+  private final AStarOpenSet opened;
+  private final int[] predecessors;
+  private final int[] successors;
+  private final int[] visited;
+
+  private int generation;
+
+  AStarSearchContext(final int nodeCount) {
+    this.closed = new int[nodeCount];
+    this.gCosts = new int[nodeCount];
+    this.hCosts = new int[nodeCount];
+    this.predecessors = new int[nodeCount];
+    this.visited = new int[nodeCount];
+    this.successors = new int[AStarGrid.MAX_NEIGHBOURS];
+    this.opened = new AStarOpenSet(nodeCount, this.gCosts, this.hCosts);
+  }
+
+  /**
+   * Prepares this instance for a new query.
+   */
+  public void begin() {
+    this.opened.clear();
+    this.generation++;
+    if (this.generation == Integer.MAX_VALUE) {
+      Arrays.fill(this.closed, 0);
+      Arrays.fill(this.visited, 0);
+      this.generation = 1;
+    }
+  }
+
+  public void close(final int index) {
+    this.closed[index] = this.generation;
+  }
+
+  public int getgCost(final int index) {
+    return this.gCosts[index];
+  }
+
+  public AStarOpenSet getOpened() {
+    return this.opened;
+  }
+
+  public int getPredecessor(final int index) {
+    return this.predecessors[index];
+  }
+
+  /**
+   * Gets the buffer for the successors of the node that is currently expanded.
+   */
+  public int[] getSuccessors() {
+    return this.successors;
+  }
+
+  public int getSize() {
+    return this.gCosts.length;
+  }
+
+  public boolean isClosed(final int index) {
+    return this.closed[index] == this.generation;
+  }
+
+  public boolean isVisited(final int index) {
+    return this.visited[index] == this.generation;
+  }
+
+  public void visit(final int index, final int gCost, final int hCost, final int predecessor) {
+    this.visited[index] = this.generation;
+    this.gCosts[index] = gCost;
+    this.hCosts[index] = hCost;
+    this.predecessors[index] = predecessor;
+  }
+}
@@ -0,0 +1,200 @@
+package de.gurkenlabs.litiengine.physics.pathfinding;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+
+/**
+ * An integration field that contains the costs of the shortest path from every
+ * node of a grid to a single goal node. Every node points to its next step
+ * towards the goal, so any number of entities that share the same goal can
+ * follow the field with a constant time lookup per tick.
+ * <p>
+ * A field is calculated for a single snapshot of the grid and is not affected
+ * by later updates of the walkability.
+ * </p>
+ *
+ * @see FlowFieldService
+ */
+public final class FlowField {
+  private final boolean diagonalMovementOnCorners;
+  private final AStarNode goal;
+  private final int goalIndex;
+  private final AStarGrid grid;
+  private final int[] costs;
+  private final int[] next;
+  private final long version;
+
+  FlowField(final AStarGrid grid, final AStarGridSnapshot snapshot, final AStarNode goal) {
+    this.grid = grid;
+    this.goal = goal;
+    this.goalIndex = grid.getIndex(goal);
+    this.version = snapshot.getVersion();
+    this.diagonalMovementOnCorners = grid.diagonalMovementOnCorners();
+
+    final int nodeCount = snapshot.getWidth() * snapshot.getHeight();
+    this.costs = new int[nodeCount];
+    this.next = new int[nodeCount];
+    Arrays.fill(this.costs, Integer.MAX_VALUE);
+    Arrays.fill(this.next, -1);
+    this.integrate(snapshot);
+  }
+
+  /**
+   * Gets the costs of the shortest path from the specified node to the goal.
+   *
+   * @param node
+   *          The node to get the costs for.
+   * @return The costs of the path or {@link Integer#MAX_VALUE} if the goal
+   *         cannot be reached from the node.
+   */
+  public int getCosts(final AStarNode node) {
+    return this.costs[this.grid.getIndex(node)];
+  }
+
+  public AStarNode getGoal() {
+    return this.goal;
+  }
+
+  /**
+   * Gets the next node on the shortest path from the specified node to the
+   * goal.
+   *
+   * @param node
+   *          The node to get the next step for.
+   * @return The next node or null if the node is the goal or the goal cannot
+   *         be reached.
+   */
+  public AStarNode getNextNode(final AStarNode node) {
+    final int nextIndex = this.next[this.grid.getIndex(node)];
+    return nextIndex != -1 ? this.grid.getNode(nextIndex) : null;
+  }
+
+  /**
+   * Gets the next location that an entity at the specified location needs to
+   * move to in order to reach the goal. If the goal cannot be reached from the
+   * node of the location, e.g. because the center of an entity overlaps an
+   * obstacle, the entity moves to the neighbour with the shortest path to the
+   * goal instead.
+   *
+   * @param location
+   *          The current location on the map.
+   * @return The center of the next node, the center of the goal if the
+   *         location is already on the goal node or null if the goal cannot be
+   *         reached from the node or any of its neighbours.
+   */
+  public Point2D getNextLocation(final Point2D location) {
+    final int index = getIndex(this.grid, location);
+    if (index == this.goalIndex) {
+      return this.goal.getLocation();
+    }
+
+    final int nextIndex = this.costs[index] != Integer.MAX_VALUE ? this.next[index] : this.getNearestReachableNeighbour(index);
+    return nextIndex != -1 ? this.grid.getNode(nextIndex).getLocation() : null;
+  }
+
+  /**
+   * Gets the node of the grid that contains the specified location.
+   *
+   * @param location
+   *          The location on the map.
+   * @return The node that contains the location, clamped to the bounds of the
+   *         grid.
+   */
+  public AStarNode getNode(final Point2D location) {
+    return getNode(this.grid, location);
+  }
+
+  public long getVersion() {
+    return this.version;
+  }
+
+  public boolean isReachable(final AStarNode node) {
+    return this.getCosts(node) != Integer.MAX_VALUE;
+  }
+
+  /**
+   * Determines whether this field was calculated for the current state of the
+   * grid.
+   *
+   * @return True if neither the walkability nor the diagonal movement of the
+   *         grid have changed since this field was calculated.
+   */
+  public boolean isValid() {
+    return this.version == this.grid.getSnapshot().getVersion() && this.diagonalMovementOnCorners == this.grid.diagonalMovementOnCorners();
+  }
+
+  static AStarNode getNode(final AStarGrid grid, final Point2D location) {
+    return grid.getNode(getIndex(grid, location));
+  }
+
+  private static int getIndex(final AStarGrid grid, final Point2D location) {
+    final int x = Math.max(0, Math.min(grid.getWidth() - 1, (int) (location.getX() / grid.getNodeSize())));
+    final int y = Math.max(0, Math.min(grid.getHeight() - 1, (int) (location.getY() / grid.getNodeSize())));
+    return grid.getIndex(x, y);
+  }
+
+  /**
+   * Gets the neighbour of the specified node with the lowest costs to reach the
+   * goal, including the costs of the move to the neighbour.
+   *
+   * @return The index of the neighbour or -1 if the goal cannot be reached from
+   *         any neighbour.
+   */
+  private int getNearestReachableNeighbour(final int index) {
+    final int x = this.grid.getX(index);
+    final int y = this.grid.getY(index);
+    int nearest = -1;
+    long minCosts = Long.MAX_VALUE;
+    for (int neighbourX = Math.max(0, x - 1); neighbourX <= Math.min(this.grid.getWidth() - 1, x + 1); neighbourX++) {
+      for (int neighbourY = Math.max(0, y - 1); neighbourY <= Math.min(this.grid.getHeight() - 1, y + 1); neighbourY++) {
+        final int neighbour = this.grid.getIndex(neighbourX, neighbourY);
+        if (neighbour == index || this.costs[neighbour] == Integer.MAX_VALUE) {
+          continue;
+        }
+
+        final long costs = (long) this.costs[neighbour] + this.grid.getCosts(index, neighbour);
+        if (costs < minCosts) {
+          minCosts = costs;
+          nearest = neighbour;
+        }
+      }
+    }
+
+    return nearest;
+  }
+
+  /**
+   * Runs a Dijkstra search from the goal to all walkable nodes. Because the
+   * movement between neighbours is symmetric, the predecessor of every node in
+   * this search is its next step towards the goal.
+   */
+  private void integrate(final AStarGridSnapshot snapshot) {
+    final AStarOpenSet opened = new AStarOpenSet(this.costs.length, this.costs, new int[this.costs.length]);
+    final int[] neighbours = new int[AStarGrid.MAX_NEIGHBOURS];
+    this.costs[this.goalIndex] = 0;
+    opened.add(this.goalIndex);
+
+    while (!opened.isEmpty()) {
+      final int current = opened.poll();
+      final int neighbourCount = this.grid.getNeighbours(current, snapshot, neighbours);
+      for (int i = 0; i < neighbourCount; i++) {
+        final int neighbourIndex = neighbours[i];
+        if (!snapshot.isWalkable(neighbourIndex)) {
+          continue;
+        }
+
+        final int costs = this.costs[current] + this.grid.getCosts(current, neighbourIndex);
+        if (costs < this.costs[neighbourIndex]) {
+          final boolean isOpened = opened.contains(neighbourIndex);
+          this.costs[neighbourIndex] = costs;
+          this.next[neighbourIndex] = current;
+          if (isOpened) {
+            opened.decreased(neighbourIndex);
+          } else {
+            opened.add(neighbourIndex);
+          }
+        }
+      }
+    }
+  }
+}
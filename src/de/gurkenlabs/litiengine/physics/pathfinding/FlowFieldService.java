@@ -0,0 +1,82 @@
+package de.gurkenlabs.litiengine.physics.pathfinding;
+
+import java.awt.geom.Point2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Provides flow fields for the goals of an {@link AStarGrid}. A field is only
+ * calculated once per goal node and shared by all entities that navigate to
+ * that goal until the walkability of the grid changes. The most recently used
+ * fields are cached up to the configured capacity.
+ */
+public class FlowFieldService {
+  public static final int DEFAULT_CAPACITY = 16;
+
+  private final Map<Integer, FlowField> flowFields;
+  private final AStarGrid grid;
+
+  public FlowFieldService(final AStarGrid grid) {
+    this(grid, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Instantiates a new flow field service.
+   *
+   * @param grid
+   *          The grid to calculate the flow fields for.
+   * @param capacity
+   *          The maximum number of goals whose flow fields are cached.
+   */
+  public FlowFieldService(final AStarGrid grid, final int capacity) {
+    this.grid = grid;
+    this.flowFields = new LinkedHashMap<Integer, FlowField>(capacity, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Integer, FlowField> eldest) {
+        return this.size() > capacity;
+      }
+    };
+
+    this.grid.onWalkableUpdated(rectangle -> this.clear());
+  }
+
+  public synchronized void clear() {
+    this.flowFields.clear();
+  }
+
+  public AStarGrid getGrid() {
+    return this.grid;
+  }
+
+  /**
+   * Gets the flow field for the node that contains the specified location.
+   *
+   * @param target
+   *          The location on the map to navigate to.
+   * @return The flow field towards the node of the target.
+   */
+  public FlowField getFlowField(final Point2D target) {
+    return this.getFlowField(FlowField.getNode(this.grid, target));
+  }
+
+  /**
+   * Gets the flow field for the specified goal. The field is only calculated if
+   * there is no cached field that is valid for the current state of the grid.
+   *
+   * @param goal
+   *          The node to navigate to.
+   * @return The flow field towards the goal.
+   */
+  public synchronized FlowField getFlowField(final AStarNode goal) {
+    final int index = this.grid.getIndex(goal);
+    FlowField flowField = this.flowFields.get(index);
+    if (flowField == null || !flowField.isValid()) {
+      flowField = new FlowField(this.grid, this.grid.getSnapshot(), goal);
+      this.flowFields.put(index, flowField);
+    }
+
+    return flowField;
+  }
+}
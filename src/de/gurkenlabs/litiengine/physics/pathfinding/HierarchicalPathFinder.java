@@ -0,0 +1,484 @@
+package de.gurkenlabs.litiengine.physics.pathfinding;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import de.gurkenlabs.litiengine.environment.tilemap.IMap;
+import de.gurkenlabs.litiengine.physics.IPhysicsEngine;
+import de.gurkenlabs.litiengine.physics.Path;
+
+/**
+ * A hierarchical path finder (HPA*) for large grids. The grid is split into
+ * square clusters and the entrances between adjacent clusters are connected
+ * by an abstract graph whose edge costs are precomputed. A query searches the
+ * abstract graph and only refines the segments of the resulting path within
+ * the clusters it passes.
+ * <p>
+ * When the walkability of the grid is updated, only the clusters that contain
+ * updated nodes and their direct neighbours are recalculated with the next
+ * query. Queries always use the latest version of the grid.
+ * </p>
+ */
+public class HierarchicalPathFinder extends AStarPathFinder {
+  public static final int DEFAULT_CLUSTER_SIZE = 16;
+
+  /** Entrances up to this length only get a single transition in the middle. */
+  private static final int MAX_SINGLE_TRANSITION_LENGTH = 6;
+
+  private final int clusterSize;
+  private final Cluster[][] clusters;
+  private final Set<Point> dirtyClusters;
+  private final ReadWriteLock lock;
+
+  private boolean graphDiagonalMovementOnCorners;
+  private Map<Integer, List<Edge>> graph;
+  private AStarGridSnapshot graphSnapshot;
+
+  public HierarchicalPathFinder(final IPhysicsEngine physicsEngine, final IMap map) {
+    this(physicsEngine, map, map.getTileSize().width, DEFAULT_CLUSTER_SIZE);
+  }
+
+  public HierarchicalPathFinder(final IPhysicsEngine physicsEngine, final IMap map, final int gridNodeSize, final int clusterSize) {
+    super(physicsEngine, map, gridNodeSize);
+    this.clusterSize = clusterSize;
+    this.dirtyClusters = new HashSet<>();
+    this.lock = new ReentrantReadWriteLock();
+
+    final int gridWidth = this.getGrid().getWidth();
+    final int gridHeight = this.getGrid().getHeight();
+    this.clusters = new Cluster[(gridWidth + clusterSize - 1) / clusterSize][(gridHeight + clusterSize - 1) / clusterSize];
+    for (int x = 0; x < this.clusters.length; x++) {
+      for (int y = 0; y < this.clusters[0].length; y++) {
+        final int clusterX = x * clusterSize;
+        final int clusterY = y * clusterSize;
+        this.clusters[x][y] = new Cluster(new Rectangle(clusterX, clusterY, Math.min(clusterSize, gridWidth - clusterX), Math.min(clusterSize, gridHeight - clusterY)));
+        this.dirtyClusters.add(new Point(x, y));
+      }
+    }
+
+    this.getGrid().onWalkableUpdated(this::invalidate);
+    this.updateClusters();
+  }
+
+  /**
+   * Finds a path between the specified nodes on the abstract graph and refines
+   * it within the passed clusters. The search always uses the latest version
+   * of the grid that the abstract graph has been built for, so the specified
+   * snapshot is ignored.
+   */
+  @Override
+  public Path findPath(final AStarGridSnapshot snapshot, final AStarNode startNode, final AStarNode targetNode) {
+    this.updateClusters();
+
+    this.lock.readLock().lock();
+    try {
+      final AStarGridSnapshot current = this.graphSnapshot;
+      final int start = this.getGrid().getIndex(startNode);
+      final int target = this.getGrid().getIndex(targetNode);
+      final Cluster startCluster = this.getCluster(start);
+      final Cluster targetCluster = this.getCluster(target);
+      final LocalSearch startSearch = this.search(current, startCluster.bounds, start, -1);
+      final LocalSearch targetSearch = this.search(current, targetCluster.bounds, target, -1);
+
+      final List<Integer> abstractPath = this.searchAbstractPath(start, target, startCluster, startSearch, targetCluster, targetSearch);
+      if (abstractPath == null) {
+        return null;
+      }
+
+      // refine all segments of the abstract path
+      final List<AStarNode> nodes = new ArrayList<>();
+      nodes.add(startNode);
+      for (int i = 1; i < abstractPath.size(); i++) {
+        final int from = abstractPath.get(i - 1);
+        final int to = abstractPath.get(i);
+        final List<AStarNode> segment;
+        if (from == start && startCluster.contains(this.getGrid(), to)) {
+          segment = startSearch.getNodes(to);
+        } else if (to == target && targetCluster.contains(this.getGrid(), from)) {
+          segment = targetSearch.getNodes(from);
+          Collections.reverse(segment);
+        } else if (this.getCluster(from) == this.getCluster(to)) {
+          segment = this.search(current, this.getCluster(from).bounds, from, to).getNodes(to);
+        } else {
+          segment = Arrays.asList(this.getGrid().getNode(from), this.getGrid().getNode(to));
+        }
+
+        nodes.addAll(segment.subList(1, segment.size()));
+      }
+
+      return this.createPath(nodes);
+    } finally {
+      this.lock.readLock().unlock();
+    }
+  }
+
+  public int getClusterSize() {
+    return this.clusterSize;
+  }
+
+  private static void addEdge(final Map<Integer, List<Edge>> graph, final int from, final int to, final int cost) {
+    graph.computeIfAbsent(from, key -> new ArrayList<>()).add(new Edge(to, cost));
+  }
+
+  /**
+   * Finds all transitions between the specified cluster and its neighbour to
+   * the east or to the south.
+   */
+  private List<int[]> findTransitions(final AStarGridSnapshot snapshot, final Cluster cluster, final boolean east) {
+    final List<int[]> transitions = new ArrayList<>();
+    final Rectangle bounds = cluster.bounds;
+    final int length = east ? bounds.height : bounds.width;
+
+    int runStart = -1;
+    for (int i = 0; i <= length; i++) {
+      final int x = east ? bounds.x + bounds.width - 1 : bounds.x + i;
+      final int y = east ? bounds.y + i : bounds.y + bounds.height - 1;
+      final boolean open = i < length && snapshot.isWalkable(x, y) && snapshot.isWalkable(east ? x + 1 : x, east ? y : y + 1);
+      if (open && runStart == -1) {
+        runStart = i;
+      } else if (!open && runStart != -1) {
+        final int runEnd = i - 1;
+        if (runEnd - runStart + 1 < MAX_SINGLE_TRANSITION_LENGTH) {
+          transitions.add(this.getTransition(bounds, east, runStart + (runEnd - runStart) / 2));
+        } else {
+          transitions.add(this.getTransition(bounds, east, runStart));
+          transitions.add(this.getTransition(bounds, east, runEnd));
+        }
+
+        runStart = -1;
+      }
+    }
+
+    return transitions;
+  }
+
+  private Cluster getCluster(final int index) {
+    return this.clusters[this.getGrid().getX(index) / this.clusterSize][this.getGrid().getY(index) / this.clusterSize];
+  }
+
+  private Set<Integer> getEntrances(final int clusterX, final int clusterY) {
+    final Cluster cluster = this.clusters[clusterX][clusterY];
+    final Set<Integer> entrances = new LinkedHashSet<>();
+    cluster.eastTransitions.forEach(transition -> entrances.add(transition[0]));
+    cluster.southTransitions.forEach(transition -> entrances.add(transition[0]));
+    if (clusterX > 0) {
+      this.clusters[clusterX - 1][clusterY].eastTransitions.forEach(transition -> entrances.add(transition[1]));
+    }
+
+    if (clusterY > 0) {
+      this.clusters[clusterX][clusterY - 1].southTransitions.forEach(transition -> entrances.add(transition[1]));
+    }
+
+    return entrances;
+  }
+
+  private int[] getTransition(final Rectangle bounds, final boolean east, final int offset) {
+    final int height = this.getGrid().getHeight();
+    if (east) {
+      final int x = bounds.x + bounds.width - 1;
+      final int y = bounds.y + offset;
+      return new int[] { x * height + y, (x + 1) * height + y };
+    }
+
+    final int x = bounds.x + offset;
+    final int y = bounds.y + bounds.height - 1;
+    return new int[] { x * height + y, x * height + y + 1 };
+  }
+
+  private void invalidate(final Rectangle2D rectangle) {
+    synchronized (this.dirtyClusters) {
+      for (final AStarNode node : this.getGrid().getIntersectedNodes(rectangle)) {
+        this.dirtyClusters.add(new Point(node.getGridX() / this.clusterSize, node.getGridY() / this.clusterSize));
+      }
+    }
+  }
+
+  /**
+   * Searches the shortest path on the abstract graph that is extended by the
+   * start and the target node.
+   *
+   * @return The nodes of the abstract path or null if there is no path.
+   */
+  private List<Integer> searchAbstractPath(final int start, final int target, final Cluster startCluster, final LocalSearch startSearch, final Cluster targetCluster, final LocalSearch targetSearch) {
+    final Map<Integer, Integer> gCosts = new HashMap<>();
+    final Map<Integer, Integer> predecessors = new HashMap<>();
+    final Set<Integer> closed = new HashSet<>();
+    final PriorityQueue<int[]> opened = new PriorityQueue<>((a, b) -> Integer.compare(a[0], b[0]));
+
+    gCosts.put(start, 0);
+    opened.add(new int[] { this.getGrid().getCosts(start, target), start });
+    while (!opened.isEmpty()) {
+      final int current = opened.poll()[1];
+      if (!closed.add(current)) {
+        continue;
+      }
+
+      if (current == target) {
+        final List<Integer> path = new ArrayList<>();
+        for (Integer node = target; node != null; node = predecessors.get(node)) {
+          path.add(node);
+        }
+
+        Collections.reverse(path);
+        return path;
+      }
+
+      final List<Edge> edges = new ArrayList<>(this.graph.getOrDefault(current, Collections.emptyList()));
+      if (current == start) {
+        for (final int entrance : this.getEntrances(startCluster)) {
+          if (startSearch.isReachable(entrance)) {
+            edges.add(new Edge(entrance, startSearch.getCost(entrance)));
+          }
+        }
+      }
+
+      if (targetCluster.contains(this.getGrid(), current) && targetSearch.isReachable(current)) {
+        edges.add(new Edge(target, targetSearch.getCost(current)));
+      }
+
+      for (final Edge edge : edges) {
+        final int gCost = gCosts.get(current) + edge.cost;
+        final Integer previous = gCosts.get(edge.target);
+        if (closed.contains(edge.target) || previous != null && previous <= gCost) {
+          continue;
+        }
+
+        gCosts.put(edge.target, gCost);
+        predecessors.put(edge.target, current);
+        opened.add(new int[] { gCost + this.getGrid().getCosts(edge.target, target), edge.target });
+      }
+    }
+
+    return null;
+  }
+
+  private Set<Integer> getEntrances(final Cluster cluster) {
+    return this.getEntrances(cluster.bounds.x / this.clusterSize, cluster.bounds.y / this.clusterSize);
+  }
+
+  /**
+   * Searches the shortest paths from the start node to all nodes within the
+   * specified bounds.
+   *
+   * @param target
+   *          The node at which the search can stop or -1 to search all nodes.
+   */
+  private LocalSearch search(final AStarGridSnapshot snapshot, final Rectangle bounds, final int start, final int target) {
+    final AStarGrid grid = this.getGrid();
+    final LocalSearch search = new LocalSearch(bounds, start);
+    final int[] neighbours = new int[AStarGrid.MAX_NEIGHBOURS];
+    final PriorityQueue<long[]> opened = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+    search.costs[search.getLocalIndex(start)] = 0;
+    opened.add(new long[] { 0, start });
+
+    while (!opened.isEmpty()) {
+      final long[] entry = opened.poll();
+      final int current = (int) entry[1];
+      if (entry[0] > search.getCost(current)) {
+        continue;
+      }
+
+      if (current == target) {
+        break;
+      }
+
+      final int neighbourCount = grid.getNeighbours(current, snapshot, neighbours);
+      for (int i = 0; i < neighbourCount; i++) {
+        final int neighbourIndex = neighbours[i];
+        if (!bounds.contains(grid.getX(neighbourIndex), grid.getY(neighbourIndex)) || !snapshot.isWalkable(neighbourIndex)) {
+          continue;
+        }
+
+        final int cost = (int) entry[0] + grid.getCosts(current, neighbourIndex);
+        if (cost < search.getCost(neighbourIndex)) {
+          search.costs[search.getLocalIndex(neighbourIndex)] = cost;
+          search.predecessors[search.getLocalIndex(neighbourIndex)] = current;
+          opened.add(new long[] { cost, neighbourIndex });
+        }
+      }
+    }
+
+    return search;
+  }
+
+  /**
+   * Recalculates the transitions and the abstract edges of all clusters that
+   * have been invalidated since the last update.
+   */
+  private void updateClusters() {
+    final List<Point> dirty;
+    synchronized (this.dirtyClusters) {
+      if (this.graphDiagonalMovementOnCorners != this.getGrid().diagonalMovementOnCorners()) {
+        // the costs within all clusters depend on the diagonal movement
+        for (int x = 0; x < this.clusters.length; x++) {
+          for (int y = 0; y < this.clusters[0].length; y++) {
+            this.dirtyClusters.add(new Point(x, y));
+          }
+        }
+      }
+
+      if (this.dirtyClusters.isEmpty()) {
+        return;
+      }
+
+      dirty = new ArrayList<>(this.dirtyClusters);
+      this.dirtyClusters.clear();
+    }
+
+    this.lock.writeLock().lock();
+    try {
+      final AStarGridSnapshot snapshot = this.getGrid().getSnapshot();
+      final Set<Point> affected = new LinkedHashSet<>();
+      for (final Point point : dirty) {
+        final Cluster cluster = this.clusters[point.x][point.y];
+        affected.add(point);
+        if (point.x + 1 < this.clusters.length) {
+          cluster.eastTransitions = this.findTransitions(snapshot, cluster, true);
+          affected.add(new Point(point.x + 1, point.y));
+        }
+
+        if (point.y + 1 < this.clusters[0].length) {
+          cluster.southTransitions = this.findTransitions(snapshot, cluster, false);
+          affected.add(new Point(point.x, point.y + 1));
+        }
+
+        if (point.x > 0) {
+          this.clusters[point.x - 1][point.y].eastTransitions = this.findTransitions(snapshot, this.clusters[point.x - 1][point.y], true);
+          affected.add(new Point(point.x - 1, point.y));
+        }
+
+        if (point.y > 0) {
+          this.clusters[point.x][point.y - 1].southTransitions = this.findTransitions(snapshot, this.clusters[point.x][point.y - 1], false);
+          affected.add(new Point(point.x, point.y - 1));
+        }
+      }
+
+      // precalculate the costs between all entrances of the affected clusters
+      for (final Point point : affected) {
+        final Cluster cluster = this.clusters[point.x][point.y];
+        final Set<Integer> entrances = this.getEntrances(point.x, point.y);
+        cluster.edges = new HashMap<>();
+        for (final int entrance : entrances) {
+          final LocalSearch search = this.search(snapshot, cluster.bounds, entrance, -1);
+          for (final int other : entrances) {
+            if (other != entrance && search.isReachable(other)) {
+              addEdge(cluster.edges, entrance, other, search.getCost(other));
+            }
+          }
+        }
+      }
+
+      final Map<Integer, List<Edge>> newGraph = new HashMap<>();
+      for (final Cluster[] column : this.clusters) {
+        for (final Cluster cluster : column) {
+          cluster.edges.forEach((entrance, edges) -> newGraph.computeIfAbsent(entrance, key -> new ArrayList<>()).addAll(edges));
+          for (final int[] transition : cluster.eastTransitions) {
+            final int cost = this.getGrid().getCosts(transition[0], transition[1]);
+            addEdge(newGraph, transition[0], transition[1], cost);
+            addEdge(newGraph, transition[1], transition[0], cost);
+          }
+
+          for (final int[] transition : cluster.southTransitions) {
+            final int cost = this.getGrid().getCosts(transition[0], transition[1]);
+            addEdge(newGraph, transition[0], transition[1], cost);
+            addEdge(newGraph, transition[1], transition[0], cost);
+          }
+        }
+      }
+
+      this.graph = newGraph;
+      this.graphSnapshot = snapshot;
+      this.graphDiagonalMovementOnCorners = this.getGrid().diagonalMovementOnCorners();
+    } finally {
+      this.lock.writeLock().unlock();
+    }
+  }
+
+  private static class Cluster {
+    private final Rectangle bounds;
+    private Map<Integer, List<Edge>> edges;
+    private List<int[]> eastTransitions;
+    private List<int[]> southTransitions;
+
+    private Cluster(final Rectangle bounds) {
+      this.bounds = bounds;
+      this.edges = new HashMap<>();
+      this.eastTransitions = new ArrayList<>();
+      this.southTransitions = new ArrayList<>();
+    }
+
+    private boolean contains(final AStarGrid grid, final int index) {
+      return this.bounds.contains(grid.getX(index), grid.getY(index));
+    }
+  }
+
+  private static class Edge {
+    private final int cost;
+    private final int target;
+
+    private Edge(final int target, final int cost) {
+      this.target = target;
+      this.cost = cost;
+    }
+  }
+
+  /**
+   * The result of a search that is restricted to the bounds of a cluster.
+   */
+  private class LocalSearch {
+    private final Rectangle bounds;
+    private final int[] costs;
+    private final int[] predecessors;
+    private final int start;
+
+    private LocalSearch(final Rectangle bounds, final int start) {
+      this.bounds = bounds;
+      this.start = start;
+      this.costs = new int[bounds.width * bounds.height];
+      this.predecessors = new int[bounds.width * bounds.height];
+      Arrays.fill(this.costs, Integer.MAX_VALUE);
+    }
+
+    private int getCost(final int index) {
+      return this.costs[this.getLocalIndex(index)];
+    }
+
+    private int getLocalIndex(final int index) {
+      final AStarGrid grid = HierarchicalPathFinder.this.getGrid();
+      return (grid.getX(index) - this.bounds.x) * this.bounds.height + grid.getY(index) - this.bounds.y;
+    }
+
+    /**
+     * Gets all nodes of the path from the start of this search to the
+     * specified node, including both of them.
+     */
+    private List<AStarNode> getNodes(final int index) {
+      final List<AStarNode> nodes = new ArrayList<>();
+      for (int current = index; current != this.start; current = this.predecessors[this.getLocalIndex(current)]) {
+        nodes.add(HierarchicalPathFinder.this.getGrid().getNode(current));
+      }
+
+      nodes.add(HierarchicalPathFinder.this.getGrid().getNode(this.start));
+      Collections.reverse(nodes);
+      return nodes;
+    }
+
+    private boolean isReachable(final int index) {
+      final AStarGrid grid = HierarchicalPathFinder.this.getGrid();
+      return this.bounds.contains(grid.getX(index), grid.getY(index)) && this.getCost(index) != Integer.MAX_VALUE;
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package de.gurkenlabs.litiengine.physics.pathfinding;
+
+import de.gurkenlabs.litiengine.environment.tilemap.IMap;
+import de.gurkenlabs.litiengine.physics.IPhysicsEngine;
+
+/**
+ * A path finder that uses Jump Point Search on an {@link AStarGrid}. Instead of
+ * adding all neighbours of a node to the open set, it only adds the jump points
+ * which are reached by moving in a straight or diagonal line until a forced
+ * neighbour, the target or an obstacle is found. On grids with uniform costs
+ * it finds paths with the same costs as the {@link AStarPathFinder} while
+ * expanding far fewer nodes.
+ * <p>
+ * The returned paths contain all nodes between the jump points so they have
+ * the same structure as the paths of the {@link AStarPathFinder}.
+ * </p>
+ */
+public class JumpPointPathFinder extends AStarPathFinder {
+
+  public JumpPointPathFinder(final IPhysicsEngine physicsEngine, final IMap map) {
+    super(physicsEngine, map);
+  }
+
+  public JumpPointPathFinder(final IPhysicsEngine physicsEngine, final IMap map, final int gridNodeSize) {
+    super(physicsEngine, map, gridNodeSize);
+  }
+
+  /**
+   * Gets the jump points in all directions that need to be searched from the
+   * specified node. All directions that can be reached at the same costs
+   * without passing the node are pruned.
+   */
+  @Override
+  protected int getSuccessors(final AStarGridSnapshot snapshot, final int node, final int predecessor, final int target, final int[] successors) {
+    final AStarGrid grid = this.getGrid();
+    final int x = grid.getX(node);
+    final int y = grid.getY(node);
+    int count = 0;
+    if (predecessor == -1) {
+      // every neighbour is read before its slot is overwritten by a jump point
+      final int neighbourCount = grid.getNeighbours(node, snapshot, successors);
+      for (int i = 0; i < neighbourCount; i++) {
+        final int neighbour = successors[i];
+        count = this.addJumpPoint(snapshot, x, y, grid.getX(neighbour) - x, grid.getY(neighbour) - y, target, successors, count);
+      }
+
+      return count;
+    }
+
+    final int dx = Integer.signum(x - grid.getX(predecessor));
+    final int dy = Integer.signum(y - grid.getY(predecessor));
+
+    if (this.getGrid().diagonalMovementOnCorners()) {
+      if (dx != 0 && dy != 0) {
+        count = this.addJumpPoint(snapshot, x, y, 0, dy, target, successors, count);
+        count = this.addJumpPoint(snapshot, x, y, dx, 0, target, successors, count);
+        count = this.addJumpPoint(snapshot, x, y, dx, dy, target, successors, count);
+        if (!snapshot.isWalkable(x - dx, y)) {
+          count = this.addJumpPoint(snapshot, x, y, -dx, dy, target, successors, count);
+        }
+
+        if (!snapshot.isWalkable(x, y - dy)) {
+          count = this.addJumpPoint(snapshot, x, y, dx, -dy, target, successors, count);
+        }
+      } else if (dx != 0) {
+        count = this.addJumpPoint(snapshot, x, y, dx, 0, target, successors, count);
+        if (!snapshot.isWalkable(x, y + 1)) {
+          count = this.addJumpPoint(snapshot, x, y, dx, 1, target, successors, count);
+        }
+
+        if (!snapshot.isWalkable(x, y - 1)) {
+          count = this.addJumpPoint(snapshot, x, y, dx, -1, target, successors, count);
+        }
+      } else {
+        count = this.addJumpPoint(snapshot, x, y, 0, dy, target, successors, count);
+        if (!snapshot.isWalkable(x + 1, y)) {
+          count = this.addJumpPoint(snapshot, x, y, 1, dy, target, successors, count);
+        }
+
+        if (!snapshot.isWalkable(x - 1, y)) {
+          count = this.addJumpPoint(snapshot, x, y, -1, dy, target, successors, count);
+        }
+      }
+
+      return count;
+    }
+
+    // diagonal movement is only allowed if both adjacent nodes are walkable
+    if (dx != 0 && dy != 0) {
+      final boolean vertical = snapshot.isWalkable(x, y + dy);
+      final boolean horizontal = snapshot.isWalkable(x + dx, y);
+      if (vertical) {
+        count = this.addJumpPoint(snapshot, x, y, 0, dy, target, successors, count);
+      }
+
+      if (horizontal) {
+        count = this.addJumpPoint(snapshot, x, y, dx, 0, target, successors, count);
+      }
+
+      if (vertical && horizontal) {
+        count = this.addJumpPoint(snapshot, x, y, dx, dy, target, successors, count);
+      }
+    } else if (dx != 0) {
+      final boolean next = snapshot.isWalkable(x + dx, y);
+      final boolean bottom = snapshot.isWalkable(x, y + 1);
+      final boolean top = snapshot.isWalkable(x, y - 1);
+      if (next) {
+        count = this.addJumpPoint(snapshot, x, y, dx, 0, target, successors, count);
+        if (bottom) {
+          count = this.addJumpPoint(snapshot, x, y, dx, 1, target, successors, count);
+        }
+
+        if (top) {
+          count = this.addJumpPoint(snapshot, x, y, dx, -1, target, successors, count);
+        }
+      }
+
+      if (bottom) {
+        count = this.addJumpPoint(snapshot, x, y, 0, 1, target, successors, count);
+      }
+
+      if (top) {
+        count = this.addJumpPoint(snapshot, x, y, 0, -1, target, successors, count);
+      }
+    } else {
+      final boolean next = snapshot.isWalkable(x, y + dy);
+      final boolean right = snapshot.isWalkable(x + 1, y);
+      final boolean left = snapshot.isWalkable(x - 1, y);
+      if (next) {
+        count = this.addJumpPoint(snapshot, x, y, 0, dy, target, successors, count);
+        if (right) {
+          count = this.addJumpPoint(snapshot, x, y, 1, dy, target, successors, count);
+        }
+
+        if (left) {
+          count = this.addJumpPoint(snapshot, x, y, -1, dy, target, successors, count);
+        }
+      }
+
+      if (right) {
+        count = this.addJumpPoint(snapshot, x, y, 1, 0, target, successors, count);
+      }
+
+      if (left) {
+        count = this.addJumpPoint(snapshot, x, y, -1, 0, target, successors, count);
+      }
+    }
+
+    return count;
+  }
+
+  private int addJumpPoint(final AStarGridSnapshot snapshot, final int x, final int y, final int dx, final int dy, final int target, final int[] successors, final int count) {
+    final int jumpPoint = this.jump(snapshot, x + dx, y + dy, dx, dy, target);
+    if (jumpPoint == -1) {
+      return count;
+    }
+
+    successors[count] = jumpPoint;
+    return count + 1;
+  }
+
+  /**
+   * Moves from the specified location in the specified direction until a jump
+   * point is found.
+   *
+   * @return The index of the jump point or -1 if the direction ends at an
+   *         obstacle or the border of the grid.
+   */
+  private int jump(final AStarGridSnapshot snapshot, final int startX, final int startY, final int dx, final int dy, final int target) {
+    final boolean corners = this.getGrid().diagonalMovementOnCorners();
+    int x = startX;
+    int y = startY;
+    while (snapshot.isWalkable(x, y)) {
+      final int index = this.getGrid().getIndex(x, y);
+      if (index == target || this.hasForcedNeighbour(snapshot, x, y, dx, dy, corners)) {
+        return index;
+      }
+
+      // diagonal moves stop at every node from which a straight jump finds a
+      // jump point
+      if (dx != 0 && dy != 0 && (this.jump(snapshot, x + dx, y, dx, 0, target) != -1 || this.jump(snapshot, x, y + dy, 0, dy, target) != -1)) {
+        return index;
+      }
+
+      if (!corners && (!snapshot.isWalkable(x + dx, y) || !snapshot.isWalkable(x, y + dy))) {
+        return -1;
+      }
+
+      x += dx;
+      y += dy;
+    }
+
+    return -1;
+  }
+
+  private boolean hasForcedNeighbour(final AStarGridSnapshot snapshot, final int x, final int y, final int dx, final int dy, final boolean corners) {
+    if (corners) {
+      if (dx != 0 && dy != 0) {
+        return snapshot.isWalkable(x - dx, y + dy) && !snapshot.isWalkable(x - dx, y) || snapshot.isWalkable(x + dx, y - dy) && !snapshot.isWalkable(x, y - dy);
+      }
+
+      if (dx != 0) {
+        return snapshot.isWalkable(x + dx, y + 1) && !snapshot.isWalkable(x, y + 1) || snapshot.isWalkable(x + dx, y - 1) && !snapshot.isWalkable(x, y - 1);
+      }
+
+      return snapshot.isWalkable(x + 1, y + dy) && !snapshot.isWalkable(x + 1, y) || snapshot.isWalkable(x - 1, y + dy) && !snapshot.isWalkable(x - 1, y);
+    }
+
+    if (dx != 0 && dy != 0) {
+      // without corner movement, diagonal moves only have forced neighbours
+      // through their straight jumps
+      return false;
+    }
+
+    if (dx != 0) {
+      return snapshot.isWalkable(x, y - 1) && !snapshot.isWalkable(x - dx, y - 1) || snapshot.isWalkable(x, y + 1) && !snapshot.isWalkable(x - dx, y + 1);
+    }
+
+    return snapshot.isWalkable(x - 1, y) && !snapshot.isWalkable(x - 1, y - dy) || snapshot.isWalkable(x + 1, y) && !snapshot.isWalkable(x + 1, y - dy);
+  }
+}
@@ -0,0 +1,218 @@
+package de.gurkenlabs.litiengine.physics.pathfinding;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.gurkenlabs.litiengine.IGameLoop;
+import de.gurkenlabs.litiengine.IUpdateable;
+import de.gurkenlabs.litiengine.entities.IMovableEntity;
+import de.gurkenlabs.litiengine.physics.Path;
+
+/**
+ * Calculates paths asynchronously so that many path requests don't block a
+ * single tick of the game loop. Requests are either processed by a bounded
+ * pool of worker threads or on the game loop within a configurable time budget
+ * per tick. Requests that share the same start and target node are only
+ * calculated once.
+ * <p>
+ * The resulting paths are always delivered on the game loop with the first
+ * update after they have been calculated, so the callbacks don't need to be
+ * thread safe. The service needs to be attached to the game loop.
+ * </p>
+ */
+public class PathRequestService implements IUpdateable, AutoCloseable {
+  public static final double DEFAULT_TICK_BUDGET = 2;
+
+  private static final Logger log = Logger.getLogger(PathRequestService.class.getName());
+
+  private final Queue<PathRequest> completed;
+  private final ExecutorService executor;
+  private final AStarGrid grid;
+  private final IPathFinder pathFinder;
+  private final Map<List<Object>, PathRequest> pending;
+  private final Queue<PathRequest> queued;
+
+  private double tickBudget;
+
+  /**
+   * Instantiates a new path request service that calculates the paths on the
+   * game loop within the {@link #DEFAULT_TICK_BUDGET}.
+   *
+   * @param pathFinder
+   *          The path finder that calculates the paths.
+   * @param grid
+   *          The grid that is used to identify requests with the same start and
+   *          target node or null if only requests with exactly the same
+   *          locations should be combined.
+   */
+  public PathRequestService(final IPathFinder pathFinder, final AStarGrid grid) {
+    this(pathFinder, grid, null);
+  }
+
+  /**
+   * Instantiates a new path request service that calculates the paths on the
+   * specified number of worker threads.
+   *
+   * @param pathFinder
+   *          The path finder that calculates the paths. It must support
+   *          concurrent queries if more than one thread is used.
+   * @param grid
+   *          The grid that is used to identify requests with the same start and
+   *          target node or null if only requests with exactly the same
+   *          locations should be combined.
+   * @param threads
+   *          The number of worker threads.
+   */
+  public PathRequestService(final IPathFinder pathFinder, final AStarGrid grid, final int threads) {
+    this(pathFinder, grid, Executors.newFixedThreadPool(threads, runnable -> {
+      final Thread thread = new Thread(runnable, "PathRequestService");
+      thread.setDaemon(true);
+      return thread;
+    }));
+  }
+
+  private PathRequestService(final IPathFinder pathFinder, final AStarGrid grid, final ExecutorService executor) {
+    this.pathFinder = pathFinder;
+    this.grid = grid;
+    this.executor = executor;
+    this.completed = new ConcurrentLinkedQueue<>();
+    this.pending = new HashMap<>();
+    this.queued = new ConcurrentLinkedQueue<>();
+    this.tickBudget = DEFAULT_TICK_BUDGET;
+  }
+
+  @Override
+  public void close() {
+    if (this.executor != null) {
+      this.executor.shutdownNow();
+    }
+  }
+
+  public IPathFinder getPathFinder() {
+    return this.pathFinder;
+  }
+
+  /**
+   * Gets the time in milliseconds that is used to calculate paths in one tick
+   * of the game loop if this instance has no worker threads.
+   *
+   * @return The time budget per tick in milliseconds.
+   */
+  public double getTickBudget() {
+    return this.tickBudget;
+  }
+
+  /**
+   * Requests a path from the location of the specified entity to the target.
+   *
+   * @param entity
+   *          The entity to find the path for.
+   * @param target
+   *          The target of the path.
+   * @param callback
+   *          The callback that receives the calculated path, or null if no path
+   *          was found, on the game loop.
+   */
+  public void request(final IMovableEntity entity, final Point2D target, final Consumer<Path> callback) {
+    final List<Object> key = this.getKey(entity, target);
+    synchronized (this.pending) {
+      final PathRequest existing = this.pending.get(key);
+      if (existing != null) {
+        existing.callbacks.add(callback);
+        return;
+      }
+
+      final PathRequest request = new PathRequest(key, entity, target);
+      request.callbacks.add(callback);
+      this.pending.put(key, request);
+
+      if (this.executor != null) {
+        this.executor.execute(() -> this.process(request));
+      } else {
+        this.queued.add(request);
+      }
+    }
+  }
+
+  public void setTickBudget(final double tickBudget) {
+    this.tickBudget = tickBudget;
+  }
+
+  @Override
+  public void update(final IGameLoop loop) {
+    // deliver the paths that have been calculated since the last update
+    PathRequest request = this.completed.poll();
+    while (request != null) {
+      for (final Consumer<Path> callback : request.callbacks) {
+        callback.accept(request.path);
+      }
+
+      request = this.completed.poll();
+    }
+
+    if (this.executor != null) {
+      return;
+    }
+
+    // process at least one request per tick to make sure that all requests
+    // are processed eventually
+    final long start = System.nanoTime();
+    final long budget = (long) (this.getTickBudget() * 1000000);
+    do {
+      request = this.queued.poll();
+      if (request != null) {
+        this.process(request);
+      }
+    } while (request != null && System.nanoTime() - start < budget);
+  }
+
+  private List<Object> getKey(final IMovableEntity entity, final Point2D target) {
+    final Point2D start = new Point2D.Double(entity.getCollisionBox().getCenterX(), entity.getCollisionBox().getCenterY());
+    if (this.grid == null) {
+      return Arrays.asList(start, target);
+    }
+
+    return Arrays.asList(this.grid.getNodeFromMapLocation(start), this.grid.getNodeFromMapLocation(target));
+  }
+
+  private void process(final PathRequest request) {
+    try {
+      request.path = this.pathFinder.findPath(request.entity, request.target);
+    } catch (final Exception e) {
+      log.log(Level.SEVERE, e.getMessage(), e);
+    }
+
+    // no more callbacks can be added after the request has been removed
+    synchronized (this.pending) {
+      this.pending.remove(request.key);
+    }
+
+    this.completed.add(request);
+  }
+
+  private static class PathRequest {
+    private final List<Consumer<Path>> callbacks;
+    private final IMovableEntity entity;
+    private final List<Object> key;
+    private final Point2D target;
+    private Path path;
+
+    private PathRequest(final List<Object> key, final IMovableEntity entity, final Point2D target) {
+      this.key = key;
+      this.entity = entity;
+      this.target = target;
+      this.callbacks = new ArrayList<>();
+    }
+  }
+}
@@ -0,0 +1,337 @@
+package de.gurkenlabs.util.io;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single file that stores the raw ARGB rasters of images by their keys.
+ * <p>
+ * Images are appended as records that consist of a header and the pixels of
+ * the image, which can optionally be deflated. An image that is written again
+ * is overwritten in place if its record has the same size and otherwise
+ * supersedes the previous record. The pack is compacted once the superseded
+ * records take up more than half of the file. The index of all records is
+ * built when the pack is opened and the records are read with positional reads
+ * of the file channel, so the file is not mapped and can be deleted as soon as
+ * the pack is closed.
+ * </p>
+ */
+public final class ImagePack implements Closeable {
+  private static final int MAGIC = 0x4C495049;
+  private static final int VERSION = 1;
+  private static final int FILE_HEADER_SIZE = 8;
+  private static final byte FLAG_COMPRESSED = 1;
+
+  /** The size of a record header without the key. */
+  private static final int RECORD_HEADER_SIZE = 15;
+
+  /** The number of superseded bytes below which a pack is not compacted. */
+  private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+  private static final Logger log = Logger.getLogger(ImagePack.class.getName());
+
+  private final boolean compress;
+  private final File file;
+  private final Map<String, Record> index;
+  private FileChannel channel;
+
+  /** The number of bytes of the records that were superseded. */
+  private long supersededBytes;
+
+  /**
+   * Opens the specified pack file and reads the index of its records. The file
+   * is created on the first write if it doesn't exist.
+   *
+   * @param file
+   *          the pack file
+   * @param compress
+   *          if true, the rasters of written images are deflated
+   */
+  public ImagePack(final File file, final boolean compress) {
+    this.file = file;
+    this.compress = compress;
+    this.index = new HashMap<>();
+    this.readIndex();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (this.channel != null) {
+      try {
+        this.channel.close();
+      } catch (final IOException e) {
+        log.log(Level.SEVERE, e.getMessage(), e);
+      }
+    }
+
+    this.channel = null;
+    this.index.clear();
+    this.supersededBytes = 0;
+  }
+
+  public synchronized boolean contains(final String key) {
+    return this.index.containsKey(key);
+  }
+
+  public File getFile() {
+    return this.file;
+  }
+
+  public synchronized List<String> getKeys() {
+    return new ArrayList<>(this.index.keySet());
+  }
+
+  public boolean isCompressed() {
+    return this.compress;
+  }
+
+  /**
+   * Reads the image with the specified key.
+   *
+   * @param key
+   *          the key
+   * @return a new image of the type {@link BufferedImage#TYPE_INT_ARGB} or null
+   *         if the pack doesn't contain the key
+   */
+  public BufferedImage read(final String key) {
+    final Record record;
+    final ByteBuffer data;
+    synchronized (this) {
+      record = this.index.get(key);
+      if (record == null) {
+        return null;
+      }
+
+      try {
+        data = ByteBuffer.allocate(record.length);
+        readFully(this.getChannel(), data, record.offset);
+      } catch (final IOException e) {
+        log.log(Level.SEVERE, e.getMessage(), e);
+        return null;
+      }
+    }
+
+    final int[] pixels = new int[record.width * record.height];
+    if (record.compressed) {
+      ByteBuffer.wrap(CompressionUtilities.decompress(data.array())).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(pixels);
+    } else {
+      data.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(pixels);
+    }
+
+    final BufferedImage image = new BufferedImage(record.width, record.height, BufferedImage.TYPE_INT_ARGB);
+    image.getRaster().setDataElements(0, 0, record.width, record.height, pixels);
+    return image;
+  }
+
+  /**
+   * Writes the raster of the specified image to the pack. If the pack already
+   * contains a record of the same size for the key, the record is overwritten
+   * in place. Otherwise, a new record is appended and the pack is compacted if
+   * too many bytes are taken up by superseded records.
+   *
+   * @param key
+   *          the key
+   * @param image
+   *          the image
+   */
+  public synchronized void write(final String key, final BufferedImage image) {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+    final ByteBuffer raster = ByteBuffer.allocate(pixels.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+    raster.asIntBuffer().put(pixels);
+
+    final byte[] data = this.compress ? CompressionUtilities.compress(raster.array()) : raster.array();
+    try {
+      final FileChannel fileChannel = this.getChannel();
+      final Record previous = this.index.get(key);
+      if (previous != null && previous.length == data.length && previous.width == width && previous.height == height && previous.compressed == this.compress) {
+        // the header of the record stays the same, so only the data is replaced
+        writeFully(fileChannel, ByteBuffer.wrap(data), previous.offset);
+        return;
+      }
+
+      final byte[] name = key.getBytes(StandardCharsets.UTF_8);
+      final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE + name.length);
+      header.putShort((short) name.length).put(name);
+      header.putInt(width).putInt(height).put(this.compress ? FLAG_COMPRESSED : 0).putInt(data.length);
+      header.flip();
+
+      long position = fileChannel.size();
+      if (position == 0) {
+        position += writeFileHeader(fileChannel);
+      }
+
+      final long start = position;
+      position += writeFully(fileChannel, header, position);
+      writeFully(fileChannel, ByteBuffer.wrap(data), position);
+      this.index.put(key, new Record(start, position, data.length, width, height, this.compress));
+      if (previous != null) {
+        this.supersededBytes += previous.getSize();
+        if (this.supersededBytes >= MIN_COMPACTION_BYTES && this.supersededBytes * 2 > fileChannel.size()) {
+          this.compact();
+        }
+      }
+    } catch (final IOException e) {
+      log.log(Level.SEVERE, e.getMessage(), e);
+    }
+  }
+
+  private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+
+    buffer.flip();
+  }
+
+  private static int writeFileHeader(final FileChannel channel) throws IOException {
+    final ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+    fileHeader.flip();
+    return writeFully(channel, fileHeader, 0);
+  }
+
+  private static int writeFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+    final int length = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + length - buffer.remaining());
+    }
+
+    return length;
+  }
+
+  /**
+   * Copies all current records into a new file that replaces the pack file.
+   * The pack file is closed before it's replaced, because open files can't be
+   * replaced on every platform.
+   */
+  private void compact() throws IOException {
+    final File compacted = new File(this.file.getPath() + ".tmp");
+    final Map<String, Record> records = new HashMap<>();
+    try (final FileChannel target = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      long position = writeFileHeader(target);
+      for (final Map.Entry<String, Record> entry : this.index.entrySet()) {
+        final Record record = entry.getValue();
+        long copied = 0;
+        target.position(position);
+        while (copied < record.getSize()) {
+          copied += this.channel.transferTo(record.start + copied, record.getSize() - copied, target);
+        }
+
+        records.put(entry.getKey(), new Record(position, position + record.offset - record.start, record.length, record.width, record.height, record.compressed));
+        position += record.getSize();
+      }
+    }
+
+    this.channel.close();
+    this.channel = null;
+    Files.move(compacted.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    this.index.clear();
+    this.index.putAll(records);
+    this.supersededBytes = 0;
+  }
+
+  private FileChannel getChannel() throws IOException {
+    if (this.channel == null) {
+      final File parent = this.file.getAbsoluteFile().getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+
+      this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    return this.channel;
+  }
+
+  private synchronized void readIndex() {
+    if (!this.file.exists() || this.file.length() < FILE_HEADER_SIZE) {
+      return;
+    }
+
+    try {
+      final FileChannel fileChannel = this.getChannel();
+      final ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE);
+      readFully(fileChannel, fileHeader, 0);
+      if (fileHeader.getInt() != MAGIC || fileHeader.getInt() != VERSION) {
+        log.log(Level.WARNING, "\'{0}\' is not a valid image pack", new Object[] { this.file });
+        return;
+      }
+
+      final long size = fileChannel.size();
+      long position = FILE_HEADER_SIZE;
+      while (position < size) {
+        final ByteBuffer nameLength = ByteBuffer.allocate(2);
+        readFully(fileChannel, nameLength, position);
+        final ByteBuffer header = ByteBuffer.allocate(nameLength.getShort() + RECORD_HEADER_SIZE - 2);
+        readFully(fileChannel, header, position + 2);
+
+        final byte[] name = new byte[header.capacity() - RECORD_HEADER_SIZE + 2];
+        header.get(name);
+        final int width = header.getInt();
+        final int height = header.getInt();
+        final boolean compressed = (header.get() & FLAG_COMPRESSED) != 0;
+        final int length = header.getInt();
+        final long offset = position + 2 + header.capacity();
+        if (offset + length > size) {
+          throw new EOFException();
+        }
+
+        final Record previous = this.index.put(new String(name, StandardCharsets.UTF_8), new Record(position, offset, length, width, height, compressed));
+        if (previous != null) {
+          this.supersededBytes += previous.getSize();
+        }
+
+        position = offset + length;
+      }
+    } catch (final EOFException e) {
+      // a truncated record at the end of the pack is ignored
+      log.log(Level.WARNING, "\'{0}\' ends with an incomplete record", new Object[] { this.file });
+    } catch (final IOException e) {
+      log.log(Level.SEVERE, e.getMessage(), e);
+    }
+  }
+
+  private static final class Record {
+    private final boolean compressed;
+    private final int height;
+    private final int length;
+    private final long offset;
+    private final long start;
+    private final int width;
+
+    private Record(final long start, final long offset, final int length, final int width, final int height, final boolean compressed) {
+      this.start = start;
+      this.offset = offset;
+      this.length = length;
+      this.width = width;
+      this.height = height;
+      this.compressed = compressed;
+    }
+
+    /**
+     * Gets the size of the record including its header.
+     */
+    private long getSize() {
+      return this.offset + this.length - this.start;
+    }
+  }
+}
@@ -1,6 +1,12 @@
 package de.gurkenlabs.litiengine;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
@@ -43,4 +49,192 @@ public class GameLoopTest {
       assertEquals(1000, loop.convertToMs(33));
     }
   }
+
+  @Test
+  public void testFixedTimestepCatchesUp() throws InterruptedException {
+    final TestClock clock = new TestClock();
+    final List<Long> tickStarts = new ArrayList<>();
+    final List<Long> deltaTimes = new ArrayList<>();
+    final GameLoop loop = new GameLoop(100);
+    loop.setClock(clock);
+    loop.setSchedulingMode(GameLoop.SchedulingMode.FIXED_TIMESTEP);
+    loop.setMaxCatchUpTicks(100);
+    loop.attach(l -> {
+      tickStarts.add(clock.nanoTime());
+      deltaTimes.add(l.getDeltaTime());
+
+      // stall a single tick for ten tick lengths to simulate a hiccup that must
+      // be caught up
+      if (l.getTicks() == 5) {
+        clock.advance(TimeUnit.MILLISECONDS.toNanos(100));
+      }
+
+      if (l.getTicks() == 30) {
+        l.terminate();
+      }
+    });
+
+    loop.start();
+    loop.join(5000);
+
+    assertEquals(30, tickStarts.size());
+    assertEquals(0, loop.getSkippedTicks());
+
+    // the nine late ticks and the one that is due run back to back
+    final long stallEnd = TimeUnit.MILLISECONDS.toNanos(140);
+    assertEquals(10, tickStarts.stream().filter(start -> start == stallEnd).count());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(150), (long) tickStarts.get(15));
+    for (final long deltaTime : deltaTimes) {
+      assertEquals(10, deltaTime);
+    }
+  }
+
+  @Test
+  public void testFixedTimestepSkipsTicksBeyondCatchUpLimit() throws InterruptedException {
+    final TestClock clock = new TestClock();
+    final List<Long> tickStarts = new ArrayList<>();
+    final GameLoop loop = new GameLoop(100);
+    loop.setClock(clock);
+    loop.setSchedulingMode(GameLoop.SchedulingMode.FIXED_TIMESTEP);
+    loop.setMaxCatchUpTicks(2);
+    loop.attach(l -> {
+      tickStarts.add(clock.nanoTime());
+      if (l.getTicks() == 2) {
+        clock.advance(TimeUnit.MILLISECONDS.toNanos(200));
+      }
+
+      if (l.getTicks() == 10) {
+        l.terminate();
+      }
+    });
+
+    loop.start();
+    loop.join(5000);
+
+    // 19 ticks are late, two of them are caught up and the rest is skipped
+    assertEquals(17, loop.getSkippedTicks());
+    final long stallEnd = TimeUnit.MILLISECONDS.toNanos(210);
+    assertEquals(3, tickStarts.stream().filter(start -> start == stallEnd).count());
+  }
+
+  @Test
+  public void testPhasedUpdatesRunPhasesInOrder() throws InterruptedException {
+    final List<UpdatePhase> updates = new ArrayList<>();
+    final CountDownLatch ticked = new CountDownLatch(1);
+    final GameLoop loop = new GameLoop(100);
+    loop.setPhasedUpdates(true);
+
+    // attached in reverse order to make sure the phases determine the order
+    loop.attach(l -> {
+      synchronized (updates) {
+        updates.add(UpdatePhase.DEFAULT);
+      }
+
+      ticked.countDown();
+    });
+
+    loop.attach(new PhasedUpdatable(UpdatePhase.PHYSICS, false, updates));
+    for (int i = 0; i < 20; i++) {
+      loop.attach(new PhasedUpdatable(UpdatePhase.AI, true, updates));
+    }
+
+    loop.attach(new PhasedUpdatable(UpdatePhase.INPUT, false, updates));
+
+    loop.start();
+    assertTrue(ticked.await(5, TimeUnit.SECONDS));
+    loop.terminate();
+    loop.join(1000);
+
+    synchronized (updates) {
+      assertEquals(UpdatePhase.INPUT, updates.get(0));
+      for (int i = 1; i <= 20; i++) {
+        assertEquals(UpdatePhase.AI, updates.get(i));
+      }
+
+      assertEquals(UpdatePhase.PHYSICS, updates.get(21));
+      assertEquals(UpdatePhase.DEFAULT, updates.get(22));
+    }
+  }
+
+  @Test
+  public void testSampledTicksAreProfiled() throws InterruptedException {
+    final List<UpdatePhase> updates = new ArrayList<>();
+    final CountDownLatch ticked = new CountDownLatch(4);
+    final GameMetrics metrics = new GameMetrics();
+    metrics.setProfiling(true);
+    metrics.setProfilingSampleRate(2);
+
+    final GameLoop loop = new GameLoop(100);
+    loop.setMetrics(metrics);
+    loop.setPhasedUpdates(true);
+    loop.attach(new PhasedUpdatable(UpdatePhase.AI, false, updates));
+    loop.attach(l -> ticked.countDown());
+
+    loop.start();
+    assertTrue(ticked.await(5, TimeUnit.SECONDS));
+    loop.terminate();
+    loop.join(1000);
+
+    final TimingHistogram tick = metrics.getHistogram(GameMetrics.PROFILE_TICK);
+    final TimingHistogram updatable = metrics.getHistogram(GameMetrics.PROFILE_UPDATE + PhasedUpdatable.class.getName());
+    final TimingHistogram phase = metrics.getHistogram(GameMetrics.PROFILE_PHASE + UpdatePhase.AI.name());
+    assertTrue(tick.getCount() >= 2);
+
+    // only every second tick is sampled
+    assertTrue(tick.getCount() <= loop.getTicks() / 2);
+    assertEquals(tick.getCount(), updatable.getCount());
+    assertEquals(tick.getCount(), phase.getCount());
+  }
+
+  /**
+   * A clock that only advances when it is told to or when the loop waits for
+   * the next tick.
+   */
+  private static class TestClock implements GameLoop.Clock {
+    private volatile long now;
+
+    @Override
+    public long nanoTime() {
+      return this.now;
+    }
+
+    @Override
+    public boolean waitUntil(final long deadline) {
+      this.now = Math.max(this.now, deadline);
+      return true;
+    }
+
+    private void advance(final long nanos) {
+      this.now += nanos;
+    }
+  }
+
+  private static class PhasedUpdatable implements IPhasedUpdateable {
+    private final boolean parallel;
+    private final UpdatePhase phase;
+    private final List<UpdatePhase> updates;
+
+    private PhasedUpdatable(final UpdatePhase phase, final boolean parallel, final List<UpdatePhase> updates) {
+      this.phase = phase;
+      this.parallel = parallel;
+      this.updates = updates;
+    }
+
+    @Override
+    public void update(final IGameLoop loop) {
+      synchronized (this.updates) {
+        this.updates.add(this.phase);
+      }
+    }
+
+    @Override
+    public UpdatePhase getUpdatePhase() {
+      return this.phase;
+    }
+
+    @Override
+    public boolean isParallelUpdateSafe() {
+      return this.parallel;
+    }
+  }
 }
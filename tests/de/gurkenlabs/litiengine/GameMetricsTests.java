@@ -0,0 +1,73 @@
+package de.gurkenlabs.litiengine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GameMetricsTests {
+
+  @Test
+  public void testNothingIsRecordedWithoutProfiling() {
+    final GameMetrics metrics = new GameMetrics();
+    metrics.record(GameMetrics.PROFILE_TICK, 100);
+
+    Assert.assertFalse(metrics.sampleTick(0));
+    Assert.assertNull(metrics.getHistogram(GameMetrics.PROFILE_TICK));
+  }
+
+  @Test
+  public void testSampling() {
+    final GameMetrics metrics = new GameMetrics();
+    metrics.setProfiling(true);
+    metrics.setProfilingSampleRate(4);
+
+    Assert.assertTrue(metrics.sampleTick(8));
+    Assert.assertFalse(metrics.sampleTick(9));
+    Assert.assertTrue(metrics.sampleFrame(4));
+    Assert.assertTrue(metrics.isFrameSampled());
+    Assert.assertFalse(metrics.sampleFrame(5));
+    Assert.assertFalse(metrics.isFrameSampled());
+  }
+
+  @Test
+  public void testUpdatablesAreProfiledPerClassOrInstance() {
+    final GameMetrics metrics = new GameMetrics();
+    metrics.setProfiling(true);
+    final IUpdateable first = new GameMetrics();
+    final IUpdateable second = new GameMetrics();
+
+    metrics.recordUpdate(first, 10);
+    metrics.recordUpdate(second, 20);
+    Assert.assertEquals(2, metrics.getHistogram(GameMetrics.PROFILE_UPDATE + GameMetrics.class.getName()).getCount());
+
+    metrics.resetProfiling();
+    metrics.setProfilePerInstance(true);
+    metrics.recordUpdate(first, 10);
+    metrics.recordUpdate(second, 20);
+    Assert.assertEquals(2, metrics.getHistograms().size());
+  }
+
+  @Test
+  public void testDumpProfile() throws IOException {
+    final GameMetrics metrics = new GameMetrics();
+    metrics.setProfiling(true);
+    metrics.record(GameMetrics.PROFILE_RENDER_MAP, 1000);
+    metrics.record(GameMetrics.PROFILE_TICK, 5000);
+
+    final File file = File.createTempFile("profile", ".csv");
+    try {
+      metrics.dumpProfile(file);
+      final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+      Assert.assertEquals(3, lines.size());
+      Assert.assertTrue(lines.get(1).startsWith(GameMetrics.PROFILE_TICK + ";1;5.0;"));
+      Assert.assertTrue(lines.get(2).startsWith(GameMetrics.PROFILE_RENDER_MAP + ";1;1.0;"));
+    } finally {
+      file.delete();
+    }
+  }
+}
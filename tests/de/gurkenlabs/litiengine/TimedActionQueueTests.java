@@ -0,0 +1,98 @@
+package de.gurkenlabs.litiengine;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimedActionQueueTests {
+
+  @Test
+  public void testDueActionsAreExecutedInOrder() {
+    final TimedActionQueue queue = new TimedActionQueue();
+    final List<String> executed = new ArrayList<>();
+    queue.schedule(5, i -> executed.add("late"));
+    queue.schedule(2, i -> executed.add("first"));
+    queue.schedule(2, i -> executed.add("second"));
+    queue.schedule(3, i -> executed.add("third"));
+
+    queue.executeDue(1);
+    Assert.assertTrue(executed.isEmpty());
+
+    queue.executeDue(3);
+    Assert.assertEquals(3, executed.size());
+    Assert.assertEquals("first", executed.get(0));
+    Assert.assertEquals("second", executed.get(1));
+    Assert.assertEquals("third", executed.get(2));
+    Assert.assertEquals(1, queue.size());
+  }
+
+  @Test
+  public void testCancelAndReschedule() {
+    final TimedActionQueue queue = new TimedActionQueue();
+    final List<Integer> executed = new ArrayList<>();
+    final List<Integer> indices = new ArrayList<>();
+    for (int tick = 0; tick < 100; tick++) {
+      indices.add(queue.schedule(tick, executed::add));
+    }
+
+    Assert.assertTrue(queue.cancel(indices.get(10)));
+    Assert.assertFalse(queue.cancel(indices.get(10)));
+    queue.reschedule(indices.get(90), 0);
+    queue.reschedule(indices.get(0), 95);
+
+    queue.executeDue(50);
+    Assert.assertEquals(indices.get(90), executed.get(0));
+    Assert.assertFalse(executed.contains(indices.get(0)));
+    Assert.assertFalse(executed.contains(indices.get(10)));
+    Assert.assertEquals(50, executed.size());
+
+    queue.executeDue(100);
+    // actions on the same tick keep the order in which they were scheduled
+    Assert.assertEquals(executed.indexOf(indices.get(95)) - 1, executed.indexOf(indices.get(0)));
+    Assert.assertEquals(99, executed.size());
+    Assert.assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void testManyActionsCanBeCanceled() {
+    final TimedActionQueue queue = new TimedActionQueue();
+    final Set<Integer> executed = new HashSet<>();
+    final List<Integer> indices = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      indices.add(queue.schedule(i % 7, executed::add));
+    }
+
+    final Random random = new Random(5);
+    final Set<Integer> canceled = new HashSet<>();
+    for (int i = 0; i < 600; i++) {
+      final int index = indices.get(random.nextInt(indices.size()));
+      Assert.assertEquals(canceled.add(index), queue.cancel(index));
+    }
+
+    queue.executeDue(10);
+    Assert.assertEquals(0, queue.size());
+    for (final int index : indices) {
+      Assert.assertNotEquals(canceled.contains(index), executed.contains(index));
+    }
+  }
+
+  @Test
+  public void testActionsScheduledDuringExecutionWaitForNextTick() {
+    final TimedActionQueue queue = new TimedActionQueue();
+    final List<Integer> executed = new ArrayList<>();
+    queue.schedule(0, i -> {
+      executed.add(i);
+      queue.schedule(0, executed::add);
+    });
+
+    queue.executeDue(0);
+    Assert.assertEquals(1, executed.size());
+    queue.executeDue(0);
+    Assert.assertEquals(2, executed.size());
+  }
+}
@@ -0,0 +1,49 @@
+package de.gurkenlabs.litiengine;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimingHistogramTests {
+
+  @Test
+  public void testBucketsCoverAllValues() {
+    long previousIndex = -1;
+    for (long value = 0; value < 100000; value++) {
+      final int index = TimingHistogram.bucketIndex(value);
+      Assert.assertTrue(index == previousIndex || index == previousIndex + 1);
+      Assert.assertTrue(TimingHistogram.highestEquivalentValue(index) >= value);
+      previousIndex = index;
+    }
+
+    Assert.assertEquals(Long.MAX_VALUE, TimingHistogram.highestEquivalentValue(TimingHistogram.bucketIndex(Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void testPercentiles() {
+    final TimingHistogram histogram = new TimingHistogram("test");
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+
+    Assert.assertEquals(1000, histogram.getCount());
+    Assert.assertEquals(1000000, histogram.getMax());
+    Assert.assertEquals(500500, histogram.getMean(), 0.001);
+    Assert.assertEquals(500000, histogram.getPercentile(50), 500000 * 0.035);
+    Assert.assertEquals(990000, histogram.getPercentile(99), 990000 * 0.035);
+    Assert.assertEquals(1000000, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void testReset() {
+    final TimingHistogram histogram = new TimingHistogram("test");
+    histogram.record(42);
+    histogram.record(-1);
+    Assert.assertEquals(2, histogram.getCount());
+    Assert.assertEquals(42, histogram.getTotal());
+
+    histogram.reset();
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getMax());
+    Assert.assertEquals(0, histogram.getPercentile(50));
+  }
+}
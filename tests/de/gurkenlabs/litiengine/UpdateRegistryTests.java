@@ -0,0 +1,84 @@
+package de.gurkenlabs.litiengine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UpdateRegistryTests {
+
+  @Test
+  public void testAttachAndDetach() {
+    final UpdateRegistry registry = new UpdateRegistry();
+    final List<IUpdateable> updatables = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      // a new instance for each iteration, non-capturing lambdas would be shared
+      final IUpdateable updatable = new TestUpdatable();
+      updatables.add(updatable);
+      Assert.assertTrue(registry.attach(updatable));
+    }
+
+    Assert.assertFalse(registry.attach(updatables.get(0)));
+    for (int i = 0; i < 100; i += 2) {
+      Assert.assertTrue(registry.detach(updatables.get(i)));
+    }
+
+    Assert.assertFalse(registry.detach(updatables.get(0)));
+    Assert.assertEquals(50, registry.size());
+
+    // the iteration compacts the slots and keeps the order of attachment
+    final List<IUpdateable> iterated = new ArrayList<>();
+    registry.forEach(iterated::add);
+    Assert.assertEquals(50, iterated.size());
+    for (int i = 0; i < 50; i++) {
+      Assert.assertSame(updatables.get(i * 2 + 1), iterated.get(i));
+    }
+
+    // detached updatables can be attached again after the compaction
+    Assert.assertTrue(registry.attach(updatables.get(0)));
+    Assert.assertTrue(registry.detach(updatables.get(1)));
+    iterated.clear();
+    registry.forEach(iterated::add);
+    Assert.assertEquals(50, iterated.size());
+    Assert.assertSame(updatables.get(3), iterated.get(0));
+    Assert.assertSame(updatables.get(0), iterated.get(49));
+  }
+
+  @Test
+  public void testIterationIsStableWhileUpdatablesChange() {
+    final UpdateRegistry registry = new UpdateRegistry();
+    final List<IUpdateable> iterated = new ArrayList<>();
+    final IUpdateable late = new TestUpdatable();
+    final IUpdateable second = new TestUpdatable();
+    final IUpdateable first = loop -> {
+      registry.detach(second);
+      registry.attach(late);
+    };
+
+    registry.attach(first);
+    registry.attach(second);
+    final Consumer<IUpdateable> update = u -> {
+      iterated.add(u);
+      u.update(null);
+    };
+
+    // the second updatable is detached before it's reached and the late one
+    // is attached after the iteration started
+    registry.forEach(update);
+    Assert.assertEquals(1, iterated.size());
+
+    iterated.clear();
+    registry.forEach(update);
+    Assert.assertEquals(2, iterated.size());
+    Assert.assertSame(late, iterated.get(1));
+  }
+
+  private static class TestUpdatable implements IUpdateable {
+    @Override
+    public void update(final IGameLoop loop) {
+      // nothing to update
+    }
+  }
+}
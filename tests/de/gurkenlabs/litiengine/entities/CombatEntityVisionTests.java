@@ -0,0 +1,95 @@
+package de.gurkenlabs.litiengine.entities;
+
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.gurkenlabs.litiengine.environment.IEnvironment;
+import de.gurkenlabs.litiengine.environment.tilemap.IMap;
+
+public class CombatEntityVisionTests {
+
+  @Test
+  public void testVisionFollowsFriendlyEntities() {
+    final List<ICombatEntity> entities = new ArrayList<>();
+    final IEnvironment environment = createEnvironment(entities);
+
+    final ICombatEntity player = createEntity(40, 40);
+    final ICombatEntity friend = createEntity(400, 400);
+    final ICombatEntity enemy = createEntity(800, 40);
+    when(player.isFriendly(friend)).thenReturn(true);
+    when(friend.isFriendly(player)).thenReturn(true);
+    entities.add(player);
+    entities.add(friend);
+    entities.add(enemy);
+
+    final CombatEntityVision vision = new CombatEntityVision(environment, player);
+    vision.updateVisionShape();
+
+    Assert.assertTrue(vision.contains(40, 40));
+    Assert.assertTrue(vision.contains(70, 40));
+    Assert.assertTrue(vision.contains(400, 400));
+    Assert.assertFalse(vision.contains(800, 40));
+    Assert.assertFalse(vision.contains(200, 200));
+    Assert.assertTrue(vision.intersects(new Rectangle2D.Double(380, 380, 10, 10)));
+    Assert.assertFalse(vision.intersects(new Rectangle2D.Double(700, 700, 40, 40)));
+
+    // the cells of an entity that moved or was removed are hidden again
+    when(friend.getDimensionCenter()).thenReturn(new Point2D.Double(600, 400));
+    entities.remove(player);
+    vision.updateVisionShape();
+
+    Assert.assertTrue(vision.contains(40, 40));
+    Assert.assertFalse(vision.contains(400, 400));
+    Assert.assertTrue(vision.contains(600, 400));
+    Assert.assertEquals(0, vision.getFogOfWar().getRGB(600 / 16, 400 / 16));
+    Assert.assertNotEquals(0, vision.getFogOfWar().getRGB(400 / 16, 400 / 16));
+  }
+
+  @Test
+  public void testVisionRadiusChange() {
+    final List<ICombatEntity> entities = new ArrayList<>();
+    final ICombatEntity player = createEntity(200, 200);
+    entities.add(player);
+
+    final CombatEntityVision vision = new CombatEntityVision(createEnvironment(entities), player);
+    vision.updateVisionShape();
+    Assert.assertFalse(vision.contains(300, 200));
+
+    vision.setVisionRadius(120);
+    vision.updateVisionShape();
+    Assert.assertTrue(vision.contains(300, 200));
+
+    vision.setVisionRadius(10);
+    vision.updateVisionShape();
+    Assert.assertFalse(vision.contains(300, 200));
+    Assert.assertTrue(vision.contains(200, 200));
+  }
+
+  private static IEnvironment createEnvironment(final List<ICombatEntity> entities) {
+    final IMap map = mock(IMap.class);
+    when(map.getTileSize()).thenReturn(new Dimension(16, 16));
+    when(map.getSizeInPixels()).thenReturn(new Dimension(1024, 1024));
+
+    final IEnvironment environment = mock(IEnvironment.class);
+    when(environment.getMap()).thenReturn(map);
+    when(environment.getCombatEntities()).thenReturn(entities);
+    return environment;
+  }
+
+  private static ICombatEntity createEntity(final double x, final double y) {
+    final ICombatEntity entity = mock(ICombatEntity.class, RETURNS_DEEP_STUBS);
+    when(entity.getAttributes().getVision().getCurrentValue()).thenReturn(50);
+    when(entity.getDimensionCenter()).thenReturn(new Point2D.Double(x, y));
+    return entity;
+  }
+}
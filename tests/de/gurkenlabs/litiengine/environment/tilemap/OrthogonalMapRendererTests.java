@@ -0,0 +1,73 @@
+package de.gurkenlabs.litiengine.environment.tilemap;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.gurkenlabs.litiengine.environment.tilemap.xml.TileLayer;
+import de.gurkenlabs.litiengine.graphics.Spritesheet;
+
+public class OrthogonalMapRendererTests {
+
+  @Test
+  public void testChangedTilesInvalidateTheirChunk() throws JAXBException {
+    final BufferedImage tileImage = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D g = tileImage.createGraphics();
+    g.setColor(Color.RED);
+    g.fillRect(0, 0, 16, 16);
+    g.dispose();
+    Spritesheet.load(tileImage, "orthogonal-renderer-test.png", 16, 16);
+
+    final IMapImage image = mock(IMapImage.class);
+    when(image.getSource()).thenReturn("orthogonal-renderer-test.png");
+
+    final ITileset tileset = mock(ITileset.class);
+    when(tileset.getFirstGridId()).thenReturn(1);
+    when(tileset.getTilecount()).thenReturn(1);
+    when(tileset.getImage()).thenReturn(image);
+
+    // 64 x 64 tiles of 16 pixels result in 2 x 2 chunks of 32 x 32 tiles
+    final ITileLayer layer = createEmptyLayer(64, 64);
+    final IMap map = mock(IMap.class);
+    when(map.getTilesets()).thenReturn(Arrays.asList(tileset));
+    when(map.getTileLayers()).thenReturn(Arrays.asList(layer));
+    when(map.getTileSize()).thenReturn(new Dimension(16, 16));
+
+    final OrthogonalMapRenderer renderer = new OrthogonalMapRenderer();
+    renderer.prepareChunks(map, new Rectangle2D.Double(0, 0, 1024, 1024));
+    final BufferedImage unchanged = renderer.getChunkImage(layer, map, 0, 0);
+    final BufferedImage changed = renderer.getChunkImage(layer, map, 1, 0);
+    Assert.assertEquals(0, changed.getRGB(8 * 16, 3 * 16));
+
+    layer.setGridId(40, 3, 1);
+
+    final BufferedImage rerasterized = renderer.getChunkImage(layer, map, 1, 0);
+    Assert.assertNotSame(changed, rerasterized);
+    Assert.assertEquals(Color.RED.getRGB(), rerasterized.getRGB(8 * 16, 3 * 16));
+    Assert.assertSame(unchanged, renderer.getChunkImage(layer, map, 0, 0));
+  }
+
+  private static ITileLayer createEmptyLayer(final int width, final int height) throws JAXBException {
+    final StringBuilder xml = new StringBuilder();
+    xml.append("<layer name=\"ground\" width=\"").append(width).append("\" height=\"").append(height).append("\"><data>");
+    for (int i = 0; i < width * height; i++) {
+      xml.append("<tile gid=\"0\"/>");
+    }
+
+    xml.append("</data></layer>");
+    return (TileLayer) JAXBContext.newInstance(TileLayer.class).createUnmarshaller().unmarshal(new StringReader(xml.toString()));
+  }
+}
@@ -0,0 +1,71 @@
+package de.gurkenlabs.litiengine.environment.tilemap;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.gurkenlabs.litiengine.graphics.Spritesheet;
+
+public class TileResolutionTableTests {
+
+  @Test
+  public void testTilesAreResolvedByGridId() {
+    final Spritesheet spritesheet = Spritesheet.load(new BufferedImage(64, 16, BufferedImage.TYPE_INT_ARGB), "tile-resolution-test.png", 16, 16);
+
+    final IMapImage image = mock(IMapImage.class);
+    when(image.getSource()).thenReturn("tile-resolution-test.png");
+
+    final ITileAnimationFrame first = createFrame(2, 100);
+    final ITileAnimationFrame second = createFrame(3, 200);
+    final ITileAnimation animation = mock(ITileAnimation.class);
+    when(animation.getFrames()).thenReturn(Arrays.asList(first, second));
+    when(animation.getTotalDuration()).thenReturn(300);
+
+    final ITileset tileset = mock(ITileset.class);
+    when(tileset.getFirstGridId()).thenReturn(5);
+    when(tileset.getTilecount()).thenReturn(4);
+    when(tileset.getImage()).thenReturn(image);
+    when(tileset.getAnimation(1)).thenReturn(animation);
+
+    final IMap map = mock(IMap.class);
+    when(map.getTilesets()).thenReturn(Arrays.asList(tileset));
+
+    final TileResolutionTable table = TileResolutionTable.get(map);
+    Assert.assertSame(table, TileResolutionTable.get(map));
+
+    Assert.assertNull(table.getImage(createTile(0), 0));
+    Assert.assertNull(table.getImage(createTile(4), 0));
+    Assert.assertNull(table.getImage(createTile(9), 0));
+    Assert.assertSame(spritesheet.getSprite(0), table.getImage(createTile(5), 0));
+    Assert.assertFalse(table.hasAnimation(createTile(5)));
+
+    final ITile animated = createTile(6);
+    Assert.assertTrue(table.hasAnimation(animated));
+    Assert.assertSame(spritesheet.getSprite(2), table.getImage(animated, 0));
+    Assert.assertSame(spritesheet.getSprite(2), table.getImage(animated, 99));
+    Assert.assertSame(spritesheet.getSprite(3), table.getImage(animated, 100));
+    Assert.assertSame(spritesheet.getSprite(3), table.getImage(animated, 299));
+    Assert.assertSame(spritesheet.getSprite(2), table.getImage(animated, 300));
+
+    TileResolutionTable.remove(map);
+    Spritesheet.remove(spritesheet.getName());
+  }
+
+  private static ITileAnimationFrame createFrame(final int tileId, final int duration) {
+    final ITileAnimationFrame frame = mock(ITileAnimationFrame.class);
+    when(frame.getTileId()).thenReturn(tileId);
+    when(frame.getDuration()).thenReturn(duration);
+    return frame;
+  }
+
+  private static ITile createTile(final int gridId) {
+    final ITile tile = mock(ITile.class);
+    when(tile.getGridId()).thenReturn(gridId);
+    return tile;
+  }
+}
@@ -0,0 +1,86 @@
+package de.gurkenlabs.litiengine.graphics;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.gurkenlabs.litiengine.entities.IEntity;
+
+public class EntityRenderListTests {
+
+  @Test
+  public void testEntitiesAreSortedAfterUpdate() {
+    final EntityRenderList list = new EntityRenderList(true);
+    final Rectangle2D box1 = new Rectangle2D.Double(0, 30, 10, 10);
+    final Rectangle2D box2 = new Rectangle2D.Double(0, 10, 10, 10);
+    final Rectangle2D box3 = new Rectangle2D.Double(0, 20, 10, 10);
+    final IEntity entity1 = createEntity(box1);
+    final IEntity entity2 = createEntity(box2);
+    final IEntity entity3 = createEntity(box3);
+    list.add(entity1);
+    list.add(entity2);
+    list.add(entity3);
+
+    list.update();
+    Assert.assertArrayEquals(new IEntity[] { entity2, entity3, entity1 }, getEntities(list, null).toArray());
+
+    // moving an entity only changes its position relative to its neighbours
+    box2.setRect(0, 25, 10, 10);
+    list.update();
+    Assert.assertArrayEquals(new IEntity[] { entity3, entity2, entity1 }, getEntities(list, null).toArray());
+
+    list.remove(entity2);
+    Assert.assertEquals(2, list.size());
+    Assert.assertArrayEquals(new IEntity[] { entity3, entity1 }, getEntities(list, null).toArray());
+  }
+
+  @Test
+  public void testEntitiesOutsideOfTheAreaAreCulled() {
+    final EntityRenderList list = new EntityRenderList(false);
+    final IEntity visible = createEntity(new Rectangle2D.Double(10, 10, 10, 10));
+    final IEntity hidden = createEntity(new Rectangle2D.Double(200, 10, 10, 10));
+    list.add(hidden);
+    list.add(visible);
+
+    final List<IEntity> entities = getEntities(list, new Rectangle2D.Double(0, 0, 100, 100));
+    Assert.assertEquals(1, entities.size());
+    Assert.assertSame(visible, entities.get(0));
+  }
+
+  @Test
+  public void testEntitiesCanBeRemovedWhileRendering() {
+    final EntityRenderList list = new EntityRenderList(false);
+    final IEntity entity1 = createEntity(new Rectangle2D.Double(10, 10, 10, 10));
+    final IEntity entity2 = createEntity(new Rectangle2D.Double(20, 10, 10, 10));
+    list.add(entity1);
+    list.add(entity2);
+
+    // the consumer sees the entities that were visible when the call started
+    final List<IEntity> entities = new ArrayList<>();
+    list.forEach(null, entity -> {
+      entities.add(entity);
+      list.remove(entity);
+    });
+
+    Assert.assertArrayEquals(new IEntity[] { entity1, entity2 }, entities.toArray());
+    Assert.assertEquals(0, list.size());
+  }
+
+  private static IEntity createEntity(final Rectangle2D boundingBox) {
+    final IEntity entity = mock(IEntity.class);
+    when(entity.getBoundingBox()).thenReturn(boundingBox);
+    return entity;
+  }
+
+  private static List<IEntity> getEntities(final EntityRenderList list, final Rectangle2D area) {
+    final List<IEntity> entities = new ArrayList<>();
+    list.forEach(area, entities::add);
+    return entities;
+  }
+}
@@ -0,0 +1,108 @@
+package de.gurkenlabs.litiengine.graphics;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageCacheTests {
+  private static final long IMAGE_BYTES = 16 * 16 * 4;
+
+  @Before
+  public void setup() {
+    ImageCache.IMAGES.clear();
+  }
+
+  @After
+  public void cleanup() {
+    ImageCache.IMAGES.setMaxBytes(0);
+    ImageCache.IMAGES.setEvictionPolicy(ImageCache.EvictionPolicy.LEAST_RECENTLY_USED);
+    ImageCache.IMAGES.clear();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() {
+    final ImageCache cache = ImageCache.IMAGES;
+    final long evictions = cache.getEvictions();
+    cache.setMaxBytes(IMAGE_BYTES * 2);
+
+    cache.put("lru-a", createImage(16, 16));
+    cache.put("lru-b", createImage(16, 16));
+    Assert.assertEquals(IMAGE_BYTES * 2, cache.getResidentBytes());
+
+    // requesting a makes b the least recently used image
+    Assert.assertNotNull(cache.get("lru-a"));
+    cache.put("lru-c", createImage(16, 16));
+
+    Assert.assertEquals(evictions + 1, cache.getEvictions());
+    Assert.assertEquals(IMAGE_BYTES * 2, cache.getResidentBytes());
+    Assert.assertNotNull(cache.get("lru-a"));
+    Assert.assertNotNull(cache.get("lru-c"));
+    Assert.assertFalse(cache.containsKey("lru-b"));
+  }
+
+  @Test
+  public void testSizeWeightedEviction() {
+    final ImageCache cache = ImageCache.IMAGES;
+    final long evictions = cache.getEvictions();
+    cache.setEvictionPolicy(ImageCache.EvictionPolicy.SIZE_WEIGHTED);
+
+    cache.put("weighted-small", createImage(16, 16));
+    cache.put("weighted-large", createImage(64, 64));
+    cache.put("weighted-new", createImage(16, 16));
+    cache.setMaxBytes(IMAGE_BYTES * 4);
+
+    // the large image is evicted although the small one was used less recently
+    Assert.assertEquals(evictions + 1, cache.getEvictions());
+    Assert.assertFalse(cache.containsKey("weighted-large"));
+    Assert.assertTrue(cache.containsKey("weighted-small"));
+    Assert.assertTrue(cache.containsKey("weighted-new"));
+  }
+
+  @Test
+  public void testHitsAndMisses() {
+    final ImageCache cache = ImageCache.IMAGES;
+    final long hits = cache.getHits();
+    final long misses = cache.getMisses();
+
+    cache.put("metrics", createImage(8, 8));
+    cache.get("metrics");
+    cache.get("metrics");
+    cache.get("metrics-missing");
+
+    Assert.assertEquals(hits + 2, cache.getHits());
+    Assert.assertEquals(misses + 1, cache.getMisses());
+    Assert.assertEquals(8 * 8 * 4, cache.getResidentBytes());
+
+    cache.clear("metrics.*");
+    Assert.assertEquals(0, cache.getResidentBytes());
+  }
+
+  @Test
+  public void testRawPersistence() {
+    final ImageCache cache = ImageCache.IMAGES;
+    cache.setPersistenceFormat(ImageCache.PersistenceFormat.RAW);
+    try {
+      final BufferedImage image = createImage(4, 2);
+      image.setRGB(3, 1, 0xFF123456);
+      cache.putPersistent("raw-persistence", image);
+      cache.clear();
+
+      Assert.assertTrue(cache.containsKey("raw-persistence"));
+      final BufferedImage loaded = cache.get("raw-persistence");
+      Assert.assertNotSame(image, loaded);
+      Assert.assertEquals(0xFF123456, loaded.getRGB(3, 1));
+    } finally {
+      cache.clearPersistent();
+      cache.setPersistenceFormat(ImageCache.PersistenceFormat.PNG);
+    }
+
+    Assert.assertFalse(cache.containsKey("raw-persistence"));
+  }
+
+  private static BufferedImage createImage(final int width, final int height) {
+    return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+  }
+}
@@ -0,0 +1,29 @@
+package de.gurkenlabs.litiengine.graphics;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpritesheetTests {
+
+  @Test
+  public void testGetSprite() {
+    final BufferedImage image = new BufferedImage(32, 16, BufferedImage.TYPE_INT_ARGB);
+    image.setRGB(20, 5, 0xFFFF0000);
+    final Spritesheet spritesheet = Spritesheet.load(image, "sprite-table-test.png", 16, 16);
+
+    Assert.assertEquals(2, spritesheet.getTotalNumberOfSprites());
+
+    final BufferedImage sprite = spritesheet.getSprite(1);
+    Assert.assertEquals(16, sprite.getWidth());
+    Assert.assertEquals(0xFFFF0000, sprite.getRGB(4, 5));
+
+    // the sliced sprites are reused for every lookup
+    Assert.assertSame(sprite, spritesheet.getSprite(1));
+    Assert.assertNotSame(sprite, spritesheet.getSprite(0));
+    Assert.assertNull(spritesheet.getSprite(2));
+
+    Spritesheet.remove(spritesheet.getName());
+  }
+}
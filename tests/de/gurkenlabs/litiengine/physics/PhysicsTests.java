@@ -1,5 +1,6 @@
 package de.gurkenlabs.litiengine.physics;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -52,4 +53,42 @@ public class PhysicsTests {
       });
     }
   }
+
+  @Test
+  public void testSpatialHashCollisionDetection() {
+    IMovableCombatEntity ent = new MovableCombatEntity();
+    ent.setSize(16, 16);
+    ent.setCollision(true);
+    ent.setCollisionBoxWidth(16);
+    ent.setCollisionBoxHeight(16);
+    ent.setLocation(10, 10);
+
+    IPhysicsEngine engine = new PhysicsEngine(new SpatialHashBroadphase(32));
+    engine.add(ent);
+    engine.add(new Rectangle2D.Double(100, 100, 50, 50));
+
+    assertFalse(engine.collides(9, 9));
+    assertTrue(engine.collides(10.00001, 10.00001));
+    assertTrue(engine.collides(25.99999, 25.99999));
+    assertTrue(engine.collides(new Rectangle2D.Double(8, 8, 3, 3)));
+    assertTrue(engine.collides(new Rectangle2D.Double(149, 149, 10, 10)));
+    assertFalse(engine.collides(new Rectangle2D.Double(50, 50, 10, 10)));
+
+    // the broadphase re-indexes entities that have been moved directly
+    ent.setLocation(60, 60);
+    assertFalse(engine.collides(10.00001, 10.00001));
+    assertTrue(engine.collides(new Rectangle2D.Double(50, 50, 11, 11)));
+    assertEquals(1, engine.collidesWithEntites(new Rectangle2D.Double(0, 0, 200, 200)).size());
+
+    // ... and entities whose collision box has been resized
+    ent.setCollisionBoxWidth(64);
+    assertTrue(engine.collides(new Rectangle2D.Double(97, 62, 2, 2)));
+    ent.setCollisionBoxWidth(16);
+    assertFalse(engine.collides(new Rectangle2D.Double(97, 62, 2, 2)));
+
+    // switching the broadphase keeps all known collision boxes
+    engine.setBroadphase(new BruteForceBroadphase());
+    assertTrue(engine.collides(new Rectangle2D.Double(50, 50, 11, 11)));
+    assertTrue(engine.collides(new Rectangle2D.Double(149, 149, 10, 10)));
+  }
 }
@@ -0,0 +1,129 @@
+package de.gurkenlabs.litiengine.physics.pathfinding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the search of the {@link AStarPathFinder} with the search on plain
+ * open and closed lists that it replaced. This is no unit test but a micro
+ * benchmark that is run with its main method, e.g. with
+ * {@code java -cp <test classes>:<classes>:<libs> de.gurkenlabs.litiengine.physics.pathfinding.AStarPathFinderBenchmark}.
+ * The grids and queries are created from fixed seeds, so every run searches
+ * the same paths.
+ */
+public final class AStarPathFinderBenchmark {
+  private static final int QUERIES = 100;
+  private static final int ROUNDS = 5;
+  private static final int WARMUP_ROUNDS = 3;
+
+  private AStarPathFinderBenchmark() {
+  }
+
+  public static void main(final String[] args) {
+    for (final int size : new int[] { 32, 64, 128 }) {
+      final AStarPathFinder pathFinder = PathFindingTests.createPathFinder(size, size, size);
+      final AStarGrid grid = pathFinder.getGrid();
+      final List<AStarNode[]> queries = createQueries(grid, size);
+
+      for (int i = 0; i < WARMUP_ROUNDS; i++) {
+        runHeap(pathFinder, queries);
+        runOpenList(grid, queries);
+      }
+
+      long heap = Long.MAX_VALUE;
+      long openList = Long.MAX_VALUE;
+      for (int i = 0; i < ROUNDS; i++) {
+        heap = Math.min(heap, runHeap(pathFinder, queries));
+        openList = Math.min(openList, runOpenList(grid, queries));
+      }
+
+      System.out.println(String.format("%dx%d: heap %.1f us/path, open list %.1f us/path, speedup %.1fx", size, size, heap / 1000.0 / queries.size(), openList / 1000.0 / queries.size(), openList / (double) heap));
+    }
+  }
+
+  private static List<AStarNode[]> createQueries(final AStarGrid grid, final int size) {
+    final Random random = new Random(size);
+    final List<AStarNode[]> queries = new ArrayList<>();
+    while (queries.size() < QUERIES) {
+      final AStarNode start = grid.getNode(random.nextInt(size), random.nextInt(size));
+      final AStarNode target = grid.getNode(random.nextInt(size), random.nextInt(size));
+      if (start.isWalkable() && target.isWalkable() && !start.equals(target)) {
+        queries.add(new AStarNode[] { start, target });
+      }
+    }
+
+    return queries;
+  }
+
+  /**
+   * The search of the former implementation, which scanned the open list for
+   * the cheapest node and the closed list for visited nodes. The costs were
+   * stored on the nodes, which is replaced by maps because the nodes are
+   * immutable views now.
+   */
+  private static AStarNode findPathWithOpenList(final AStarGrid grid, final AStarNode startNode, final AStarNode targetNode) {
+    final Map<AStarNode, Integer> gCosts = new HashMap<>();
+    final Map<AStarNode, Integer> hCosts = new HashMap<>();
+    final List<AStarNode> opened = new ArrayList<>();
+    final List<AStarNode> closed = new ArrayList<>();
+    gCosts.put(startNode, 0);
+    hCosts.put(startNode, 0);
+    opened.add(startNode);
+
+    while (!opened.isEmpty()) {
+      AStarNode currentNode = opened.get(0);
+      for (int i = 1; i < opened.size(); i++) {
+        final AStarNode node = opened.get(i);
+        final int fCost = gCosts.get(node) + hCosts.get(node);
+        final int currentfCost = gCosts.get(currentNode) + hCosts.get(currentNode);
+        if (fCost < currentfCost || fCost == currentfCost && hCosts.get(node) < hCosts.get(currentNode)) {
+          currentNode = node;
+        }
+      }
+
+      opened.remove(currentNode);
+      closed.add(currentNode);
+      if (currentNode.equals(targetNode)) {
+        return currentNode;
+      }
+
+      for (final AStarNode neighbour : grid.getNeighbours(currentNode)) {
+        if (!neighbour.equals(targetNode) && !neighbour.isWalkable() || closed.contains(neighbour)) {
+          continue;
+        }
+
+        final int newgCost = gCosts.get(currentNode) + currentNode.getCosts(neighbour);
+        if (!opened.contains(neighbour) || newgCost < gCosts.get(neighbour)) {
+          gCosts.put(neighbour, newgCost);
+          hCosts.put(neighbour, neighbour.getCosts(targetNode));
+          if (!opened.contains(neighbour)) {
+            opened.add(neighbour);
+          }
+        }
+      }
+    }
+
+    return null;
+  }
+
+  private static long runHeap(final AStarPathFinder pathFinder, final List<AStarNode[]> queries) {
+    final long start = System.nanoTime();
+    for (final AStarNode[] query : queries) {
+      pathFinder.findPath(query[0], query[1]);
+    }
+
+    return System.nanoTime() - start;
+  }
+
+  private static long runOpenList(final AStarGrid grid, final List<AStarNode[]> queries) {
+    final long start = System.nanoTime();
+    for (final AStarNode[] query : queries) {
+      findPathWithOpenList(grid, query[0], query[1]);
+    }
+
+    return System.nanoTime() - start;
+  }
+}
@@ -1,12 +1,39 @@
 package de.gurkenlabs.litiengine.physics.pathfinding;
 
+import static org.mockito.AdditionalMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import de.gurkenlabs.litiengine.IGameLoop;
+import de.gurkenlabs.litiengine.entities.IMovableEntity;
+import de.gurkenlabs.litiengine.environment.tilemap.IMap;
+import de.gurkenlabs.litiengine.physics.IPhysicsEngine;
+import de.gurkenlabs.litiengine.physics.MovementController;
+import de.gurkenlabs.litiengine.physics.Path;
+import de.gurkenlabs.litiengine.physics.PhysicsEngine;
 import de.gurkenlabs.util.geom.GeometricUtilities;
 import de.gurkenlabs.util.geom.PointDistanceComparator;
 
@@ -57,4 +84,448 @@ public class PathFindingTests {
     final Point2D expected5 = new Point2D.Double(4, 1);
     Assert.assertArrayEquals(new Point2D[] { expected4, expected5 }, possiblePoint2);
   }
+
+  @Test
+  public void testAStarPathFinderFindsSamePathsAsLinearSearch() {
+    final AStarPathFinder pathFinder = createPathFinder(64, 64, 42);
+    final AStarGrid grid = pathFinder.getGrid();
+    final Random random = new Random(1);
+
+    for (int i = 0; i < 20; i++) {
+      final AStarNode start = grid.getNode(random.nextInt(64), random.nextInt(64));
+      final AStarNode target = grid.getNode(random.nextInt(64), random.nextInt(64));
+      if (!start.isWalkable() || !target.isWalkable() || start.equals(target)) {
+        continue;
+      }
+
+      final List<Point2D> expected = findPathWithLinearSearch(grid, start, target);
+      final Path actual = pathFinder.findPath(start, target);
+      if (expected == null) {
+        Assert.assertNull(actual);
+      } else {
+        Assert.assertEquals(expected, actual.getPoints());
+      }
+    }
+  }
+
+  @Test
+  public void testAStarPathFinderConcurrentQueries() throws Exception {
+    final AStarPathFinder pathFinder = createPathFinder(64, 64, 7);
+    final AStarGrid grid = pathFinder.getGrid();
+    final Random random = new Random(2);
+
+    final List<AStarNode[]> queries = new ArrayList<>();
+    final List<Path> expected = new ArrayList<>();
+    while (queries.size() < 40) {
+      final AStarNode start = grid.getNode(random.nextInt(64), random.nextInt(64));
+      final AStarNode target = grid.getNode(random.nextInt(64), random.nextInt(64));
+      if (start.isWalkable() && target.isWalkable() && !start.equals(target)) {
+        queries.add(new AStarNode[] { start, target });
+        expected.add(pathFinder.findPath(start, target));
+      }
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Path>> results = new ArrayList<>();
+      for (final AStarNode[] query : queries) {
+        results.add(executor.submit(() -> pathFinder.findPath(query[0], query[1])));
+      }
+
+      for (int i = 0; i < queries.size(); i++) {
+        final Path path = results.get(i).get();
+        if (expected.get(i) == null) {
+          Assert.assertNull(path);
+        } else {
+          Assert.assertEquals(expected.get(i).getPoints(), path.getPoints());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testAStarGridCreatesNodeViews() {
+    final IPhysicsEngine physicsEngine = new PhysicsEngine();
+    physicsEngine.add(new Rectangle2D.Double(3 * 16, 5 * 16, 16, 16));
+    final AStarGrid grid = new AStarGrid(physicsEngine, createMap(32, 16), 16);
+
+    Assert.assertEquals(32, grid.getWidth());
+    Assert.assertEquals(16, grid.getHeight());
+    Assert.assertNull(grid.getNode(32, 0));
+    Assert.assertFalse(grid.getNode(3, 5).isWalkable());
+    Assert.assertTrue(grid.getNode(5, 3).isWalkable());
+    Assert.assertEquals(grid.getNode(3, 5), grid.getGrid()[3][5]);
+    Assert.assertEquals(new Rectangle(7 * 16, 9 * 16, 16, 16), grid.getNode(7, 9).getBounds());
+
+    // node views always reflect the current walkability
+    final Rectangle2D obstacle = new Rectangle2D.Double(20 * 16, 10 * 16, 16, 16);
+    physicsEngine.add(obstacle);
+    grid.updateWalkable(obstacle);
+    Assert.assertFalse(grid.getNode(20, 10).isWalkable());
+  }
+
+  @Test
+  public void testAStarGridRasterizesCollisionBoxes() {
+    final IPhysicsEngine physicsEngine = new PhysicsEngine();
+    final Random random = new Random(23);
+    for (int i = 0; i < 150; i++) {
+      physicsEngine.add(new Rectangle2D.Double(random.nextDouble() * 1100 - 30, random.nextDouble() * 600 - 30, random.nextInt(4) * 16 + random.nextDouble() * 20, random.nextInt(3) * 16));
+    }
+
+    final AStarGrid grid = new AStarGrid(physicsEngine, createMap(64, 32), 16);
+    for (int x = 0; x < grid.getWidth(); x++) {
+      for (int y = 0; y < grid.getHeight(); y++) {
+        Assert.assertEquals(!physicsEngine.collides(new Rectangle(x * 16, y * 16, 16, 16)), grid.getSnapshot().isWalkable(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testAStarGridSnapshotIsNotAffectedByUpdates() {
+    final IMap map = mock(IMap.class);
+    when(map.getSizeInPixels()).thenReturn(new Dimension(160, 160));
+
+    final IPhysicsEngine physicsEngine = new PhysicsEngine();
+    final AStarGrid grid = new AStarGrid(physicsEngine, map, 16);
+    final AStarGridSnapshot snapshot = grid.getSnapshot();
+    Assert.assertTrue(snapshot.isWalkable(2, 2));
+
+    final Rectangle2D obstacle = new Rectangle2D.Double(32, 32, 16, 16);
+    physicsEngine.add(obstacle);
+    grid.updateWalkable(obstacle);
+
+    Assert.assertTrue(snapshot.isWalkable(2, 2));
+    Assert.assertFalse(grid.getSnapshot().isWalkable(2, 2));
+    Assert.assertFalse(grid.getNode(2, 2).isWalkable());
+    Assert.assertEquals(snapshot.getVersion() + 1, grid.getSnapshot().getVersion());
+  }
+
+  @Test
+  public void testPathRequestServiceCombinesRequests() {
+    final AStarPathFinder pathFinder = createPathFinder(16, 16, 3);
+    final AtomicInteger calculations = new AtomicInteger();
+    final PathRequestService service = new PathRequestService((entity, target) -> {
+      calculations.incrementAndGet();
+      return pathFinder.findDirectPath(new Point2D.Double(entity.getCollisionBox().getCenterX(), entity.getCollisionBox().getCenterY()), target);
+    }, pathFinder.getGrid());
+
+    final IMovableEntity entity1 = mock(IMovableEntity.class);
+    when(entity1.getCollisionBox()).thenReturn(new Rectangle2D.Double(10, 10, 4, 4));
+    final IMovableEntity entity2 = mock(IMovableEntity.class);
+    when(entity2.getCollisionBox()).thenReturn(new Rectangle2D.Double(9, 9, 4, 4));
+
+    final List<Path> paths = new ArrayList<>();
+    service.request(entity1, new Point2D.Double(200, 200), paths::add);
+    service.request(entity2, new Point2D.Double(201, 201), paths::add);
+
+    // the paths are calculated in the first update and delivered in the next
+    service.update(null);
+    Assert.assertEquals(1, calculations.get());
+    Assert.assertTrue(paths.isEmpty());
+
+    service.update(null);
+    Assert.assertEquals(2, paths.size());
+    Assert.assertNotNull(paths.get(0));
+    Assert.assertSame(paths.get(0), paths.get(1));
+  }
+
+  @Test
+  public void testJumpPointPathFinderFindsPathsWithSameCosts() {
+    for (final boolean corners : new boolean[] { false, true }) {
+      final AStarPathFinder aStar = createPathFinder(64, 64, 11);
+      final JumpPointPathFinder jumpPoint = new JumpPointPathFinder(createPhysicsEngine(64, 64, 11), createMap(64, 64), 16);
+      aStar.getGrid().setAllowDiagonalMovementOnCorners(corners);
+      jumpPoint.getGrid().setAllowDiagonalMovementOnCorners(corners);
+
+      final AStarGrid grid = jumpPoint.getGrid();
+      final Random random = new Random(5);
+      for (int i = 0; i < 50; i++) {
+        final int startX = random.nextInt(64);
+        final int startY = random.nextInt(64);
+        final int targetX = random.nextInt(64);
+        final int targetY = random.nextInt(64);
+        if (!grid.getNode(startX, startY).isWalkable() || !grid.getNode(targetX, targetY).isWalkable() || startX == targetX && startY == targetY) {
+          continue;
+        }
+
+        final Path expected = aStar.findPath(aStar.getGrid().getNode(startX, startY), aStar.getGrid().getNode(targetX, targetY));
+        final Path actual = jumpPoint.findPath(grid.getNode(startX, startY), grid.getNode(targetX, targetY));
+        if (expected == null) {
+          Assert.assertNull(actual);
+          continue;
+        }
+
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(getCosts(aStar.getGrid(), expected), getCosts(jumpPoint.getGrid(), actual));
+      }
+    }
+  }
+
+  @Test
+  public void testHierarchicalPathFinderFindsValidPaths() {
+    for (final boolean corners : new boolean[] { false, true }) {
+      final AStarPathFinder aStar = createPathFinder(64, 64, 13);
+      final HierarchicalPathFinder hierarchical = new HierarchicalPathFinder(createPhysicsEngine(64, 64, 13), createMap(64, 64), 16, 8);
+      aStar.getGrid().setAllowDiagonalMovementOnCorners(corners);
+      hierarchical.getGrid().setAllowDiagonalMovementOnCorners(corners);
+
+      final AStarGrid grid = hierarchical.getGrid();
+      final Random random = new Random(7);
+      for (int i = 0; i < 50; i++) {
+        final int startX = random.nextInt(64);
+        final int startY = random.nextInt(64);
+        final int targetX = random.nextInt(64);
+        final int targetY = random.nextInt(64);
+        if (!grid.getNode(startX, startY).isWalkable() || !grid.getNode(targetX, targetY).isWalkable() || startX == targetX && startY == targetY) {
+          continue;
+        }
+
+        final Path expected = aStar.findPath(aStar.getGrid().getNode(startX, startY), aStar.getGrid().getNode(targetX, targetY));
+        final Path actual = hierarchical.findPath(grid.getNode(startX, startY), grid.getNode(targetX, targetY));
+        if (expected == null) {
+          Assert.assertNull(actual);
+          continue;
+        }
+
+        // the hierarchical path is not necessarily optimal but it must be valid
+        Assert.assertNotNull(actual);
+        Assert.assertTrue(getCosts(hierarchical.getGrid(), actual) >= getCosts(aStar.getGrid(), expected));
+      }
+    }
+  }
+
+  @Test
+  public void testHierarchicalPathFinderUpdatesClusters() {
+    final IPhysicsEngine physicsEngine = new PhysicsEngine();
+    final HierarchicalPathFinder pathFinder = new HierarchicalPathFinder(physicsEngine, createMap(64, 64), 16, 8);
+    final AStarGrid grid = pathFinder.getGrid();
+    Assert.assertNotNull(pathFinder.findPath(grid.getNode(2, 2), grid.getNode(60, 2)));
+
+    final Rectangle2D wall = new Rectangle2D.Double(32 * 16, 0, 16, 64 * 16);
+    physicsEngine.add(wall);
+    pathFinder.getGrid().updateWalkable(wall);
+    Assert.assertNull(pathFinder.findPath(grid.getNode(2, 2), grid.getNode(60, 2)));
+
+    physicsEngine.remove(wall);
+    pathFinder.getGrid().updateWalkable(wall);
+    Assert.assertNotNull(pathFinder.findPath(grid.getNode(2, 2), grid.getNode(60, 2)));
+  }
+
+  @Test
+  public void testFlowFieldHasShortestPathCosts() {
+    final AStarPathFinder pathFinder = createPathFinder(48, 48, 17);
+    final FlowFieldService service = new FlowFieldService(pathFinder.getGrid());
+    final AStarGrid grid = pathFinder.getGrid();
+    final Random random = new Random(3);
+    for (int i = 0; i < 10; i++) {
+      final AStarNode goal = grid.getNode(random.nextInt(48), random.nextInt(48));
+      if (!goal.isWalkable()) {
+        continue;
+      }
+
+      final FlowField flowField = service.getFlowField(goal);
+      Assert.assertSame(flowField, service.getFlowField(goal));
+      for (int j = 0; j < 20; j++) {
+        final AStarNode start = grid.getNode(random.nextInt(48), random.nextInt(48));
+        if (!start.isWalkable() || start.equals(goal)) {
+          continue;
+        }
+
+        final Path path = pathFinder.findPath(start, goal);
+        Assert.assertEquals(path != null, flowField.isReachable(start));
+        if (path == null) {
+          continue;
+        }
+
+        Assert.assertEquals(getCosts(pathFinder.getGrid(), path), flowField.getCosts(start));
+
+        // following the next nodes must reach the goal with the same costs
+        int costs = 0;
+        AStarNode current = start;
+        while (!current.equals(goal)) {
+          final AStarNode next = flowField.getNextNode(current);
+          Assert.assertTrue(pathFinder.getGrid().getNeighbours(current).contains(next));
+          costs += current.getCosts(next);
+          current = next;
+        }
+
+        Assert.assertEquals(flowField.getCosts(start), costs);
+      }
+    }
+  }
+
+  @Test
+  public void testFlowFieldServiceInvalidatesFields() {
+    final IPhysicsEngine physicsEngine = new PhysicsEngine();
+    final AStarGrid grid = new AStarGrid(physicsEngine, createMap(32, 32), 16);
+    final FlowFieldService service = new FlowFieldService(grid);
+    final FlowField flowField = service.getFlowField(new Point2D.Double(30 * 16, 8));
+    Assert.assertTrue(flowField.isReachable(grid.getNode(2, 0)));
+    Assert.assertSame(flowField, service.getFlowField(new Point2D.Double(30 * 16 + 8, 8)));
+
+    final Rectangle2D wall = new Rectangle2D.Double(16 * 16, 0, 16, 32 * 16);
+    physicsEngine.add(wall);
+    grid.updateWalkable(wall);
+
+    final FlowField updated = service.getFlowField(new Point2D.Double(30 * 16, 8));
+    Assert.assertNotSame(flowField, updated);
+    Assert.assertFalse(updated.isReachable(grid.getNode(2, 0)));
+  }
+
+  @Test
+  public void testFlowFieldLeavesUnwalkableNodes() {
+    final IPhysicsEngine physicsEngine = new PhysicsEngine();
+    physicsEngine.add(new Rectangle2D.Double(10 * 16, 4 * 16, 16, 16));
+    physicsEngine.add(new Rectangle2D.Double(20 * 16, 0, 16, 32 * 16));
+    final AStarGrid grid = new AStarGrid(physicsEngine, createMap(32, 32), 16);
+    final FlowField flowField = new FlowFieldService(grid).getFlowField(new Point2D.Double(2 * 16 + 8, 4 * 16 + 8));
+
+    // an entity whose center overlaps an obstacle moves to the neighbour that
+    // is closest to the goal
+    Assert.assertFalse(flowField.isReachable(grid.getNode(10, 4)));
+    Assert.assertEquals(grid.getNode(9, 4).getLocation(), flowField.getNextLocation(new Point2D.Double(10 * 16 + 8, 4 * 16 + 8)));
+
+    // nodes whose neighbours are all unreachable are still a dead end
+    Assert.assertNull(flowField.getNextLocation(new Point2D.Double(25 * 16 + 8, 4 * 16 + 8)));
+  }
+
+  @Test
+  public void testMovementControllerFollowsFlowField() {
+    final AStarGrid grid = new AStarGrid(new PhysicsEngine(), createMap(32, 32), 16);
+    final FlowFieldService service = new FlowFieldService(grid);
+
+    final IMovableEntity entity = mock(IMovableEntity.class);
+    when(entity.getLocation()).thenReturn(new Point2D.Double(2 * 16 + 4, 5 * 16 + 4));
+    when(entity.getCollisionBox()).thenReturn(new Rectangle2D.Double(2 * 16 + 4, 5 * 16 + 4, 8, 8));
+    when(entity.getVelocity()).thenReturn(100f);
+
+    final IGameLoop loop = mock(IGameLoop.class);
+    when(loop.getDeltaTime()).thenReturn(20L);
+    when(loop.getTimeScale()).thenReturn(1f);
+
+    final IPhysicsEngine physicsEngine = mock(IPhysicsEngine.class);
+    final MovementController<IMovableEntity> controller = new MovementController<IMovableEntity>(entity) {
+      @Override
+      protected IPhysicsEngine getPhysicsEngine() {
+        return physicsEngine;
+      }
+    };
+
+    // the entity moves towards the next node with its velocity
+    final Point2D target = new Point2D.Double(10 * 16 + 8, 5 * 16 + 8);
+    controller.follow(service, target);
+    controller.update(loop);
+    final double angle = GeometricUtilities.calcRotationAngleInDegrees(2 * 16 + 8, 5 * 16 + 8, 3 * 16 + 8, 5 * 16 + 8);
+    verify(physicsEngine).move(same(entity), eq(angle, 0.001), eq(2.0, 0.001));
+    Assert.assertTrue(controller.isFollowing());
+
+    // the entity stops following once it has reached the target
+    when(entity.getCollisionBox()).thenReturn(new Rectangle2D.Double(10 * 16 + 4, 5 * 16 + 4, 8, 8));
+    controller.update(loop);
+    Assert.assertFalse(controller.isFollowing());
+  }
+
+  static AStarPathFinder createPathFinder(final int width, final int height, final long seed) {
+    return new AStarPathFinder(createPhysicsEngine(width, height, seed), createMap(width, height), 16);
+  }
+
+  static IMap createMap(final int width, final int height) {
+    final IMap map = mock(IMap.class);
+    when(map.getSizeInPixels()).thenReturn(new Dimension(width * 16, height * 16));
+    return map;
+  }
+
+  static IPhysicsEngine createPhysicsEngine(final int width, final int height, final long seed) {
+    final IPhysicsEngine physicsEngine = new PhysicsEngine();
+    final Random random = new Random(seed);
+    for (int i = 0; i < width * height / 6; i++) {
+      physicsEngine.add(new Rectangle2D.Double(random.nextInt(width) * 16, random.nextInt(height) * 16, 16, 16));
+    }
+
+    return physicsEngine;
+  }
+
+  /**
+   * Gets the costs of the specified path and makes sure that all of its nodes
+   * are walkable neighbours.
+   */
+  private static int getCosts(final AStarGrid grid, final Path path) {
+    final List<Point2D> points = new ArrayList<>();
+    points.add(path.getStart());
+    points.addAll(path.getPoints());
+    points.add(path.getTarget());
+
+    int costs = 0;
+    for (int i = 1; i < points.size(); i++) {
+      final AStarNode from = grid.getNode((int) points.get(i - 1).getX() / 16, (int) points.get(i - 1).getY() / 16);
+      final AStarNode to = grid.getNode((int) points.get(i).getX() / 16, (int) points.get(i).getY() / 16);
+      Assert.assertTrue(grid.getNeighbours(from).contains(to));
+      costs += from.getCosts(to);
+    }
+
+    return costs;
+  }
+
+  /**
+   * The A* implementation that scans the open and closed lists which is used as
+   * a reference for the optimized implementation.
+   */
+  private static List<Point2D> findPathWithLinearSearch(final AStarGrid grid, final AStarNode startNode, final AStarNode targetNode) {
+    final Map<AStarNode, Integer> gCosts = new HashMap<>();
+    final Map<AStarNode, Integer> hCosts = new HashMap<>();
+    final Map<AStarNode, AStarNode> predecessors = new HashMap<>();
+    final List<AStarNode> opened = new ArrayList<>();
+    final Set<AStarNode> closed = new HashSet<>();
+    gCosts.put(startNode, 0);
+    hCosts.put(startNode, 0);
+    opened.add(startNode);
+
+    while (!opened.isEmpty()) {
+      AStarNode currentNode = opened.get(0);
+      for (int i = 1; i < opened.size(); i++) {
+        final AStarNode node = opened.get(i);
+        final int fCost = gCosts.get(node) + hCosts.get(node);
+        final int currentfCost = gCosts.get(currentNode) + hCosts.get(currentNode);
+        if (fCost < currentfCost || fCost == currentfCost && hCosts.get(node) < hCosts.get(currentNode)) {
+          currentNode = node;
+        }
+      }
+
+      opened.remove(currentNode);
+      closed.add(currentNode);
+
+      if (currentNode.equals(targetNode)) {
+        final List<Point2D> path = new ArrayList<>();
+        AStarNode node = predecessors.get(targetNode);
+        while (node != startNode) {
+          path.add(node.getLocation());
+          node = predecessors.get(node);
+        }
+
+        Collections.reverse(path);
+        return path;
+      }
+
+      for (final AStarNode neighbour : grid.getNeighbours(currentNode)) {
+        if (!neighbour.equals(targetNode) && !neighbour.isWalkable() || closed.contains(neighbour)) {
+          continue;
+        }
+
+        final int newgCost = gCosts.get(currentNode) + currentNode.getCosts(neighbour);
+        if (!opened.contains(neighbour) || newgCost < gCosts.get(neighbour)) {
+          gCosts.put(neighbour, newgCost);
+          hCosts.put(neighbour, neighbour.getCosts(targetNode));
+          predecessors.put(neighbour, currentNode);
+          if (!opened.contains(neighbour)) {
+            opened.add(neighbour);
+          }
+        }
+      }
+    }
+
+    return null;
+  }
 }
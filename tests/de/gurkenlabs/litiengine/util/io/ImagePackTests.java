@@ -0,0 +1,115 @@
+package de.gurkenlabs.litiengine.util.io;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.gurkenlabs.util.io.ImagePack;
+
+public class ImagePackTests {
+
+  @Test
+  public void testRawImagesAreRestored() throws IOException {
+    this.testImagesAreRestored(false);
+  }
+
+  @Test
+  public void testCompressedImagesAreRestored() throws IOException {
+    this.testImagesAreRestored(true);
+  }
+
+  private void testImagesAreRestored(final boolean compress) throws IOException {
+    final File file = File.createTempFile("image-pack", ".pack");
+    Assert.assertTrue(file.delete());
+
+    try {
+      final ImagePack pack = new ImagePack(file, compress);
+      pack.write("first", createImage(5, 3, 0x80FF0000));
+      pack.write("second", createImage(2, 7, 0xFF00FF00));
+      Assert.assertEquals(0x80FF0000, pack.read("first").getRGB(4, 2));
+
+      // the second record for a key supersedes the first one
+      pack.write("first", createImage(4, 4, 0xFF0000FF));
+      pack.close();
+
+      final ImagePack reopened = new ImagePack(file, compress);
+      Assert.assertEquals(2, reopened.getKeys().size());
+      Assert.assertNull(reopened.read("missing"));
+
+      final BufferedImage first = reopened.read("first");
+      Assert.assertEquals(4, first.getWidth());
+      Assert.assertEquals(4, first.getHeight());
+      Assert.assertEquals(0xFF0000FF, first.getRGB(3, 3));
+
+      final BufferedImage second = reopened.read("second");
+      Assert.assertEquals(2, second.getWidth());
+      Assert.assertEquals(7, second.getHeight());
+      Assert.assertEquals(0xFF00FF00, second.getRGB(1, 6));
+      reopened.close();
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testRecordsOfTheSameSizeAreOverwrittenInPlace() throws IOException {
+    final File file = File.createTempFile("image-pack", ".pack");
+    Assert.assertTrue(file.delete());
+
+    try {
+      final ImagePack pack = new ImagePack(file, false);
+      pack.write("image", createImage(8, 8, 0xFF000000));
+      final long length = file.length();
+      pack.write("image", createImage(8, 8, 0xFFFFFFFF));
+      Assert.assertEquals(length, file.length());
+      Assert.assertEquals(0xFFFFFFFF, pack.read("image").getRGB(7, 7));
+      pack.close();
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testSupersededRecordsAreCompacted() throws IOException {
+    final File file = File.createTempFile("image-pack", ".pack");
+    Assert.assertTrue(file.delete());
+
+    try {
+      // every rewrite changes the size, so the records can't be overwritten
+      final ImagePack pack = new ImagePack(file, false);
+      pack.write("other", createImage(16, 16, 0xFF00FF00));
+      for (int i = 0; i < 32; i++) {
+        pack.write("image", createImage(256, 256 - i % 2, 0xFF000000 | i));
+        Assert.assertTrue(file.length() < 8 * 256 * 256 * 4);
+      }
+
+      Assert.assertEquals(0xFF00001F, pack.read("image").getRGB(255, 254));
+      pack.close();
+
+      final ImagePack reopened = new ImagePack(file, false);
+      Assert.assertEquals(2, reopened.getKeys().size());
+      Assert.assertEquals(0xFF00001F, reopened.read("image").getRGB(0, 0));
+      Assert.assertEquals(0xFF00FF00, reopened.read("other").getRGB(15, 15));
+      reopened.close();
+
+      // the pack doesn't keep the file open or mapped after it's closed
+      Assert.assertTrue(file.delete());
+    } finally {
+      file.delete();
+    }
+  }
+
+  private static BufferedImage createImage(final int width, final int height, final int argb) {
+    final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    for (int x = 0; x < width; x++) {
+      for (int y = 0; y < height; y++) {
+        image.setRGB(x, y, argb);
+      }
+    }
+
+    return image;
+  }
+}